@@ -1,5 +1,6 @@
 // Ori Kenigsbuch
 import GameElement.Game;
+import GameElement.ScriptedInput;
 
 /**
  * The main class for running the Ass5Game.
@@ -9,12 +10,35 @@ public class Ass5Game {
 
     /**
      * The main method serves as the entry point for the program.
-     * It initializes and starts the game.
+     * It initializes and starts the game. With the arguments {@code --headless <ticks>} the game is
+     * simulated without a window and without input for up to the given number of ticks, and the result
+     * is printed. With the arguments {@code --warmup <ticks>} the JIT is warmed up for the given number
+     * of ticks before the first frame is drawn, and the number of frames that missed their deadline in the
+     * first seconds is printed when the game ends; running it with 0 ticks gives the number without
+     * warm-up to compare with.
      *
-     * @param args command-line arguments (not used in this implementation)
+     * @param args command-line arguments
      */
     public static void main(String[] args) {
         Game game = new Game();
+        if (args.length == 2 && args[0].equals("--headless")) {
+            game.setHeadless(new ScriptedInput());
+            game.initialize();
+            long start = System.nanoTime();
+            long ticks = game.simulate(Long.parseLong(args[1]));
+            System.out.printf("%d ticks in %.1f ms: score %d, %d balls and %d blocks left%n", ticks,
+                    (System.nanoTime() - start) / 1e6, game.getScore(), game.getBallsLeft(), game.getBlocksLeft());
+            return;
+        }
+        if (args.length == 2 && args[0].equals("--warmup")) {
+            long warmUp = Long.parseLong(args[1]);
+            game.setWarmUpTicks(warmUp);
+            game.initialize();
+            game.run();
+            System.out.printf("%d warm-up ticks: %d frames missed their deadline in the first seconds (%s)%n",
+                    warmUp, game.getEarlyMissedDeadlines(), game.getFramePacer().getStats());
+            return;
+        }
         game.initialize();
         game.run();
     }
@@ -0,0 +1,318 @@
+// Ori Kenigsbuch
+package Ecs;
+
+import java.util.Arrays;
+
+/**
+ * The Ecs.Archetype class is the table of all the entities of a {@link World} that have exactly the same
+ * components.
+ * <p>
+ * Every component of the archetype is stored in dense primitive columns, one array per value, and an
+ * entity is a row of the table. Systems iterate the rows of every table whose components they need, which
+ * reads memory in order. Columns of components the archetype does not have are {@code null}. Removing a
+ * row moves the last row into its place, so the rows stay dense and spawning and despawning cost O(1).
+ * </p>
+ * <p>
+ * The column arrays are handed out directly for speed. They can be replaced when the table grows, so a
+ * system should fetch them again after spawning entities.
+ * </p>
+ */
+public class Archetype {
+    private final int mask;
+    private int size;
+    private int[] entities;
+    private double[] xs;
+    private double[] ys;
+    private double[] dxs;
+    private double[] dys;
+    private double[] radii;
+    private double[] widths;
+    private double[] heights;
+    private int[] colors;
+    private int[] hitFlags;
+    private int[] points;
+
+    /**
+     * Constructs an empty table for the given components.
+     *
+     * @param mask the components, a combination of the bits of {@link Component}.
+     */
+    Archetype(int mask) {
+        this.mask = mask;
+        allocate(16);
+    }
+
+    /**
+     * Returns the components of the entities of the table.
+     *
+     * @return a combination of the bits of {@link Component}.
+     */
+    public int mask() {
+        return this.mask;
+    }
+
+    /**
+     * Returns true if the entities of the table have all the given components.
+     *
+     * @param components a combination of the bits of {@link Component}.
+     * @return whether the table has the components.
+     */
+    public boolean has(int components) {
+        return (this.mask & components) == components;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the number of entities in the table.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the entity of a row.
+     *
+     * @param row the row.
+     * @return the entity id.
+     */
+    public int entity(int row) {
+        return this.entities[row];
+    }
+
+    /**
+     * Returns the x column ({@link Component#POSITION}).
+     *
+     * @return the x values, or {@code null}.
+     */
+    public double[] xs() {
+        return this.xs;
+    }
+
+    /**
+     * Returns the y column ({@link Component#POSITION}).
+     *
+     * @return the y values, or {@code null}.
+     */
+    public double[] ys() {
+        return this.ys;
+    }
+
+    /**
+     * Returns the dx column ({@link Component#VELOCITY}).
+     *
+     * @return the dx values, or {@code null}.
+     */
+    public double[] dxs() {
+        return this.dxs;
+    }
+
+    /**
+     * Returns the dy column ({@link Component#VELOCITY}).
+     *
+     * @return the dy values, or {@code null}.
+     */
+    public double[] dys() {
+        return this.dys;
+    }
+
+    /**
+     * Returns the radius column ({@link Component#RADIUS}).
+     *
+     * @return the radii, or {@code null}.
+     */
+    public double[] radii() {
+        return this.radii;
+    }
+
+    /**
+     * Returns the width column ({@link Component#BOUNDS}).
+     *
+     * @return the widths, or {@code null}.
+     */
+    public double[] widths() {
+        return this.widths;
+    }
+
+    /**
+     * Returns the height column ({@link Component#BOUNDS}).
+     *
+     * @return the heights, or {@code null}.
+     */
+    public double[] heights() {
+        return this.heights;
+    }
+
+    /**
+     * Returns the ARGB color column ({@link Component#RENDER}).
+     *
+     * @return the colors, or {@code null}.
+     */
+    public int[] colors() {
+        return this.colors;
+    }
+
+    /**
+     * Returns the hit flag column ({@link Component#HIT}).
+     *
+     * @return the hit flags, or {@code null}.
+     */
+    public int[] hitFlags() {
+        return this.hitFlags;
+    }
+
+    /**
+     * Returns the points column ({@link Component#HIT}).
+     *
+     * @return the points, or {@code null}.
+     */
+    public int[] points() {
+        return this.points;
+    }
+
+    /**
+     * Adds a row with zeroed components.
+     *
+     * @param entity the entity of the row.
+     * @return the row.
+     */
+    int add(int entity) {
+        if (this.size == this.entities.length) {
+            grow();
+        }
+        int row = this.size++;
+        this.entities[row] = entity;
+        clear(row);
+        return row;
+    }
+
+    /**
+     * Removes a row, moving the last row into its place.
+     *
+     * @param row the row to remove.
+     * @return the entity that moved into the row, or -1 if the removed row was the last one.
+     */
+    int remove(int row) {
+        int last = --this.size;
+        if (row == last) {
+            return -1;
+        }
+        this.entities[row] = this.entities[last];
+        copy(this.xs, last, row);
+        copy(this.ys, last, row);
+        copy(this.dxs, last, row);
+        copy(this.dys, last, row);
+        copy(this.radii, last, row);
+        copy(this.widths, last, row);
+        copy(this.heights, last, row);
+        copy(this.colors, last, row);
+        copy(this.hitFlags, last, row);
+        copy(this.points, last, row);
+        return this.entities[row];
+    }
+
+    /**
+     * Zeroes the components of a row.
+     *
+     * @param row the row.
+     */
+    private void clear(int row) {
+        if (this.xs != null) {
+            this.xs[row] = 0;
+            this.ys[row] = 0;
+        }
+        if (this.dxs != null) {
+            this.dxs[row] = 0;
+            this.dys[row] = 0;
+        }
+        if (this.radii != null) {
+            this.radii[row] = 0;
+        }
+        if (this.widths != null) {
+            this.widths[row] = 0;
+            this.heights[row] = 0;
+        }
+        if (this.colors != null) {
+            this.colors[row] = 0;
+        }
+        if (this.hitFlags != null) {
+            this.hitFlags[row] = 0;
+            this.points[row] = 0;
+        }
+    }
+
+    /**
+     * Copies one value of a column to another row.
+     *
+     * @param column the column, may be {@code null}.
+     * @param from   the source row.
+     * @param to     the target row.
+     */
+    private static void copy(double[] column, int from, int to) {
+        if (column != null) {
+            column[to] = column[from];
+        }
+    }
+
+    /**
+     * Copies one value of a column to another row.
+     *
+     * @param column the column, may be {@code null}.
+     * @param from   the source row.
+     * @param to     the target row.
+     */
+    private static void copy(int[] column, int from, int to) {
+        if (column != null) {
+            column[to] = column[from];
+        }
+    }
+
+    /**
+     * Allocates the columns of the components of the table.
+     *
+     * @param capacity the number of rows.
+     */
+    private void allocate(int capacity) {
+        this.entities = new int[capacity];
+        if (has(Component.POSITION)) {
+            this.xs = new double[capacity];
+            this.ys = new double[capacity];
+        }
+        if (has(Component.VELOCITY)) {
+            this.dxs = new double[capacity];
+            this.dys = new double[capacity];
+        }
+        if (has(Component.RADIUS)) {
+            this.radii = new double[capacity];
+        }
+        if (has(Component.BOUNDS)) {
+            this.widths = new double[capacity];
+            this.heights = new double[capacity];
+        }
+        if (has(Component.RENDER)) {
+            this.colors = new int[capacity];
+        }
+        if (has(Component.HIT)) {
+            this.hitFlags = new int[capacity];
+            this.points = new int[capacity];
+        }
+    }
+
+    /**
+     * Doubles the number of rows the table can hold, keeping its rows.
+     */
+    private void grow() {
+        int capacity = this.entities.length * 2;
+        this.entities = Arrays.copyOf(this.entities, capacity);
+        this.xs = this.xs == null ? null : Arrays.copyOf(this.xs, capacity);
+        this.ys = this.ys == null ? null : Arrays.copyOf(this.ys, capacity);
+        this.dxs = this.dxs == null ? null : Arrays.copyOf(this.dxs, capacity);
+        this.dys = this.dys == null ? null : Arrays.copyOf(this.dys, capacity);
+        this.radii = this.radii == null ? null : Arrays.copyOf(this.radii, capacity);
+        this.widths = this.widths == null ? null : Arrays.copyOf(this.widths, capacity);
+        this.heights = this.heights == null ? null : Arrays.copyOf(this.heights, capacity);
+        this.colors = this.colors == null ? null : Arrays.copyOf(this.colors, capacity);
+        this.hitFlags = this.hitFlags == null ? null : Arrays.copyOf(this.hitFlags, capacity);
+        this.points = this.points == null ? null : Arrays.copyOf(this.points, capacity);
+    }
+}
@@ -0,0 +1,160 @@
+// Ori Kenigsbuch
+package Ecs;
+
+import GameElement.GameEnvironment;
+import GameElement.Velocity;
+import GameObjects.Collidable;
+import GameObjects.CollisionInfo;
+import Geometry.Point;
+import Geometry.RayHit;
+import Geometry.SlabTest;
+import java.util.List;
+
+/**
+ * The Ecs.CollisionSystem class bounces the moving entities of a {@link World} (those with a
+ * {@link Component#POSITION} and a {@link Component#VELOCITY}) off the collider entities (a
+ * {@link Component#POSITION}, {@link Component#BOUNDS} and a {@link Component#COLLIDER}) and off the
+ * collidables of the world's {@link GameEnvironment}.
+ * <p>
+ * Moving entities are points, like {@link GameElement.Ball#moveOneStep()}. The trajectory of each one is
+ * tested against the dense columns of every collider table, with a cheap box test before the exact
+ * {@link SlabTest}, and against the environment through its query that does not allocate. On the closest
+ * hit the entity is brought almost to the collision point and its velocity is changed; the
+ * {@link MovementSystem}, which runs after this system, then moves it by its new velocity. Hitting a
+ * collider entity reverses the velocity on the sides that were hit and records the hit in the world
+ * (see {@link ScoringSystem}); hitting a collidable of the environment calls its
+ * {@link Collidable#hit}, with the entity as the hitter (see {@link World#ball(int)}).
+ * </p>
+ */
+public class CollisionSystem implements EcsSystem {
+    private static final int MOVING = Component.POSITION | Component.VELOCITY;
+    private static final int SOLID = Component.POSITION | Component.BOUNDS | Component.COLLIDER;
+    // how close to the collision point an entity is brought before it bounces, as in Ball
+    private static final double ALMOST = 0.99;
+
+    private final RayHit hit;
+    private final RayHit environmentHit;
+
+    /**
+     * Constructs a CollisionSystem.
+     */
+    public CollisionSystem() {
+        this.hit = new RayHit();
+        this.environmentHit = new RayHit();
+    }
+
+    /**
+     * Bounces the moving entities that hit something during this frame.
+     *
+     * @param world the {@link World}.
+     */
+    @Override
+    public void update(World world) {
+        List<Archetype> tables = world.tables();
+        for (int t = 0; t < tables.size(); t++) {
+            Archetype table = tables.get(t);
+            if (!table.has(MOVING)) {
+                continue;
+            }
+            for (int i = 0; i < table.size(); i++) {
+                int entity = table.entity(i);
+                if (world.isAlive(entity)) {
+                    step(world, table, i, entity);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the closest hit of one moving entity and bounces it.
+     *
+     * @param world  the {@link World}.
+     * @param table  the table of the entity.
+     * @param i      the row of the entity.
+     * @param entity the id of the entity.
+     */
+    private void step(World world, Archetype table, int i, int entity) {
+        double x = table.xs()[i];
+        double y = table.ys()[i];
+        double step = world.getTimeStep();
+        // the move of this update, the velocity itself is per frame of the original loop
+        double dx = table.dxs()[i] * step;
+        double dy = table.dys()[i] * step;
+        double bestT = Double.MAX_VALUE;
+        int bestSides = 0;
+        int target = -1;
+        List<Archetype> tables = world.tables();
+        for (int s = 0; s < tables.size(); s++) {
+            Archetype solids = tables.get(s);
+            if (!solids.has(SOLID)) {
+                continue;
+            }
+            double minX = Math.min(x, x + dx);
+            double maxX = Math.max(x, x + dx);
+            double minY = Math.min(y, y + dy);
+            double maxY = Math.max(y, y + dy);
+            double[] xs = solids.xs();
+            double[] ys = solids.ys();
+            double[] widths = solids.widths();
+            double[] heights = solids.heights();
+            for (int k = 0; k < solids.size(); k++) {
+                if (xs[k] > maxX || xs[k] + widths[k] < minX || ys[k] > maxY || ys[k] + heights[k] < minY
+                        || solids.entity(k) == entity) {
+                    continue;
+                }
+                if (SlabTest.intersect(x, y, dx, dy, xs[k], ys[k], xs[k] + widths[k], ys[k] + heights[k], this.hit)
+                        && this.hit.getT() < bestT && world.isAlive(solids.entity(k))) {
+                    bestT = this.hit.getT();
+                    bestSides = this.hit.getSides();
+                    target = solids.entity(k);
+                }
+            }
+        }
+
+        Collidable object = null;
+        GameEnvironment environment = world.getEnvironment();
+        if (environment != null) {
+            object = environment.getClosestCollision(x, y, dx, dy, this.environmentHit);
+            if (object instanceof EntityCollidable && ((EntityCollidable) object).entity() == target) {
+                // an exposed collider entity, already found above
+                object = null;
+            }
+            if (object != null && this.environmentHit.getT() >= bestT) {
+                object = null;
+            }
+        }
+
+        if (object != null) {
+            double time = this.environmentHit.getT();
+            CollisionInfo collision = new CollisionInfo(new Point(x + time * dx, y + time * dy), object,
+                    this.environmentHit);
+            moveAlmost(table, i, time * step);
+            Velocity v = object.hit(world.ball(entity), collision, new Velocity(table.dxs()[i], table.dys()[i]));
+            if (world.isAlive(entity)) {
+                world.setVelocity(entity, v.getDx(), v.getDy());
+            }
+        } else if (target >= 0) {
+            moveAlmost(table, i, bestT * step);
+            if ((bestSides & (RayHit.LEFT | RayHit.RIGHT)) != 0) {
+                table.dxs()[i] = -table.dxs()[i];
+            }
+            if ((bestSides & (RayHit.TOP | RayHit.BOTTOM)) != 0) {
+                table.dys()[i] = -table.dys()[i];
+            }
+            world.recordHit(target, entity);
+        }
+    }
+
+    /**
+     * Brings an entity almost to its collision point.
+     *
+     * @param table the table of the entity.
+     * @param i     the row of the entity.
+     * @param t     the time of impact, in frames of the original loop.
+     */
+    private static void moveAlmost(Archetype table, int i, double t) {
+        double almost = t * ALMOST;
+        table.xs()[i] += table.dxs()[i] * almost;
+        table.ys()[i] += table.dys()[i] * almost;
+    }
+}
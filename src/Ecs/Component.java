@@ -0,0 +1,53 @@
+// Ori Kenigsbuch
+package Ecs;
+
+/**
+ * The Ecs.Component class lists the components an entity of a {@link World} can have. Each component is a
+ * bit, and the components of an entity are the bitwise or of them, its archetype (see {@link Archetype}).
+ */
+public final class Component {
+    /**
+     * A position (x, y): the center of a circle, or the upper-left corner of a box.
+     */
+    public static final int POSITION = 1;
+    /**
+     * A velocity (dx, dy), applied every frame by the {@link MovementSystem}.
+     */
+    public static final int VELOCITY = 1 << 1;
+    /**
+     * A radius: the entity is a circle around its position.
+     */
+    public static final int RADIUS = 1 << 2;
+    /**
+     * A width and height: the entity is a box whose upper-left corner is its position.
+     */
+    public static final int BOUNDS = 1 << 3;
+    /**
+     * An ARGB color, used by the {@link RenderSystem}.
+     */
+    public static final int RENDER = 1 << 4;
+    /**
+     * The box of the entity is solid: moving entities bounce off it (see {@link CollisionSystem}).
+     */
+    public static final int COLLIDER = 1 << 5;
+    /**
+     * What happens when the entity is hit: a combination of the hit flags below, and the points it is
+     * worth (see {@link ScoringSystem}).
+     */
+    public static final int HIT = 1 << 6;
+
+    /**
+     * Hit flag: the entity is despawned when it is hit.
+     */
+    public static final int REMOVE_ON_HIT = 1;
+    /**
+     * Hit flag: the entity that hits it takes its color.
+     */
+    public static final int RECOLOR_HITTER = 1 << 1;
+
+    /**
+     * Component only has constants.
+     */
+    private Component() {
+    }
+}
@@ -0,0 +1,15 @@
+// Ori Kenigsbuch
+package Ecs;
+
+/**
+ * The Ecs.EcsSystem interface is one step of the frame of a {@link World}: it iterates the tables of the
+ * entities that have the components it works on (see {@link World#tables()}).
+ */
+public interface EcsSystem {
+    /**
+     * Runs the system for one frame.
+     *
+     * @param world the {@link World} whose entities are updated.
+     */
+    void update(World world);
+}
@@ -0,0 +1,133 @@
+// Ori Kenigsbuch
+package Ecs;
+
+import GameElement.Ball;
+import GameElement.Game;
+import GameElement.Velocity;
+import Geometry.Point;
+import biuoop.DrawSurface;
+import java.awt.Color;
+
+/**
+ * The Ecs.EntityBall class adapts a moving entity of a {@link World} to the {@link Ball} the collidables
+ * and hit listeners of the object model expect (see {@link World#ball(int)}). It holds no state of its
+ * own: every call reads or writes the components of the entity, so listeners such as
+ * {@link Listeners.BlockRemover} and {@link Listeners.BallRemover} work on entities unchanged.
+ */
+class EntityBall extends Ball {
+    private final World world;
+    private final int entity;
+
+    /**
+     * Constructs the adapter of an entity.
+     *
+     * @param world  the {@link World} of the entity.
+     * @param entity the id of the entity.
+     */
+    EntityBall(World world, int entity) {
+        super(0, 0, 0, null, world.getEnvironment(), null);
+        this.world = world;
+        this.entity = entity;
+    }
+
+    /**
+     * Returns the id of the entity.
+     *
+     * @return the id.
+     */
+    int entity() {
+        return this.entity;
+    }
+
+    @Override
+    public int getX() {
+        return (int) Math.round(table().xs()[row()]);
+    }
+
+    @Override
+    public int getY() {
+        return (int) Math.round(table().ys()[row()]);
+    }
+
+    @Override
+    public int getSize() {
+        Archetype table = table();
+        return table.has(Component.RADIUS) ? (int) table.radii()[row()] : 0;
+    }
+
+    @Override
+    public void setCenter(Point p) {
+        this.world.setPosition(this.entity, p.getX(), p.getY());
+    }
+
+    @Override
+    public Color getColor() {
+        Archetype table = table();
+        return new Color(table.has(Component.RENDER) ? table.colors()[row()] : 0, true);
+    }
+
+    @Override
+    public void setColor(Color color) {
+        if (table().has(Component.RENDER)) {
+            this.world.setColor(this.entity, color.getRGB());
+        }
+    }
+
+    @Override
+    public Velocity getVelocity() {
+        return new Velocity(table().dxs()[row()], table().dys()[row()]);
+    }
+
+    @Override
+    public void setVelocity(Velocity v) {
+        this.world.setVelocity(this.entity, v.getDx(), v.getDy());
+    }
+
+    @Override
+    public void setVelocity(double dx, double dy) {
+        this.world.setVelocity(this.entity, dx, dy);
+    }
+
+    @Override
+    public void drawOn(DrawSurface surface) {
+        // the render system draws entities
+    }
+
+    @Override
+    public void timePassed() {
+        // the systems of the world move entities
+    }
+
+    @Override
+    public void moveOneStep() {
+        // the systems of the world move entities
+    }
+
+    @Override
+    public void addToGame(Game g) {
+        throw new UnsupportedOperationException("the ball is an entity of a World");
+    }
+
+    @Override
+    public void removeFromGame(Game g) {
+        this.world.despawn(this.entity);
+    }
+
+    /**
+     * Returns the table of the entity.
+     *
+     * @return the {@link Archetype}.
+     */
+    private Archetype table() {
+        return this.world.tableOf(this.entity);
+    }
+
+    /**
+     * Returns the row of the entity.
+     *
+     * @return the row.
+     */
+    private int row() {
+        return this.world.rowOf(this.entity);
+    }
+}
@@ -0,0 +1,91 @@
+// Ori Kenigsbuch
+package Ecs;
+
+import GameElement.Velocity;
+import GameObjects.Collidable;
+import GameObjects.CollisionInfo;
+import GameObjects.Hitter;
+import Geometry.Point;
+import Geometry.RayHit;
+import Geometry.Rectangle;
+import java.awt.Color;
+
+/**
+ * The Ecs.EntityCollidable class adapts a collider entity of a {@link World} to a {@link Collidable} of the
+ * {@link GameElement.GameEnvironment} (see {@link World#expose(int)}), so the balls of the object model
+ * bounce off it. A hit is recorded in the world like a hit by an entity, and handled by its systems.
+ */
+class EntityCollidable implements Collidable {
+    private final World world;
+    private final int entity;
+    private final Rectangle rectangle;
+
+    /**
+     * Constructs the adapter of a collider entity.
+     *
+     * @param world  the {@link World} of the entity.
+     * @param entity the id of the entity.
+     */
+    EntityCollidable(World world, int entity) {
+        this.world = world;
+        this.entity = entity;
+        Archetype table = world.tableOf(entity);
+        int row = world.rowOf(entity);
+        this.rectangle = new Rectangle(new Point(table.xs()[row], table.ys()[row]),
+                table.widths()[row], table.heights()[row]);
+    }
+
+    /**
+     * Returns the id of the entity.
+     *
+     * @return the id.
+     */
+    int entity() {
+        return this.entity;
+    }
+
+    /**
+     * Returns the box of the entity.
+     *
+     * @return the {@link Rectangle} of the entity.
+     */
+    @Override
+    public Rectangle getCollisionRectangle() {
+        if (this.world.isAlive(this.entity)) {
+            Archetype table = this.world.tableOf(this.entity);
+            int row = this.world.rowOf(this.entity);
+            this.rectangle.setUpperLeft(table.xs()[row], table.ys()[row]);
+        }
+        return this.rectangle;
+    }
+
+    /**
+     * Bounces the ball off the side of the box it hit, and records the hit in the world.
+     *
+     * @param hitter          the ball that hit the entity.
+     * @param collision       the collision.
+     * @param currentVelocity the velocity of the ball before the collision.
+     * @return the velocity of the ball after the collision.
+     */
+    @Override
+    public Velocity hit(Hitter hitter, CollisionInfo collision, Velocity currentVelocity) {
+        if (this.world.isAlive(this.entity)) {
+            if (hitter instanceof EntityBall) {
+                this.world.recordHit(this.entity, ((EntityBall) hitter).entity());
+            } else {
+                this.world.recordHit(this.entity, -1);
+                Archetype table = this.world.tableOf(this.entity);
+                int row = this.world.rowOf(this.entity);
+                // the scoring system can only recolor entities
+                if (table.has(Component.HIT | Component.RENDER)
+                        && (table.hitFlags()[row] & Component.RECOLOR_HITTER) != 0) {
+                    hitter.setColor(new Color(table.colors()[row], true));
+                }
+            }
+        }
+        int sides = collision.hitSides();
+        double dx = (sides & (RayHit.LEFT | RayHit.RIGHT)) != 0 ? -currentVelocity.getDx() : currentVelocity.getDx();
+        double dy = (sides & (RayHit.TOP | RayHit.BOTTOM)) != 0 ? -currentVelocity.getDy() : currentVelocity.getDy();
+        return new Velocity(dx, dy);
+    }
+}
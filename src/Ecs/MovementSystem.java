@@ -0,0 +1,37 @@
+// Ori Kenigsbuch
+package Ecs;
+
+import java.util.List;
+
+/**
+ * The Ecs.MovementSystem class moves every entity with a {@link Component#POSITION} and a
+ * {@link Component#VELOCITY} by its velocity, one dense loop per table.
+ */
+public class MovementSystem implements EcsSystem {
+    private static final int MOVING = Component.POSITION | Component.VELOCITY;
+
+    /**
+     * Moves the entities one step.
+     *
+     * @param world the {@link World}.
+     */
+    @Override
+    public void update(World world) {
+        List<Archetype> tables = world.tables();
+        double step = world.getTimeStep();
+        for (int t = 0; t < tables.size(); t++) {
+            Archetype table = tables.get(t);
+            if (!table.has(MOVING)) {
+                continue;
+            }
+            double[] xs = table.xs();
+            double[] ys = table.ys();
+            double[] dxs = table.dxs();
+            double[] dys = table.dys();
+            for (int i = 0; i < table.size(); i++) {
+                xs[i] += dxs[i] * step;
+                ys[i] += dys[i] * step;
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+// Ori Kenigsbuch
+package Ecs;
+
+import biuoop.DrawSurface;
+import java.awt.Color;
+import java.util.List;
+
+/**
+ * The Ecs.RenderSystem class draws every entity with a {@link Component#POSITION} and a
+ * {@link Component#RENDER}: a filled circle if it has a {@link Component#RADIUS}, a filled box if it has
+ * {@link Component#BOUNDS}. The color of the surface is only set again when it changes from entity to entity.
+ */
+public class RenderSystem {
+    private static final int DRAWN = Component.POSITION | Component.RENDER;
+
+    /**
+     * Draws the entities of a world.
+     *
+     * @param world the {@link World}.
+     * @param d     the {@link DrawSurface}.
+     */
+    public void draw(World world, DrawSurface d) {
+        List<Archetype> tables = world.tables();
+        boolean colorSet = false;
+        int current = 0;
+        for (int t = 0; t < tables.size(); t++) {
+            Archetype table = tables.get(t);
+            if (!table.has(DRAWN)) {
+                continue;
+            }
+            boolean circle = table.has(Component.RADIUS);
+            boolean box = table.has(Component.BOUNDS);
+            double[] xs = table.xs();
+            double[] ys = table.ys();
+            int[] colors = table.colors();
+            for (int i = 0; i < table.size(); i++) {
+                if (!colorSet || colors[i] != current) {
+                    current = colors[i];
+                    colorSet = true;
+                    d.setColor(new Color(current, true));
+                }
+                if (circle) {
+                    d.fillCircle((int) xs[i], (int) ys[i], (int) table.radii()[i]);
+                } else if (box) {
+                    d.fillRectangle((int) xs[i], (int) ys[i], (int) table.widths()[i], (int) table.heights()[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+// Ori Kenigsbuch
+package Ecs;
+
+import GameElement.Counter;
+
+/**
+ * The Ecs.ScoringSystem class handles the hits recorded during the frame (see {@link World#recordHit}):
+ * the points of an entity with a {@link Component#HIT} are added to the score, the hitter takes its color
+ * if it has {@link Component#RECOLOR_HITTER}, and it is despawned if it has {@link Component#REMOVE_ON_HIT},
+ * like a block with a {@link Listeners.BlockRemover} and a {@link Listeners.ScoreTrackingListener}.
+ */
+public class ScoringSystem implements EcsSystem {
+    private final Counter score;
+
+    /**
+     * Constructs a ScoringSystem.
+     *
+     * @param score the {@link Counter} the points are added to, may be {@code null}.
+     */
+    public ScoringSystem(Counter score) {
+        this.score = score;
+    }
+
+    /**
+     * Handles the hits of the frame.
+     *
+     * @param world the {@link World}.
+     */
+    @Override
+    public void update(World world) {
+        for (int i = 0; i < world.hitCount(); i++) {
+            int target = world.hitTarget(i);
+            // an entity removed by an earlier hit of this frame scores once
+            if (!world.isAlive(target) || !world.tableOf(target).has(Component.HIT)) {
+                continue;
+            }
+            Archetype table = world.tableOf(target);
+            int row = world.rowOf(target);
+            int flags = table.hitFlags()[row];
+            if (this.score != null) {
+                this.score.increase(table.points()[row]);
+            }
+            int hitter = world.hitter(i);
+            if ((flags & Component.RECOLOR_HITTER) != 0 && table.has(Component.RENDER)
+                    && world.isAlive(hitter) && world.tableOf(hitter).has(Component.RENDER)) {
+                world.setColor(hitter, table.colors()[row]);
+            }
+            if ((flags & Component.REMOVE_ON_HIT) != 0) {
+                world.despawn(target);
+            }
+        }
+    }
+}
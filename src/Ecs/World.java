@@ -0,0 +1,472 @@
+// Ori Kenigsbuch
+package Ecs;
+
+import GameElement.Ball;
+import GameElement.Counter;
+import GameElement.Game;
+import GameElement.GameEnvironment;
+import GameObjects.Sprite;
+import biuoop.DrawSurface;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Ecs.World class is an entity-component-system runtime for the game.
+ * <p>
+ * An entity is only an id. Its data are components (see {@link Component}) stored in the table of its
+ * archetype (see {@link Archetype}), and its behavior comes from the systems that iterate those tables
+ * every frame: {@link CollisionSystem}, {@link MovementSystem} and {@link ScoringSystem}, in the order
+ * they were added, and the {@link RenderSystem} when the world is drawn. Spawning and despawning an
+ * entity cost O(1), and entities despawned while the systems run are removed at the end of the frame.
+ * </p>
+ * <p>
+ * The world plugs into a {@link Game} as a single {@link Sprite}, next to the sprites of the object model.
+ * The other way round, moving entities bounce off the {@link GameObjects.Collidable}s of the
+ * {@link GameEnvironment} and are handed to them as a {@link Ball} (see {@link #ball(int)}), and a
+ * collider entity can be made a {@link GameObjects.Collidable} of the environment with
+ * {@link #expose(int)}.
+ * </p>
+ * <p>
+ * An id holds the index of the entity in its low {@value #INDEX_BITS} bits and a generation above them,
+ * so the id of a despawned entity does not refer to the entity that reuses its index.
+ * </p>
+ */
+public class World implements Sprite {
+    // the bits of an id that hold the index of the entity
+    private static final int INDEX_BITS = 20;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+
+    private final GameEnvironment environment;
+    private final List<Archetype> tables;
+    private final Map<Integer, Archetype> tablesByMask;
+    private final List<EcsSystem> systems;
+    private final RenderSystem renderSystem;
+    private int[] generations;
+    private Archetype[] tableOf;
+    private int[] rowOf;
+    private boolean[] dying;
+    private Ball[] balls;
+    private EntityCollidable[] exposed;
+    private int[] freeIndices;
+    private int freeCount;
+    private int indexCount;
+    private int[] pending;
+    private int pendingCount;
+    private boolean updating;
+    private int[] hitTargets;
+    private int[] hitters;
+    private int hitCount;
+
+    /**
+     * Constructs an empty World, whose moving entities bounce off the collidables of the given environment.
+     *
+     * @param environment the {@link GameEnvironment}, may be {@code null} for a world on its own.
+     */
+    public World(GameEnvironment environment) {
+        this.environment = environment;
+        this.tables = new ArrayList<>();
+        this.tablesByMask = new HashMap<>();
+        this.systems = new ArrayList<>();
+        this.renderSystem = new RenderSystem();
+        this.generations = new int[16];
+        this.tableOf = new Archetype[16];
+        this.rowOf = new int[16];
+        this.dying = new boolean[16];
+        this.balls = new Ball[16];
+        this.exposed = new EntityCollidable[16];
+        this.freeIndices = new int[16];
+        this.pending = new int[16];
+        this.hitTargets = new int[16];
+        this.hitters = new int[16];
+    }
+
+    /**
+     * Constructs a World running the default systems: collision, movement and scoring.
+     *
+     * @param environment the {@link GameEnvironment} of the game.
+     * @param score       the {@link Counter} the points of hit entities are added to.
+     * @return the new World.
+     */
+    public static World withDefaultSystems(GameEnvironment environment, Counter score) {
+        World world = new World(environment);
+        world.addSystem(new CollisionSystem());
+        world.addSystem(new MovementSystem());
+        world.addSystem(new ScoringSystem(score));
+        return world;
+    }
+
+    /**
+     * Adds a system, which runs every frame after the systems added before it.
+     *
+     * @param system the {@link EcsSystem}.
+     */
+    public void addSystem(EcsSystem system) {
+        this.systems.add(system);
+    }
+
+    /**
+     * Returns the environment whose collidables the moving entities bounce off.
+     *
+     * @return the {@link GameEnvironment}, or {@code null}.
+     */
+    public GameEnvironment getEnvironment() {
+        return this.environment;
+    }
+
+    /**
+     * Returns how much time one update covers: the time step of the environment, or 1 without one.
+     *
+     * @return the time step.
+     */
+    public double getTimeStep() {
+        return this.environment == null ? 1 : this.environment.getTimeStep();
+    }
+
+    /**
+     * Returns the tables of the world, one per archetype.
+     *
+     * @return a {@link List} of {@link Archetype}s, not to be modified.
+     */
+    public List<Archetype> tables() {
+        return this.tables;
+    }
+
+    /**
+     * Spawns an entity with the given components, all zeroed.
+     *
+     * @param components a combination of the bits of {@link Component}.
+     * @return the id of the entity.
+     */
+    public int spawn(int components) {
+        int index;
+        if (this.freeCount > 0) {
+            index = this.freeIndices[--this.freeCount];
+        } else {
+            if (this.indexCount > INDEX_MASK) {
+                throw new IllegalStateException("too many entities");
+            }
+            if (this.indexCount == this.generations.length) {
+                grow();
+            }
+            index = this.indexCount++;
+        }
+        int entity = (this.generations[index] << INDEX_BITS) | index;
+        Archetype table = table(components);
+        this.tableOf[index] = table;
+        this.rowOf[index] = table.add(entity);
+        this.dying[index] = false;
+        return entity;
+    }
+
+    /**
+     * Despawns an entity. While the systems run, the entity only stops being alive, and its row is
+     * removed at the end of the frame, so systems can keep iterating their tables.
+     *
+     * @param entity the id of the entity.
+     */
+    public void despawn(int entity) {
+        if (!isAlive(entity)) {
+            return;
+        }
+        int index = entity & INDEX_MASK;
+        this.dying[index] = true;
+        if (this.exposed[index] != null) {
+            this.environment.removeCollidable(this.exposed[index]);
+            this.exposed[index] = null;
+        }
+        if (this.updating) {
+            if (this.pendingCount == this.pending.length) {
+                this.pending = Arrays.copyOf(this.pending, this.pending.length * 2);
+            }
+            this.pending[this.pendingCount++] = entity;
+        } else {
+            remove(index);
+        }
+    }
+
+    /**
+     * Returns true if the id refers to an entity that was spawned and not despawned.
+     *
+     * @param entity the id of the entity.
+     * @return whether the entity is alive.
+     */
+    public boolean isAlive(int entity) {
+        int index = entity & INDEX_MASK;
+        return entity >= 0 && index < this.indexCount && this.tableOf[index] != null
+                && this.generations[index] == entity >>> INDEX_BITS && !this.dying[index];
+    }
+
+    /**
+     * Returns the table of an entity.
+     *
+     * @param entity the id of a live entity.
+     * @return the {@link Archetype} of the entity.
+     */
+    public Archetype tableOf(int entity) {
+        return this.tableOf[checked(entity)];
+    }
+
+    /**
+     * Returns the row of an entity in its table.
+     *
+     * @param entity the id of a live entity.
+     * @return the row.
+     */
+    public int rowOf(int entity) {
+        return this.rowOf[checked(entity)];
+    }
+
+    /**
+     * Sets the position of an entity.
+     *
+     * @param entity the id of an entity with a {@link Component#POSITION}.
+     * @param x      the x value.
+     * @param y      the y value.
+     */
+    public void setPosition(int entity, double x, double y) {
+        Archetype table = tableOf(entity);
+        int row = rowOf(entity);
+        table.xs()[row] = x;
+        table.ys()[row] = y;
+    }
+
+    /**
+     * Sets the velocity of an entity.
+     *
+     * @param entity the id of an entity with a {@link Component#VELOCITY}.
+     * @param dx     the change in x per frame.
+     * @param dy     the change in y per frame.
+     */
+    public void setVelocity(int entity, double dx, double dy) {
+        Archetype table = tableOf(entity);
+        int row = rowOf(entity);
+        table.dxs()[row] = dx;
+        table.dys()[row] = dy;
+    }
+
+    /**
+     * Sets the radius of an entity.
+     *
+     * @param entity the id of an entity with a {@link Component#RADIUS}.
+     * @param radius the radius.
+     */
+    public void setRadius(int entity, double radius) {
+        tableOf(entity).radii()[rowOf(entity)] = radius;
+    }
+
+    /**
+     * Sets the size of the box of an entity.
+     *
+     * @param entity the id of an entity with {@link Component#BOUNDS}.
+     * @param width  the width.
+     * @param height the height.
+     */
+    public void setBounds(int entity, double width, double height) {
+        Archetype table = tableOf(entity);
+        int row = rowOf(entity);
+        table.widths()[row] = width;
+        table.heights()[row] = height;
+    }
+
+    /**
+     * Sets the color of an entity.
+     *
+     * @param entity the id of an entity with a {@link Component#RENDER}.
+     * @param argb   the ARGB color.
+     */
+    public void setColor(int entity, int argb) {
+        tableOf(entity).colors()[rowOf(entity)] = argb;
+    }
+
+    /**
+     * Sets what happens when an entity is hit.
+     *
+     * @param entity the id of an entity with a {@link Component#HIT}.
+     * @param flags  a combination of the hit flags of {@link Component}.
+     * @param points the points the entity is worth.
+     */
+    public void setHit(int entity, int flags, int points) {
+        Archetype table = tableOf(entity);
+        int row = rowOf(entity);
+        table.hitFlags()[row] = flags;
+        table.points()[row] = points;
+    }
+
+    /**
+     * Returns a {@link Ball} that stands for a moving entity, for the collidables and hit listeners of the
+     * object model. It is created once per entity and reads and writes the components of the entity.
+     *
+     * @param entity the id of an entity with a {@link Component#POSITION} and a {@link Component#VELOCITY}.
+     * @return the {@link Ball} of the entity.
+     */
+    public Ball ball(int entity) {
+        int index = checked(entity);
+        if (this.balls[index] == null) {
+            this.balls[index] = new EntityBall(this, entity);
+        }
+        return this.balls[index];
+    }
+
+    /**
+     * Adds a collider entity to the environment as a {@link GameObjects.Collidable}, so the balls of the
+     * object model bounce off it too. It is removed from the environment when the entity is despawned.
+     *
+     * @param entity the id of an entity with a {@link Component#POSITION}, {@link Component#BOUNDS} and a
+     *               {@link Component#COLLIDER}.
+     */
+    public void expose(int entity) {
+        int index = checked(entity);
+        if (this.exposed[index] == null) {
+            this.exposed[index] = new EntityCollidable(this, entity);
+            this.environment.addCollidable(this.exposed[index]);
+        }
+    }
+
+    /**
+     * Records that an entity was hit during this frame, for the systems that run after the collision.
+     *
+     * @param target the entity that was hit.
+     * @param hitter the entity that hit it, or -1 if it was not an entity of the world.
+     */
+    public void recordHit(int target, int hitter) {
+        if (this.hitCount == this.hitTargets.length) {
+            this.hitTargets = Arrays.copyOf(this.hitTargets, this.hitCount * 2);
+            this.hitters = Arrays.copyOf(this.hitters, this.hitCount * 2);
+        }
+        this.hitTargets[this.hitCount] = target;
+        this.hitters[this.hitCount] = hitter;
+        this.hitCount++;
+    }
+
+    /**
+     * Returns the number of hits recorded since the last frame started.
+     *
+     * @return the number of hits.
+     */
+    public int hitCount() {
+        return this.hitCount;
+    }
+
+    /**
+     * Returns the entity that was hit in a recorded hit.
+     *
+     * @param i the index of the hit.
+     * @return the id of the entity.
+     */
+    public int hitTarget(int i) {
+        return this.hitTargets[i];
+    }
+
+    /**
+     * Returns the entity that hit in a recorded hit.
+     *
+     * @param i the index of the hit.
+     * @return the id of the entity, or -1 if it was not an entity of the world.
+     */
+    public int hitter(int i) {
+        return this.hitters[i];
+    }
+
+    /**
+     * Runs the systems for one frame, then removes the entities despawned meanwhile.
+     */
+    @Override
+    public void timePassed() {
+        this.updating = true;
+        try {
+            for (int i = 0; i < this.systems.size(); i++) {
+                this.systems.get(i).update(this);
+            }
+        } finally {
+            this.updating = false;
+            this.hitCount = 0;
+            for (int i = 0; i < this.pendingCount; i++) {
+                remove(this.pending[i] & INDEX_MASK);
+            }
+            this.pendingCount = 0;
+        }
+    }
+
+    /**
+     * Draws the entities with the {@link RenderSystem}.
+     *
+     * @param d the {@link DrawSurface}.
+     */
+    @Override
+    public void drawOn(DrawSurface d) {
+        this.renderSystem.draw(this, d);
+    }
+
+    /**
+     * Adds the world to the game as a sprite.
+     *
+     * @param g the {@link Game}.
+     */
+    public void addToGame(Game g) {
+        g.addSprite(this);
+    }
+
+    /**
+     * Returns the index of a live entity.
+     *
+     * @param entity the id of the entity.
+     * @return its index.
+     */
+    private int checked(int entity) {
+        if (!isAlive(entity)) {
+            throw new IllegalArgumentException("entity " + entity + " is not alive");
+        }
+        return entity & INDEX_MASK;
+    }
+
+    /**
+     * Removes the row of an entity and frees its index.
+     *
+     * @param index the index of the entity.
+     */
+    private void remove(int index) {
+        Archetype table = this.tableOf[index];
+        int moved = table.remove(this.rowOf[index]);
+        if (moved >= 0) {
+            this.rowOf[moved & INDEX_MASK] = this.rowOf[index];
+        }
+        this.tableOf[index] = null;
+        this.balls[index] = null;
+        this.dying[index] = false;
+        this.generations[index] = (this.generations[index] + 1) & ((1 << (31 - INDEX_BITS)) - 1);
+        this.freeIndices[this.freeCount++] = index;
+    }
+
+    /**
+     * Returns the table of the given components, creating it the first time.
+     *
+     * @param components a combination of the bits of {@link Component}.
+     * @return the {@link Archetype}.
+     */
+    private Archetype table(int components) {
+        Archetype table = this.tablesByMask.get(components);
+        if (table == null) {
+            table = new Archetype(components);
+            this.tablesByMask.put(components, table);
+            this.tables.add(table);
+        }
+        return table;
+    }
+
+    /**
+     * Doubles the number of entity indices.
+     */
+    private void grow() {
+        int capacity = this.generations.length * 2;
+        this.generations = Arrays.copyOf(this.generations, capacity);
+        this.tableOf = Arrays.copyOf(this.tableOf, capacity);
+        this.rowOf = Arrays.copyOf(this.rowOf, capacity);
+        this.dying = Arrays.copyOf(this.dying, capacity);
+        this.balls = Arrays.copyOf(this.balls, capacity);
+        this.exposed = Arrays.copyOf(this.exposed, capacity);
+        this.freeIndices = Arrays.copyOf(this.freeIndices, capacity);
+    }
+}
@@ -0,0 +1,226 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * The AllocationMonitor class measures how many bytes the game thread allocates per frame of
+ * {@link Game#run()}, and per phase of the frame.
+ * <p>
+ * It reads the allocation counter of the current thread
+ * ({@link com.sun.management.ThreadMXBean#getCurrentThreadAllocatedBytes()}) at the start and end of every
+ * phase, which itself does not allocate. The last {@code window} frames are kept in ring buffers, from
+ * which {@link #percentile} and {@link #report()} compute rolling percentiles. Phases are inclusive: the
+ * hit listener dispatch happens inside {@link Phase#TIME_PASSED} and is counted in both.
+ * </p>
+ * <p>
+ * In strict mode (see {@link #setBudget}) the monitor fails the run with an {@link IllegalStateException}
+ * when the median allocation of a frame, over a full window after the warm-up, goes over the budget. The
+ * median ignores the occasional frame with a bounce or a removed block, so it catches a steady-state
+ * regression, such as an allocation creeping back into {@link Ball#moveOneStep()}.
+ * </p>
+ */
+public class AllocationMonitor {
+    /**
+     * The measured phases of a frame.
+     */
+    public enum Phase {
+        /**
+         * {@link GameObjects.SpriteCollection#drawAllOn}.
+         */
+        DRAW,
+        /**
+         * Showing the drawn surface on the GUI.
+         */
+        SHOW,
+        /**
+         * {@link GameObjects.SpriteCollection#notifyAllTimePassed()}.
+         */
+        TIME_PASSED,
+        /**
+         * Notifying the hit listeners of a block.
+         */
+        HIT_DISPATCH
+    }
+
+    private static final double[] REPORTED = {50, 90, 99, 100};
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final int window;
+    // one ring buffer per phase, and the whole frame in the last one
+    private final long[][] samples;
+    private final long[] phaseStart;
+    private final long[] current;
+    private final int[] depth;
+    private long frameStart;
+    private long frames;
+    private long budget;
+    private long warmupFrames;
+
+    /**
+     * Constructs an AllocationMonitor keeping the given number of frames.
+     *
+     * @param window the number of recent frames the percentiles are computed from.
+     * @throws UnsupportedOperationException if the JVM cannot measure the allocations of a thread.
+     */
+    public AllocationMonitor(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("the window must hold at least one frame");
+        }
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            throw new UnsupportedOperationException("thread allocation counters are not available");
+        }
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!this.threads.isThreadAllocatedMemorySupported()) {
+            throw new UnsupportedOperationException("thread allocation counters are not supported");
+        }
+        this.threads.setThreadAllocatedMemoryEnabled(true);
+        this.window = window;
+        int phases = Phase.values().length;
+        this.samples = new long[phases + 1][window];
+        this.phaseStart = new long[phases];
+        this.current = new long[phases];
+        this.depth = new int[phases];
+        this.budget = -1;
+    }
+
+    /**
+     * Returns how many bytes the current thread allocates while running a task, for checks on a single
+     * method such as {@link Ball#moveOneStep()} or {@link Geometry.Rectangle#intersectionPoints}.
+     *
+     * @param task the task.
+     * @return the number of bytes allocated.
+     */
+    public static long bytesAllocatedBy(Runnable task) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long start = threads.getCurrentThreadAllocatedBytes();
+        task.run();
+        return threads.getCurrentThreadAllocatedBytes() - start;
+    }
+
+    /**
+     * Turns strict mode on: once the first frames have passed, the run fails when the median allocation
+     * of a frame over a full window is more than the budget.
+     *
+     * @param bytesPerFrame the budget, in bytes per frame.
+     * @param warmup        the number of frames that are not checked, while classes load and the JIT compiles.
+     */
+    public void setBudget(long bytesPerFrame, long warmup) {
+        this.budget = bytesPerFrame;
+        this.warmupFrames = warmup;
+    }
+
+    /**
+     * Starts a frame.
+     */
+    public void beginFrame() {
+        Arrays.fill(this.current, 0);
+        this.frameStart = this.threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Starts a phase of the frame. A phase that is started again before it ends, such as the hit dispatch
+     * of a block whose listener hits another block, is measured once from the outermost start.
+     *
+     * @param phase the phase.
+     */
+    public void begin(Phase phase) {
+        if (this.depth[phase.ordinal()]++ == 0) {
+            this.phaseStart[phase.ordinal()] = this.threads.getCurrentThreadAllocatedBytes();
+        }
+    }
+
+    /**
+     * Ends a phase of the frame.
+     *
+     * @param phase the phase.
+     */
+    public void end(Phase phase) {
+        if (--this.depth[phase.ordinal()] == 0) {
+            this.current[phase.ordinal()] += this.threads.getCurrentThreadAllocatedBytes()
+                    - this.phaseStart[phase.ordinal()];
+        }
+    }
+
+    /**
+     * Ends a frame and records it.
+     *
+     * @throws IllegalStateException in strict mode, if the median allocation is over the budget.
+     */
+    public void endFrame() {
+        long total = this.threads.getCurrentThreadAllocatedBytes() - this.frameStart;
+        int slot = (int) (this.frames % this.window);
+        for (int p = 0; p < this.current.length; p++) {
+            this.samples[p][slot] = this.current[p];
+        }
+        this.samples[this.current.length][slot] = total;
+        this.frames++;
+        if (this.budget >= 0 && this.frames >= this.warmupFrames + this.window && slot == this.window - 1) {
+            double median = percentile(null, 50);
+            if (median > this.budget) {
+                throw new IllegalStateException("allocation budget exceeded: median " + median
+                        + " bytes per frame, budget " + this.budget + "\n" + report());
+            }
+        }
+    }
+
+    /**
+     * Returns the number of frames recorded.
+     *
+     * @return the number of frames.
+     */
+    public long getFrames() {
+        return this.frames;
+    }
+
+    /**
+     * Returns a percentile of the bytes allocated per frame, over the recent frames.
+     *
+     * @param phase the phase, or {@code null} for the whole frame.
+     * @param p     the percentile, from 0 to 100.
+     * @return the number of bytes, 0 if no frame was recorded.
+     */
+    public double percentile(Phase phase, double p) {
+        int count = (int) Math.min(this.frames, this.window);
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(this.samples[phase == null ? this.current.length : phase.ordinal()], count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(p / 100 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /**
+     * Describes the recent allocation of the frame and of every phase.
+     *
+     * @return the p50, p90, p99 and maximum bytes per frame, one line per phase.
+     */
+    public String report() {
+        StringBuilder text = new StringBuilder();
+        text.append("bytes allocated per frame over the last ").append(Math.min(this.frames, this.window))
+                .append(" frames (p50 / p90 / p99 / max)\n");
+        appendLine(text, "frame", null);
+        for (Phase phase : Phase.values()) {
+            appendLine(text, phase.name().toLowerCase(), phase);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Adds the percentiles of a phase to the report.
+     *
+     * @param text  the report.
+     * @param name  the name of the line.
+     * @param phase the phase, or {@code null} for the whole frame.
+     */
+    private void appendLine(StringBuilder text, String name, Phase phase) {
+        text.append(name);
+        for (int i = 0; i < REPORTED.length; i++) {
+            text.append(i == 0 ? ": " : " / ").append((long) percentile(phase, REPORTED[i]));
+        }
+        text.append('\n');
+    }
+}
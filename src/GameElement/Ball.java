@@ -1,8 +1,13 @@
 // Ori Kenigsbuch
 package GameElement;
 
-import Geometry.Line;
+import Geometry.FixedPoint;
 import Geometry.Point;
+import Geometry.RayHit;
+import Geometry.Vec2;
+import GameObjects.Collidable;
+import GameObjects.CollisionInfo;
+import GameObjects.Hitter;
 import GameObjects.Sprite;
 import biuoop.DrawSurface;
 import java.awt.Color;
@@ -13,13 +18,36 @@ import java.awt.Color;
  * radius, color, and velocity. It provides methods for accessing and modifying
  * the ball's properties, as well as methods for moving and drawing the ball.
  */
-public class Ball implements Sprite {
-    private Point center;
+public class Ball implements Sprite, Hitter {
+    // the most bounces resolved within one frame in continuous collision mode
+    private static final int MAX_BOUNCES = 4;
+    // how far the ball is kept from a surface it bounced off
+    private static final double SKIN = 0.01;
+
+    // updated in place, so moving the ball does not allocate
+    private final Vec2 center;
+    // the center before the last tick, drawn frames are interpolated from it to the center
+    private final Vec2 previous;
     private int radius;
     private Color color;
     private Velocity v;
     private GameEnvironment environment;
     private Game game;
+    // the state of the ball in fixed point, kept between steps while the environment is in fixed point
+    private long fixedX;
+    private long fixedY;
+    private long fixedDx;
+    private long fixedDy;
+    // the velocity fixedDx and fixedDy were taken from
+    private Velocity fixedVelocity;
+    private RayHit fixedHit;
+    private CollisionInfo fixedCollision;
+    private final RayHit hit;
+    // set while the ball is moved by an ImpactScheduler, center is then its position at baseTime
+    private ImpactScheduler scheduler;
+    private double baseTime;
+    // set while the ball is stepped by a ParallelBallStepper
+    private ParallelBallStepper stepper;
 
     /**
      * Constructs a new GameElement.Ball with the specified center, radius, and color.
@@ -31,7 +59,9 @@ public class Ball implements Sprite {
      * @param environment The environment of the game.
      */
     public Ball(Point center, int r, Color color, Velocity v, GameEnvironment environment) {
-        this.center = center;
+        this.center = new Vec2(center.getX(), center.getY());
+        this.previous = new Vec2(center.getX(), center.getY());
+        this.hit = new RayHit();
         this.radius = r;
         this.color = color;
         this.v = v;
@@ -50,7 +80,9 @@ public class Ball implements Sprite {
      * @param game the game object.
      */
     public Ball(double x, double y, int r, Color color, GameEnvironment environment, Game game) {
-        this.center = new Point(x, y);
+        this.center = new Vec2(x, y);
+        this.previous = new Vec2(x, y);
+        this.hit = new RayHit();
         this.radius = r;
         this.color = color;
         this.environment = environment;
@@ -66,7 +98,7 @@ public class Ball implements Sprite {
      */
 
     public int getX() {
-        return (int) Math.round(center.getX());
+        return (int) Math.round(this.exactX());
     }
 
     /**
@@ -75,7 +107,33 @@ public class Ball implements Sprite {
      * @return The y-coordinate of the center point.
      */
     public int getY() {
-        return (int) Math.round(center.getY());
+        return (int) Math.round(this.exactY());
+    }
+
+    /**
+     * Gets the exact x-coordinate of the center point of the ball. A ball moved by an
+     * {@link ImpactScheduler} is extrapolated to the current time of the scheduler.
+     *
+     * @return The x-coordinate of the center point.
+     */
+    double exactX() {
+        if (this.scheduler == null || this.v == null) {
+            return this.center.getX();
+        }
+        return this.center.getX() + this.v.getDx() * (this.scheduler.now() - this.baseTime);
+    }
+
+    /**
+     * Gets the exact y-coordinate of the center point of the ball. A ball moved by an
+     * {@link ImpactScheduler} is extrapolated to the current time of the scheduler.
+     *
+     * @return The y-coordinate of the center point.
+     */
+    double exactY() {
+        if (this.scheduler == null || this.v == null) {
+            return this.center.getY();
+        }
+        return this.center.getY() + this.v.getDy() * (this.scheduler.now() - this.baseTime);
     }
 
 //    /**
@@ -103,7 +161,12 @@ public class Ball implements Sprite {
      * @param p The new center point.
      */
     public void setCenter(Point p) {
-        this.center = new Point(p.getX(), p.getY());
+        this.center.set(p.getX(), p.getY());
+        this.previous.set(p.getX(), p.getY());
+        if (this.scheduler != null) {
+            this.baseTime = this.scheduler.now();
+            this.scheduler.reschedule(this);
+        }
     }
 
     /**
@@ -116,13 +179,27 @@ public class Ball implements Sprite {
     }
 
     /**
-     * Draws the ball on the given DrawSurface.
+     * Draws the ball on the given DrawSurface, between its positions in the last two ticks as the game
+     * loop asks (see {@link Game#getRenderAlpha()}).
+     * A ball outside a game is drawn where it is.
      *
      * @param surface The DrawSurface on which to draw the ball.
      */
     public void drawOn(DrawSurface surface) {
         surface.setColor(this.color);
-        surface.fillCircle((int) center.getX(), (int) center.getY(), radius);
+        double lag = this.game == null ? 0 : 1 - this.game.getRenderAlpha();
+        double x = this.exactX();
+        double y = this.exactY();
+        if (this.scheduler != null && this.v != null) {
+            // a scheduled ball moves in a straight line between impacts, so it is drawn where it was
+            double back = lag * this.environment.getTimeStep();
+            x -= this.v.getDx() * back;
+            y -= this.v.getDy() * back;
+        } else if (this.scheduler == null) {
+            x -= (x - this.previous.getX()) * lag;
+            y -= (y - this.previous.getY()) * lag;
+        }
+        surface.fillCircle((int) x, (int) y, radius);
     }
 
     /**
@@ -131,6 +208,12 @@ public class Ball implements Sprite {
      * @param v The new velocity.
      */
     public void setVelocity(Velocity v) {
+        if (this.scheduler != null) {
+            this.rebase(this.scheduler.now());
+            this.v = v;
+            this.scheduler.reschedule(this);
+            return;
+        }
         this.v = v;
     }
 
@@ -141,7 +224,7 @@ public class Ball implements Sprite {
      * @param dy The change in y-coordinate.
      */
     public void setVelocity(double dx, double dy) {
-        this.v = new Velocity(dx, dy);
+        this.setVelocity(new Velocity(dx, dy));
     }
 
     /**
@@ -189,71 +272,302 @@ public class Ball implements Sprite {
      */
     @Override
     public void timePassed() {
-        this.moveOneStep();
+        if (this.scheduler != null || this.stepper != null) {
+            // the scheduler or the stepper moves the ball
+            return;
+        }
+        this.step(null);
     }
 
     /**
      * Moves the ball one step based on its current velocity.
-     * Updates the center of the ball according to its velocity.
+     * Updates the center of the ball according to its velocity, times the time step of the environment.
      */
     public void moveOneStep() {
-        double almostX;
-        double almostY;
-        Line trajectory = new Line(this.getX(), this.getY(),
-                this.getX() + this.getVelocity().getDx(), this.getY() + this.getVelocity().getDy());
-        if (this.environment.getClosestCollision(trajectory) == null) {
-            this.center = this.getVelocity().applyToPoint(this.center);
+        this.move(null);
+    }
+
+    /**
+     * Makes the first collision query of the next step ahead of time, without changing the ball or the
+     * environment, so it can run on any thread (see {@link ParallelBallStepper}). Steps in fixed point, or
+     * with a {@link ShadowVerifier} sampling the queries, are not planned.
+     *
+     * @param plan the {@link StepPlan} the answer is written to.
+     */
+    void plan(StepPlan plan) {
+        plan(plan, null);
+    }
+
+    /**
+     * Plans the next step like {@link #plan(StepPlan)}, but when the step starts with the query of a point
+     * its trajectory is added to the given batch instead, for {@link StepPlan#resolve(CollisionBatch)} to
+     * take the answer from once the batch is queried.
+     *
+     * @param plan  the {@link StepPlan} the answer is written to.
+     * @param batch the {@link CollisionBatch} point queries are added to, or {@code null} to make them now.
+     */
+    void plan(StepPlan plan, CollisionBatch batch) {
+        if (this.environment.isFixedPoint() || this.environment.getShadowVerifier() != null || this.v == null) {
+            plan.serial();
+            return;
+        }
+        double step = this.environment.getTimeStep();
+        double cx = this.center.getX();
+        double cy = this.center.getY();
+        double reach = this.v.getSpeed() * step + this.radius + 1;
+        if (this.environment.isFarFromGeometry(cx, cy, reach)) {
+            plan.set(StepPlan.FAR, null, cx - reach, cy - reach, cx + reach, cy + reach);
+            return;
+        }
+        double dx = this.v.getDx() * step;
+        double dy = this.v.getDy() * step;
+        boolean continuous = this.environment.isContinuousCollision();
+        double x = continuous ? cx : this.getX();
+        double y = continuous ? cy : this.getY();
+        if (batch != null && !continuous) {
+            plan.batched(batch.add(x, y, dx, dy), Math.min(x, x + dx) - reach, Math.min(y, y + dy) - reach,
+                    Math.max(x, x + dx) + reach, Math.max(y, y + dy) + reach);
+            return;
+        }
+        Collidable object = this.environment.getClosestCollision(x, y, dx, dy, continuous ? this.radius : 0,
+                plan.hit(), plan.scratch());
+        // the box covers the rounded start of a point and the disc of a continuous ball
+        plan.set(StepPlan.QUERIED, object, Math.min(x, x + dx) - reach, Math.min(y, y + dy) - reach,
+                Math.max(x, x + dx) + reach, Math.max(y, y + dy) + reach);
+    }
+
+    /**
+     * Moves the ball one step, remembering where it was for drawing in between ticks.
+     *
+     * @param plan the {@link StepPlan} of the step, or {@code null} to make the query now.
+     */
+    void step(StepPlan plan) {
+        this.previous.set(this.center.getX(), this.center.getY());
+        this.move(plan);
+    }
+
+    /**
+     * Moves the ball one step, using the answer of a plan as the first query if there is one.
+     *
+     * @param plan the {@link StepPlan} of the step, or {@code null}.
+     */
+    private void move(StepPlan plan) {
+        if (plan != null && plan.kind() == StepPlan.SERIAL) {
+            plan = null;
+        }
+        if (this.environment.isFixedPoint()) {
+            this.moveFixed();
+            return;
+        }
+        double step = this.environment.getTimeStep();
+        // nothing can be hit when all geometry is further than the step (the 1 covers the rounded start)
+        if (plan != null ? plan.kind() == StepPlan.FAR : this.environment.isFarFromGeometry(this.center.getX(),
+                this.center.getY(), this.v.getSpeed() * step + this.radius + 1)) {
+            this.center.addTo(this.v.getDx() * step, this.v.getDy() * step);
+            return;
+        }
+        if (this.environment.isContinuousCollision()) {
+            this.moveContinuously(plan);
+            return;
+        }
+        double x = this.getX();
+        double y = this.getY();
+        double dx = this.v.getDx() * step;
+        double dy = this.v.getDy() * step;
+        Collidable object = plan == null ? this.environment.getClosestCollision(x, y, dx, dy, this.hit)
+                : planned(plan);
+        if (object == null) {
+            this.center.addTo(dx, dy);
         } else {
-            //x value of collision point
-            double colpX =  this.environment.getClosestCollision(trajectory).collisionPoint().getX();
-            //y value of collision point
-            double colpY =  this.environment.getClosestCollision(trajectory).collisionPoint().getY();
-            //x value of collidable upperLeft point
-            double xcolid = this.environment.getClosestCollision(trajectory).collisionObject().
-                    getCollisionRectangle().getUpperLeft().getX();
-            //y value of collidable upperLeft point
-            double ycolid = this.environment.getClosestCollision(trajectory).collisionObject().
-                    getCollisionRectangle().getUpperLeft().getY();
-            //collidable width
-            double colWidth = this.environment.getClosestCollision(trajectory).collisionObject().getCollisionRectangle()
-                    .getWidth();
-            //collidable height
-            double colHeight = this.environment.getClosestCollision(trajectory).collisionObject().
-                    getCollisionRectangle().getHeight();
-
-            double xDiffrence = Math.abs(trajectory.start().getX() - colpX);
-            double yDiffrence = Math.abs(trajectory.start().getY() - colpY);
+            double t = this.hit.getT();
+            CollisionInfo collision = new CollisionInfo(new Point(x + t * dx, y + t * dy), object, this.hit);
+            // bring the ball almost to the collision point
+            double almost = t * 0.99;
+            this.center.addTo(dx * almost, dy * almost);
+            Velocity before = this.v;
+            this.setVelocity(object.hit(this, collision, before));
+            this.environment.checkBounce(collision, before, this.getVelocity());
+            this.center.addTo(this.v.getDx() * step, this.v.getDy() * step);
+        }
+    }
 
+    /**
+     * Takes the answer of a plan as the answer of a query.
+     *
+     * @param plan the {@link StepPlan}.
+     * @return the collidable that is hit, its hit copied to {@link #hit}, or {@code null}.
+     */
+    private Collidable planned(StepPlan plan) {
+        if (plan.object() != null) {
+            this.hit.set(plan.hit());
+        }
+        return plan.object();
+    }
+
+    /**
+     * Moves the ball one step in fixed point (see {@link FixedPoint}).
+     * <p>
+     * The center and velocity are kept in fixed point from step to step, and the step is taken with
+     * integer arithmetic only, like {@link #moveOneStep()}: the ball is brought almost to the collision
+     * point, bounces, and moves one step with its new velocity. The double center is only a copy of the
+     * fixed-point one, which is exact; when the center or the velocity is set from outside, the fixed-point
+     * state is rounded from them again. A hit reuses one {@link CollisionInfo}, so the only object a step
+     * can allocate is the {@link Velocity} the collidable returns.
+     * </p>
+     */
+    private void moveFixed() {
+        if (this.fixedHit == null) {
+            this.fixedHit = new RayHit();
+            this.fixedCollision = new CollisionInfo();
+        }
+        if (this.center.getX() != FixedPoint.toDouble(this.fixedX)
+                || this.center.getY() != FixedPoint.toDouble(this.fixedY)) {
+            this.fixedX = FixedPoint.fromDouble(this.center.getX());
+            this.fixedY = FixedPoint.fromDouble(this.center.getY());
+        }
+        roundVelocity();
+        long step = FixedPoint.fromDouble(this.environment.getTimeStep());
+        long dx = FixedPoint.mul(this.fixedDx, step);
+        long dy = FixedPoint.mul(this.fixedDy, step);
+        Collidable hit = this.environment.getClosestCollision(this.fixedX, this.fixedY, dx, dy, this.fixedHit);
+        if (hit != null) {
+            long t = FixedPoint.fromDouble(this.fixedHit.getT());
+            this.fixedCollision.set(FixedPoint.toDouble(this.fixedX + FixedPoint.mul(dx, t)),
+                    FixedPoint.toDouble(this.fixedY + FixedPoint.mul(dy, t)), hit, this.fixedHit);
             // bring the ball almost to the collision point
-            if (trajectory.start().getX() > colpX) {
-                almostX = this.center.getX() - xDiffrence * 0.99;
-            } else {
-                almostX = this.center.getX() + xDiffrence * 0.99;
-            }
-            if (trajectory.start().getY() > colpY) {
-                almostY = this.center.getY() - yDiffrence * 0.99;
-            } else {
-                almostY = this.center.getY() + yDiffrence * 0.99;
+            long almost = t - t / 100;
+            this.fixedX += FixedPoint.mul(dx, almost);
+            this.fixedY += FixedPoint.mul(dy, almost);
+            this.setVelocity(hit.hit(this, this.fixedCollision, this.v));
+            roundVelocity();
+            dx = FixedPoint.mul(this.fixedDx, step);
+            dy = FixedPoint.mul(this.fixedDy, step);
+        }
+        this.fixedX += dx;
+        this.fixedY += dy;
+        this.center.set(FixedPoint.toDouble(this.fixedX), FixedPoint.toDouble(this.fixedY));
+    }
+
+    /**
+     * Rounds the velocity of the ball to fixed point, if it was set since it was last rounded.
+     */
+    private void roundVelocity() {
+        if (this.v != this.fixedVelocity) {
+            this.fixedVelocity = this.v;
+            this.fixedDx = FixedPoint.fromDouble(this.v.getDx());
+            this.fixedDy = FixedPoint.fromDouble(this.v.getDy());
+        }
+    }
+
+    /**
+     * Moves the ball one step with continuous collision detection.
+     * <p>
+     * The whole disc of the ball is swept along its velocity, from its exact (not rounded) center.
+     * When it touches a collidable, the ball is moved to the point of contact, bounces, and the rest of
+     * the step is swept again with the new velocity, up to {@value #MAX_BOUNCES} times. A ball in open
+     * space therefore costs one query per step, and only balls that reach geometry pay for more.
+     * </p>
+     *
+     * @param plan the {@link StepPlan} with the answer of the first sweep, or {@code null}.
+     */
+    private void moveContinuously(StepPlan plan) {
+        double remaining = this.environment.getTimeStep();
+        for (int i = 0; i < MAX_BOUNCES && remaining > 0; i++) {
+            double dx = this.v.getDx() * remaining;
+            double dy = this.v.getDy() * remaining;
+            double x = this.center.getX();
+            double y = this.center.getY();
+            Collidable object = i == 0 && plan != null ? planned(plan)
+                    : this.environment.getClosestCollision(x, y, dx, dy, this.radius, this.hit);
+            if (object == null) {
+                this.center.addTo(dx, dy);
+                return;
             }
+            double t = this.hit.getT();
+            // the point of contact is on the collidable, one radius from the center along the normal
+            CollisionInfo collision = new CollisionInfo(new Point(x + t * dx - this.hit.getNormalX() * this.radius,
+                    y + t * dy - this.hit.getNormalY() * this.radius), object, this.hit);
+            this.center.set(x + dx * t + this.hit.getNormalX() * SKIN, y + dy * t + this.hit.getNormalY() * SKIN);
+            this.setVelocity(object.hit(this, collision, this.getVelocity()));
+            remaining *= 1 - t;
+        }
+    }
 
-            this.center = new Point(almostX, almostY);
-            Point collisionPoint = this.environment.getClosestCollision(trajectory).collisionPoint();
-            this.setVelocity(this.environment.getClosestCollision(trajectory).collisionObject().hit(this, collisionPoint,
-                    this.getVelocity()));
-            this.center = this.getVelocity().applyToPoint(this.center);
+    /**
+     * Hands the ball over to an {@link ImpactScheduler}, from the scheduler's current time.
+     *
+     * @param impactScheduler the scheduler that moves the ball from now on.
+     */
+    void attach(ImpactScheduler impactScheduler) {
+        this.scheduler = impactScheduler;
+        this.baseTime = impactScheduler.now();
+    }
 
-            double x = this.getX();
-            double y = this.getY();
-            double dx = this.getVelocity().getDx();
-            double dy = this.getVelocity().getDy();
+    /**
+     * Hands the ball over to a {@link ParallelBallStepper}, or takes it back.
+     *
+     * @param parallelStepper the stepper that moves the ball from now on, or {@code null}.
+     */
+    void attach(ParallelBallStepper parallelStepper) {
+        this.stepper = parallelStepper;
+    }
+
+    /**
+     * Returns the {@link ParallelBallStepper} the ball is stepped by.
+     *
+     * @return the stepper, or {@code null}.
+     */
+    ParallelBallStepper stepper() {
+        return this.stepper;
+    }
+
+    /**
+     * Returns true while the ball is moved by an {@link ImpactScheduler}.
+     *
+     * @return whether the ball is scheduled.
+     */
+    boolean isScheduled() {
+        return this.scheduler != null;
+    }
+
+    /**
+     * Takes the ball back from its {@link ImpactScheduler}, at the position it has now.
+     */
+    void detach() {
+        this.center.set(this.exactX(), this.exactY());
+        this.scheduler = null;
+    }
+
+    /**
+     * Moves the stored center of a scheduled ball to its position at the given time.
+     *
+     * @param time the time, in frames of the scheduler.
+     */
+    void rebase(double time) {
+        double elapsed = time - this.baseTime;
+        this.baseTime = time;
+        if (this.v == null) {
+            return;
         }
+        this.center.addTo(this.v.getDx() * elapsed, this.v.getDy() * elapsed);
+    }
+
+    /**
+     * Shifts the stored center of the ball, without predicting its next impact again.
+     *
+     * @param dx the change in x.
+     * @param dy the change in y.
+     */
+    void nudge(double dx, double dy) {
+        this.center.addTo(dx, dy);
     }
 
     /**
      * adding the ball to the game.
      */
     public void addToGame(Game g) {
-        g.addSprite(this);
+        this.game = g;
+        g.addBall(this);
     }
 
     /**
@@ -261,7 +575,7 @@ public class Ball implements Sprite {
      * @param game the game to remove the ball from.
      */
     public void removeFromGame(Game game) {
-        game.removeSprite(this);
+        game.removeBall(this);
     }
 
     /**
@@ -0,0 +1,192 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import GameObjects.Sprite;
+import biuoop.DrawSurface;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The BallCollisions class makes the balls of a game bounce off each other.
+ * <p>
+ * Every frame the ball centers are sorted into a spatial hash whose cells are as wide as the largest
+ * ball, so two touching balls are always in the same or in neighbouring cells. Only the balls of those
+ * cells are tested against each other, which keeps a frame roughly linear in the number of balls. The
+ * hash is a counting sort into arrays that are reused from frame to frame, so rebuilding it does not
+ * allocate once the arrays are large enough.
+ * </p>
+ * <p>
+ * Balls have equal mass: two balls that touch while moving towards each other exchange the components
+ * of their velocities along the line between their centers.
+ * </p>
+ */
+public class BallCollisions implements Sprite {
+    private final List<Ball> balls;
+    private double[] xs;
+    private double[] ys;
+    private int[] cellXs;
+    private int[] cellYs;
+    private int[] buckets;
+    private int[] bucketStart;
+    private int[] sorted;
+    private int mask;
+
+    /**
+     * Constructs a BallCollisions with no balls.
+     */
+    public BallCollisions() {
+        this.balls = new ArrayList<>();
+        this.xs = new double[0];
+        this.ys = new double[0];
+        this.cellXs = new int[0];
+        this.cellYs = new int[0];
+        this.buckets = new int[0];
+        this.sorted = new int[0];
+        this.bucketStart = new int[1];
+    }
+
+    /**
+     * Adds a ball that should bounce off the other balls.
+     *
+     * @param b the {@link Ball} to add.
+     */
+    public void addBall(Ball b) {
+        this.balls.add(b);
+    }
+
+    /**
+     * Removes a ball added with {@link #addBall}.
+     *
+     * @param b the {@link Ball} to remove.
+     */
+    public void removeBall(Ball b) {
+        this.balls.remove(b);
+    }
+
+    /**
+     * Resolves the collisions between the balls at their current positions.
+     */
+    @Override
+    public void timePassed() {
+        int n = this.balls.size();
+        if (n < 2) {
+            return;
+        }
+        buildHash(n);
+        for (int i = 0; i < n; i++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    int cx = this.cellXs[i] + dx;
+                    int cy = this.cellYs[i] + dy;
+                    int bucket = hash(cx, cy);
+                    for (int k = this.bucketStart[bucket]; k < this.bucketStart[bucket + 1]; k++) {
+                        int j = this.sorted[k];
+                        // several cells can share a bucket, each pair is resolved once from its lower index
+                        if (j > i && this.cellXs[j] == cx && this.cellYs[j] == cy) {
+                            resolve(i, j);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Balls draw themselves, there is nothing else to draw.
+     *
+     * @param d the {@link DrawSurface}.
+     */
+    @Override
+    public void drawOn(DrawSurface d) {
+    }
+
+    /**
+     * Sorts the ball centers into the spatial hash.
+     *
+     * @param n the number of balls.
+     */
+    private void buildHash(int n) {
+        if (this.xs.length < n) {
+            int capacity = Math.max(n, this.xs.length * 2);
+            this.xs = new double[capacity];
+            this.ys = new double[capacity];
+            this.cellXs = new int[capacity];
+            this.cellYs = new int[capacity];
+            this.buckets = new int[capacity];
+            this.sorted = new int[capacity];
+        }
+        int tableSize = Integer.highestOneBit(Math.max(n * 2 - 1, 1)) << 1;
+        if (this.bucketStart.length < tableSize + 1) {
+            this.bucketStart = new int[tableSize + 1];
+        }
+        this.mask = tableSize - 1;
+
+        int maxRadius = 1;
+        for (int i = 0; i < n; i++) {
+            Ball b = this.balls.get(i);
+            this.xs[i] = b.exactX();
+            this.ys[i] = b.exactY();
+            maxRadius = Math.max(maxRadius, b.getSize());
+        }
+        double cellSize = 2 * maxRadius;
+        for (int i = 0; i <= tableSize; i++) {
+            this.bucketStart[i] = 0;
+        }
+        for (int i = 0; i < n; i++) {
+            this.cellXs[i] = (int) Math.floor(this.xs[i] / cellSize);
+            this.cellYs[i] = (int) Math.floor(this.ys[i] / cellSize);
+            this.buckets[i] = hash(this.cellXs[i], this.cellYs[i]);
+            this.bucketStart[this.buckets[i]]++;
+        }
+        // bucketStart[b] becomes the end of bucket b
+        for (int i = 1; i < tableSize; i++) {
+            this.bucketStart[i] += this.bucketStart[i - 1];
+        }
+        this.bucketStart[tableSize] = n;
+        // fill every bucket from its end, which leaves bucketStart[b] at the first ball of bucket b
+        for (int i = n - 1; i >= 0; i--) {
+            this.sorted[--this.bucketStart[this.buckets[i]]] = i;
+        }
+    }
+
+    /**
+     * Returns the bucket of the given cell.
+     *
+     * @param cx the column of the cell.
+     * @param cy the row of the cell.
+     * @return the index of the bucket.
+     */
+    private int hash(int cx, int cy) {
+        return (cx * 73856093 ^ cy * 19349663) & this.mask;
+    }
+
+    /**
+     * Bounces two balls off each other if they touch and move towards each other.
+     *
+     * @param i the index of the first ball.
+     * @param j the index of the second ball.
+     */
+    private void resolve(int i, int j) {
+        Ball a = this.balls.get(i);
+        Ball b = this.balls.get(j);
+        double dx = this.xs[j] - this.xs[i];
+        double dy = this.ys[j] - this.ys[i];
+        double reach = a.getSize() + b.getSize();
+        double distanceSquared = dx * dx + dy * dy;
+        if (distanceSquared >= reach * reach || distanceSquared == 0
+                || a.getVelocity() == null || b.getVelocity() == null) {
+            return;
+        }
+        double distance = Math.sqrt(distanceSquared);
+        double nx = dx / distance;
+        double ny = dy / distance;
+        Velocity va = a.getVelocity();
+        Velocity vb = b.getVelocity();
+        double approach = (vb.getDx() - va.getDx()) * nx + (vb.getDy() - va.getDy()) * ny;
+        if (approach >= 0) {
+            return;
+        }
+        a.setVelocity(va.getDx() + approach * nx, va.getDy() + approach * ny);
+        b.setVelocity(vb.getDx() - approach * nx, vb.getDy() - approach * ny);
+    }
+}
@@ -0,0 +1,376 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import GameObjects.Collidable;
+import GameObjects.CollisionInfo;
+import GameObjects.Hitter;
+import GameObjects.Sprite;
+import Geometry.RayHit;
+import biuoop.DrawSurface;
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * The BallSystem class moves and draws many balls at once, for multi-ball modes.
+ * <p>
+ * Instead of one {@link Ball} object per ball, with a {@link Geometry.Vec2} center and a {@link Velocity},
+ * the system keeps all of its balls in parallel arrays (position, velocity, radius, color and an alive
+ * flag) indexed by slot, and advances them in one loop over the arrays. Collisions are looked up with the
+ * query of the environment that writes to a reused {@link RayHit}
+ * ({@link GameEnvironment#getClosestCollision(double, double, double, double, RayHit)}), and when the
+ * environment keeps a distance field, balls far from all geometry skip the query and just move. Memory
+ * stays flat: nothing is allocated per ball and frame, except for the {@link Velocity} objects passed to
+ * and returned by {@link Collidable#hit} in an actual bounce.
+ * </p>
+ * <p>
+ * A ball of the system takes the same step as {@link Ball#moveOneStep()}: the query starts at its center
+ * rounded to whole pixels, and the ball is moved from its exact center, so a ball of the system and a
+ * {@link Ball} with the same start follow the same path. Balls are moved as points in double precision;
+ * the system does not run in fixed point or with continuous collision detection, is not moved by the
+ * event-driven or parallel engines, and its balls do not bounce off each other.
+ * </p>
+ * <p>
+ * Collidables and hit listeners see a ball of the system as a {@link Hitter}: a lightweight handle
+ * (see {@link #handle(int)}) that reads and writes the arrays of its slot, so
+ * {@link Listeners.BallRemover} and {@link Listeners.BlockRemover} keep working unchanged.
+ * </p>
+ */
+public class BallSystem implements Sprite {
+    // how close to the collision point a ball is brought before it bounces, as in Ball
+    private static final double ALMOST = 0.99;
+
+    private final GameEnvironment environment;
+    private final RayHit hit;
+    private final CollisionInfo collision;
+    // the game the system is drawn in, null until it is added to one
+    private Game game;
+    private double[] xs;
+    private double[] ys;
+    // the centers of the balls before the last step, for drawing in between ticks
+    private double[] previousXs;
+    private double[] previousYs;
+    private double[] dxs;
+    private double[] dys;
+    private int[] radii;
+    private Color[] colors;
+    private boolean[] alive;
+    private Handle[] handles;
+    // the slots of removed balls, reused before the arrays grow
+    private int[] freeSlots;
+    private int freeCount;
+    // the number of slots in use, live or free
+    private int capacityUsed;
+    private int liveCount;
+
+    /**
+     * Constructs an empty BallSystem.
+     *
+     * @param environment the {@link GameEnvironment} the balls move in.
+     * @param capacity    the number of balls the system holds before its arrays have to grow.
+     */
+    public BallSystem(GameEnvironment environment, int capacity) {
+        this.environment = environment;
+        int size = Math.max(capacity, 1);
+        this.hit = new RayHit();
+        this.collision = new CollisionInfo();
+        this.xs = new double[size];
+        this.ys = new double[size];
+        this.previousXs = new double[size];
+        this.previousYs = new double[size];
+        this.dxs = new double[size];
+        this.dys = new double[size];
+        this.radii = new int[size];
+        this.colors = new Color[size];
+        this.alive = new boolean[size];
+        this.handles = new Handle[size];
+        this.freeSlots = new int[size];
+    }
+
+    /**
+     * Adds a ball to the system.
+     *
+     * @param x     the x value of the center of the ball.
+     * @param y     the y value of the center of the ball.
+     * @param r     the radius of the ball.
+     * @param color the color of the ball.
+     * @param dx    the change in x per step.
+     * @param dy    the change in y per step.
+     * @return the slot of the ball.
+     */
+    public int add(double x, double y, int r, Color color, double dx, double dy) {
+        int slot;
+        if (this.freeCount > 0) {
+            slot = this.freeSlots[--this.freeCount];
+        } else {
+            if (this.capacityUsed == this.xs.length) {
+                grow();
+            }
+            slot = this.capacityUsed++;
+        }
+        this.xs[slot] = x;
+        this.ys[slot] = y;
+        this.previousXs[slot] = x;
+        this.previousYs[slot] = y;
+        this.dxs[slot] = dx;
+        this.dys[slot] = dy;
+        this.radii[slot] = r;
+        this.colors[slot] = color;
+        this.alive[slot] = true;
+        this.liveCount++;
+        return slot;
+    }
+
+    /**
+     * Removes the ball of the given slot. Its handle, if it has one, stops referring to any ball.
+     *
+     * @param slot the slot of the ball.
+     */
+    public void remove(int slot) {
+        if (!isAlive(slot)) {
+            return;
+        }
+        this.alive[slot] = false;
+        this.colors[slot] = null;
+        this.liveCount--;
+        if (this.handles[slot] != null) {
+            this.handles[slot].slot = -1;
+            this.handles[slot] = null;
+        }
+        this.freeSlots[this.freeCount++] = slot;
+    }
+
+    /**
+     * Returns true if the given slot holds a ball.
+     *
+     * @param slot the slot.
+     * @return whether there is a live ball in the slot.
+     */
+    public boolean isAlive(int slot) {
+        return slot >= 0 && slot < this.capacityUsed && this.alive[slot];
+    }
+
+    /**
+     * Returns the number of balls in the system.
+     *
+     * @return the number of live balls.
+     */
+    public int size() {
+        return this.liveCount;
+    }
+
+    /**
+     * Returns the x value of the center of a ball.
+     *
+     * @param slot the slot of the ball.
+     * @return the x value.
+     */
+    public double getX(int slot) {
+        return this.xs[slot];
+    }
+
+    /**
+     * Returns the y value of the center of a ball.
+     *
+     * @param slot the slot of the ball.
+     * @return the y value.
+     */
+    public double getY(int slot) {
+        return this.ys[slot];
+    }
+
+    /**
+     * Returns the {@link Hitter} that stands for the ball of the given slot. The handle holds no state of
+     * its own, every call reads or writes the arrays of the system, and it is created once per slot. Once
+     * the ball is removed the handle no longer refers to it, and a new ball in the same slot gets a new
+     * handle.
+     *
+     * @param slot the slot of a live ball.
+     * @return the handle of the ball.
+     */
+    public Hitter handle(int slot) {
+        if (!isAlive(slot)) {
+            throw new IllegalArgumentException("no ball in slot " + slot);
+        }
+        if (this.handles[slot] == null) {
+            this.handles[slot] = new Handle(slot);
+        }
+        return this.handles[slot];
+    }
+
+    /**
+     * Adds the system to the game as a sprite.
+     *
+     * @param g the {@link Game}.
+     */
+    public void addToGame(Game g) {
+        this.game = g;
+        g.addSprite(this);
+    }
+
+    /**
+     * Removes the system, and all of its balls, from the game.
+     *
+     * @param g the {@link Game}.
+     */
+    public void removeFromGame(Game g) {
+        g.removeSprite(this);
+    }
+
+    /**
+     * Moves every ball one step, like {@link Ball#moveOneStep()} moves a ball.
+     *
+     * @throws IllegalStateException if the environment is in fixed point or uses continuous collision
+     *                               detection, which the system does not support.
+     */
+    @Override
+    public void timePassed() {
+        if (this.environment.isFixedPoint() || this.environment.isContinuousCollision()) {
+            throw new IllegalStateException("a BallSystem moves its balls as points in double precision");
+        }
+        double step = this.environment.getTimeStep();
+        for (int i = 0; i < this.capacityUsed; i++) {
+            if (!this.alive[i]) {
+                continue;
+            }
+            double vx = this.dxs[i];
+            double vy = this.dys[i];
+            this.previousXs[i] = this.xs[i];
+            this.previousYs[i] = this.ys[i];
+            double dx = vx * step;
+            double dy = vy * step;
+            // nothing can be hit when all geometry is further than the step (the 1 covers the rounded start)
+            if (this.environment.isFarFromGeometry(this.xs[i], this.ys[i],
+                    Math.sqrt(vx * vx + vy * vy) * step + this.radii[i] + 1)) {
+                this.xs[i] += dx;
+                this.ys[i] += dy;
+                continue;
+            }
+            double x = Math.round(this.xs[i]);
+            double y = Math.round(this.ys[i]);
+            Collidable object = this.environment.getClosestCollision(x, y, dx, dy, this.hit);
+            if (object == null) {
+                this.xs[i] += dx;
+                this.ys[i] += dy;
+            } else {
+                bounce(i, object, x, y, dx, dy, step);
+            }
+        }
+    }
+
+    /**
+     * Draws every ball, between its positions in the last two ticks as the game loop asks (see
+     * {@link Game#getRenderAlpha()}). The color of the surface is only set again when it changes
+     * from ball to ball.
+     *
+     * @param d the {@link DrawSurface}.
+     */
+    @Override
+    public void drawOn(DrawSurface d) {
+        double lag = this.game == null ? 0 : 1 - this.game.getRenderAlpha();
+        Color current = null;
+        for (int i = 0; i < this.capacityUsed; i++) {
+            if (!this.alive[i]) {
+                continue;
+            }
+            if (this.colors[i] != current) {
+                current = this.colors[i];
+                d.setColor(current);
+            }
+            double x = this.xs[i] - (this.xs[i] - this.previousXs[i]) * lag;
+            double y = this.ys[i] - (this.ys[i] - this.previousYs[i]) * lag;
+            d.fillCircle((int) x, (int) y, this.radii[i]);
+        }
+    }
+
+    /**
+     * Brings a ball almost to its collision point, bounces it and moves it one step with its new velocity.
+     *
+     * @param i      the slot of the ball.
+     * @param object the collidable that is hit, the time of impact and sides are in {@link #hit}.
+     * @param x      the rounded x value the query started at.
+     * @param y      the rounded y value the query started at.
+     * @param dx     the change in x of the step.
+     * @param dy     the change in y of the step.
+     * @param step   the time step of the environment.
+     */
+    private void bounce(int i, Collidable object, double x, double y, double dx, double dy, double step) {
+        double t = this.hit.getT();
+        this.collision.set(x + t * dx, y + t * dy, object, this.hit);
+        double almost = t * ALMOST;
+        this.xs[i] += dx * almost;
+        this.ys[i] += dy * almost;
+        Velocity before = new Velocity(this.dxs[i], this.dys[i]);
+        Velocity after = object.hit(handle(i), this.collision, before);
+        this.environment.checkBounce(this.collision, before, after);
+        if (!this.alive[i]) {
+            return;
+        }
+        this.dxs[i] = after.getDx();
+        this.dys[i] = after.getDy();
+        this.xs[i] += this.dxs[i] * step;
+        this.ys[i] += this.dys[i] * step;
+    }
+
+    /**
+     * Doubles the number of balls the system can hold.
+     */
+    private void grow() {
+        int capacity = this.xs.length * 2;
+        this.xs = Arrays.copyOf(this.xs, capacity);
+        this.ys = Arrays.copyOf(this.ys, capacity);
+        this.previousXs = Arrays.copyOf(this.previousXs, capacity);
+        this.previousYs = Arrays.copyOf(this.previousYs, capacity);
+        this.dxs = Arrays.copyOf(this.dxs, capacity);
+        this.dys = Arrays.copyOf(this.dys, capacity);
+        this.radii = Arrays.copyOf(this.radii, capacity);
+        this.colors = Arrays.copyOf(this.colors, capacity);
+        this.alive = Arrays.copyOf(this.alive, capacity);
+        this.handles = Arrays.copyOf(this.handles, capacity);
+        this.freeSlots = Arrays.copyOf(this.freeSlots, capacity);
+    }
+
+    /**
+     * The {@link Hitter} of one slot of the system. It has no state but its slot, so reading or changing
+     * the color of the ball allocates nothing.
+     */
+    private final class Handle implements Hitter {
+        private int slot;
+
+        /**
+         * Constructs the handle of a slot.
+         *
+         * @param slot the slot.
+         */
+        Handle(int slot) {
+            this.slot = slot;
+        }
+
+        /**
+         * Returns the slot of the handle, checking that it still refers to a ball.
+         *
+         * @return the slot.
+         */
+        private int live() {
+            if (this.slot < 0) {
+                throw new IllegalStateException("the ball was removed from its system");
+            }
+            return this.slot;
+        }
+
+        @Override
+        public Color getColor() {
+            return BallSystem.this.colors[live()];
+        }
+
+        @Override
+        public void setColor(Color color) {
+            BallSystem.this.colors[live()] = color;
+        }
+
+        @Override
+        public void removeFromGame(Game g) {
+            // removing a ball twice, as a ball removed from a game can be, does nothing
+            BallSystem.this.remove(this.slot);
+        }
+    }
+}
@@ -2,16 +2,15 @@
 package GameElement;
 
 import GameObjects.Collidable;
+import GameObjects.CollisionInfo;
+import GameObjects.Hitter;
 import GameObjects.Sprite;
-import Geometry.Line;
-import Geometry.Point;
+import Geometry.RayHit;
 import Geometry.Rectangle;
 import Listeners.HitListener;
 import Listeners.HitNotifier;
 import biuoop.DrawSurface;
 import java.awt.Color;
-import java.util.ArrayList;
-import java.util.List;
 
 
 /**
@@ -20,13 +19,15 @@ import java.util.List;
  * enabling it to interact with other game elements and be rendered on the screen.
  * A block has a position, size (represented by a {@link Rectangle}), and a color.
  * It can detect collisions, modify velocities upon collision, and be drawn onto a {@link DrawSurface}.
+ * <p>
+ * The color, hit listeners, score value and game of a block are kept in a {@link BlockArchetype}, which
+ * blocks of the same kind share, so a block itself only holds its rectangle and its archetype.
+ * </p>
  */
 public class Block implements Collidable, Sprite {
 
     private Rectangle rectangle;
-    private Color color;
-    private Game game;
-    private List<HitListener> hitListeners;
+    private BlockArchetype archetype;
 
 
     /**
@@ -36,10 +37,18 @@ public class Block implements Collidable, Sprite {
      * @param color     the {@link Color} of the block
      */
     public Block(Rectangle rectangle, Color color, Game game) {
+        this(rectangle, new BlockArchetype(color, BlockArchetype.DEFAULT_SCORE, game));
+    }
+
+    /**
+     * Constructs a {@code GameElement.Block} of the given archetype, which it may share with other blocks.
+     *
+     * @param rectangle the {@link Rectangle} defining the block's shape and position
+     * @param archetype the {@link BlockArchetype} holding the color, listeners and score of the block
+     */
+    public Block(Rectangle rectangle, BlockArchetype archetype) {
         this.rectangle = rectangle;
-        this.color = color;
-        this.game = game;
-        this.hitListeners = new ArrayList<HitListener>();
+        this.archetype = archetype;
     }
 
     /**
@@ -48,7 +57,7 @@ public class Block implements Collidable, Sprite {
      * @param d the {@link DrawSurface} on which the block is drawn
      */
     public void drawOn(DrawSurface d) {
-        d.setColor(this.color);
+        d.setColor(this.archetype.getColor());
         d.fillRectangle((int) rectangle.getUpperLeft().getX(), (int) rectangle.getUpperLeft().getY(),
                 (int) rectangle.getWidth(), (int) rectangle.getHeight());
         d.setColor(Color.black);
@@ -80,51 +89,64 @@ public class Block implements Collidable, Sprite {
      * @return the {@link Color} of the block
      */
     public Color getColor() {
-        return color;
+        return this.archetype.getColor();
     }
 
     /**
-     * Handles a collision with the block at a given collision point and velocity.
+     * Returns the archetype of the block.
+     *
+     * @return the {@link BlockArchetype} of the block
+     */
+    public BlockArchetype getArchetype() {
+        return this.archetype;
+    }
+
+    /**
+     * Gives the block another archetype, for owners that share archetypes between their blocks and
+     * rebuild them (see {@link TileMap}).
+     *
+     * @param newArchetype the new {@link BlockArchetype}
+     */
+    void setArchetype(BlockArchetype newArchetype) {
+        this.archetype = newArchetype;
+    }
+
+    /**
+     * Returns the points the block is worth when it is hit.
+     *
+     * @return the score value of the block's archetype
+     */
+    public int getScoreValue() {
+        return this.archetype.getScoreValue();
+    }
+
+    /**
+     * Handles a collision with the block.
      * <p>
-     * This method calculates the new velocity after the collision, based on the collision point
-     * and the block's edges.
+     * This method calculates the new velocity after the collision, based on the side
+     * of the block that was hit.
      * </p>
      *
-     * @param collisionPoint   the {@link Point} where the collision occurred
+     * @param hitter           the {@link Ball} that hit the block
+     * @param collision        the {@link CollisionInfo} describing where and on which side the block was hit
      * @param currentVelocity  the current {@link Velocity} of the object before the collision
      * @return the new {@link Velocity} after the collision
      */
-//    @Override
-    public Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
-        double x = this.rectangle.getUpperLeft().getX();
-        double y = this.rectangle.getUpperLeft().getY();
-        double width = this.rectangle.getWidth();
-        double height = this.rectangle.getHeight();
+    @Override
+    public Velocity hit(Hitter hitter, CollisionInfo collision, Velocity currentVelocity) {
         double dx = currentVelocity.getDx();
         double dy = currentVelocity.getDy();
+        int sides = collision.hitSides();
 
-        Line up = new Line(x, y, x + width, y);
-        Line down = new Line(x, y + height, x + width, y + height);
-        Line left = new Line(x, y, x, y + height);
-        Line right = new Line(x + width, y, x + width, y + height);
-        List<Point> intersectionPoints = new ArrayList<>();
-            if (!ballColorMatch(hitter)) {
-                this.notifyHit(hitter);
-            }
-
-        if (up.isOnLine(collisionPoint)) {
-            dy *= -1;
+        if (!ballColorMatch(hitter)) {
+            this.notifyHit(hitter);
         }
 
-        if (down.isOnLine(collisionPoint)) {
+        if ((sides & (RayHit.TOP | RayHit.BOTTOM)) != 0) {
             dy *= -1;
         }
 
-        if (right.isOnLine(collisionPoint)) {
-            dx *= -1;
-        }
-
-        if (left.isOnLine(collisionPoint)) {
+        if ((sides & (RayHit.LEFT | RayHit.RIGHT)) != 0) {
             dx *= -1;
         }
         return  new Velocity(dx, dy);
@@ -144,8 +166,8 @@ public class Block implements Collidable, Sprite {
      * Add the block to the game as both a sprite and a collidable object.
      */
     public void addToGame() {
-        game.addCollidable(this);
-        game.addSprite(this);
+        this.archetype.getGame().addCollidable(this);
+        this.archetype.getGame().addSprite(this);
     }
 
     /**
@@ -153,8 +175,8 @@ public class Block implements Collidable, Sprite {
      * @param ball the ball that hit the block.
      * @return The collision rectangle.
      */
-    public boolean ballColorMatch(Ball ball) {
-        return ball.getColor().equals(color);
+    public boolean ballColorMatch(Hitter ball) {
+        return ball.getColor().equals(this.archetype.getColor());
     }
 
     /**
@@ -170,20 +192,27 @@ public class Block implements Collidable, Sprite {
     /**
      * Notifies all registered {@link HitListener}s that a hit event has occurred.
      *
-     * <p>This method creates a copy of the current list of hit listeners
-     * to avoid issues that could arise if listeners are added or removed
-     * while iterating over the list. Each listener is then notified of the
-     * hit event, providing the object that was hit and the ball that caused
-     * the hit.</p>
+     * <p>The listeners are those of the archetype the block has when the hit
+     * starts. Archetypes are immutable, so a listener that adds or removes
+     * listeners gives the block a new archetype and does not disturb the
+     * iteration. Each listener is notified of the hit event, providing the
+     * object that was hit and the ball that caused the hit.</p>
      *
      * @param hitter the {@link Ball} that caused the hit event.
      */
-    private void notifyHit(Ball hitter) {
-        // Make a copy of the hitListeners before iterating over them.
-        List<HitListener> listeners = new ArrayList<HitListener>(this.hitListeners);
+    private void notifyHit(Hitter hitter) {
+        BlockArchetype listeners = this.archetype;
+        Game game = listeners.getGame();
+        AllocationMonitor monitor = game == null ? null : game.getAllocationMonitor();
+        if (monitor != null) {
+            monitor.begin(AllocationMonitor.Phase.HIT_DISPATCH);
+        }
         // Notify all listeners about a hit event:
-        for (HitListener hl : listeners) {
-            hl.hitEvent(this, hitter);
+        for (int i = 0; i < listeners.listenerCount(); i++) {
+            listeners.getListener(i).hitEvent(this, hitter);
+        }
+        if (monitor != null) {
+            monitor.end(AllocationMonitor.Phase.HIT_DISPATCH);
         }
     }
 
@@ -192,7 +221,7 @@ public class Block implements Collidable, Sprite {
      * @param hl the listener to be registered to the block .
      */
     public void addHitListener(HitListener hl) {
-        this.hitListeners.add(hl);
+        this.archetype = this.archetype.withListener(hl);
     }
 
     /**
@@ -200,7 +229,7 @@ public class Block implements Collidable, Sprite {
      * @param hl the listener to removed from the block .
      */
     public void removeHitListener(HitListener hl) {
-        this.hitListeners.remove(hl);
+        this.archetype = this.archetype.withoutListener(hl);
     }
 }
 
@@ -0,0 +1,120 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import Listeners.HitListener;
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * The BlockArchetype class holds what the blocks of one kind have in common: their color, the listeners
+ * notified when one of them is hit, the points it is worth and the game they belong to.
+ * <p>
+ * An archetype is immutable, so any number of blocks can share one (a flyweight): a row of a level, or
+ * every block of a type, costs one archetype, and each {@link Block} only stores its geometry and a
+ * reference to its archetype. Adding or removing a listener on a single block gives that block a
+ * modified copy of its archetype, and leaves the other blocks unchanged.
+ * </p>
+ */
+public final class BlockArchetype {
+    /**
+     * The points a block is worth unless its archetype says otherwise.
+     */
+    public static final int DEFAULT_SCORE = 5;
+
+    private final Color color;
+    private final int scoreValue;
+    private final Game game;
+    private final HitListener[] listeners;
+
+    /**
+     * Constructs a BlockArchetype.
+     *
+     * @param color      the color of the blocks.
+     * @param scoreValue the points a block is worth when it is hit.
+     * @param game       the game the blocks belong to.
+     * @param listeners  the listeners notified, in this order, when a block is hit.
+     */
+    public BlockArchetype(Color color, int scoreValue, Game game, HitListener... listeners) {
+        this.color = color;
+        this.scoreValue = scoreValue;
+        this.game = game;
+        this.listeners = listeners.clone();
+    }
+
+    /**
+     * Returns the color of the blocks.
+     *
+     * @return the {@link Color}.
+     */
+    public Color getColor() {
+        return this.color;
+    }
+
+    /**
+     * Returns the points a block is worth when it is hit.
+     *
+     * @return the score value.
+     */
+    public int getScoreValue() {
+        return this.scoreValue;
+    }
+
+    /**
+     * Returns the game the blocks belong to.
+     *
+     * @return the {@link Game}.
+     */
+    public Game getGame() {
+        return this.game;
+    }
+
+    /**
+     * Returns the number of listeners.
+     *
+     * @return the number of listeners.
+     */
+    public int listenerCount() {
+        return this.listeners.length;
+    }
+
+    /**
+     * Returns a listener.
+     *
+     * @param i the index of the listener.
+     * @return the {@link HitListener}.
+     */
+    public HitListener getListener(int i) {
+        return this.listeners[i];
+    }
+
+    /**
+     * Returns a copy of this archetype with one more listener.
+     *
+     * @param hl the listener to add.
+     * @return the new archetype.
+     */
+    BlockArchetype withListener(HitListener hl) {
+        HitListener[] more = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+        more[this.listeners.length] = hl;
+        return new BlockArchetype(this.color, this.scoreValue, this.game, more);
+    }
+
+    /**
+     * Returns a copy of this archetype without the first occurrence of a listener, or this archetype if
+     * it does not have the listener.
+     *
+     * @param hl the listener to remove.
+     * @return the archetype without the listener.
+     */
+    BlockArchetype withoutListener(HitListener hl) {
+        for (int i = 0; i < this.listeners.length; i++) {
+            if (this.listeners[i].equals(hl)) {
+                HitListener[] fewer = new HitListener[this.listeners.length - 1];
+                System.arraycopy(this.listeners, 0, fewer, 0, i);
+                System.arraycopy(this.listeners, i + 1, fewer, i, fewer.length - i);
+                return new BlockArchetype(this.color, this.scoreValue, this.game, fewer);
+            }
+        }
+        return this;
+    }
+}
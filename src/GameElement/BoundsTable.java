@@ -0,0 +1,237 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import GameObjects.Collidable;
+import GameObjects.CompoundCollidable;
+import Geometry.RayHit;
+import Geometry.Rectangle;
+import Geometry.SlabTest;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The BoundsTable class keeps the collision rectangles of the static collidables of a
+ * {@link GameEnvironment} in flat arrays, in the order of the environment's static set, and answers
+ * batched trajectory queries against them and the (few) dynamic collidables. The environment keeps the
+ * table in step with its static set: a collidable is appended when it is added, and removed in constant
+ * time by moving the last row into its place, just like the handle is removed from the set.
+ * <p>
+ * A query runs in two passes per trajectory. The first pass is a slab test without branches over the
+ * flat arrays, a loop the JIT compiler can unroll and vectorize; it computes for every rectangle a lower
+ * bound on the time the trajectory enters it, or infinity if it surely misses. The second pass runs the
+ * exact {@link SlabTest} only on the rectangles that were not ruled out and that could still be closer
+ * than the best hit so far. Dynamic collidables are tested exactly afterwards, and collisions at the same
+ * distance are resolved by registration order, so the results are exactly those of the linear scan.
+ * </p>
+ */
+class BoundsTable {
+    // how much the first pass may be off because it multiplies by 1 / dx instead of dividing by dx
+    private static final double SLACK = 1e-9;
+    // stands in for 1 / 0, so that a point on the edge of a slab gives 0 instead of NaN
+    private static final double HUGE = 1e300;
+
+    private double[] minXs;
+    private double[] minYs;
+    private double[] maxXs;
+    private double[] maxYs;
+    private double[] entries;
+    private long[] orders;
+    private Collidable[] items;
+    private int size;
+    private final RayHit hit;
+
+    /**
+     * Constructs an empty BoundsTable.
+     */
+    BoundsTable() {
+        this.hit = new RayHit();
+        allocate(16);
+    }
+
+    /**
+     * Appends a static collidable that was just added to the end of the environment's static set.
+     *
+     * @param handle the {@link CollidableHandle} of the collidable.
+     */
+    void add(CollidableHandle handle) {
+        if (this.size == this.items.length) {
+            allocate(this.size * 2);
+        }
+        store(this.size++, handle);
+    }
+
+    /**
+     * Removes the row at the given position, moving the last row into its place.
+     *
+     * @param index the position the collidable had in the environment's static set.
+     */
+    void remove(int index) {
+        int last = --this.size;
+        if (index != last) {
+            this.items[index] = this.items[last];
+            this.orders[index] = this.orders[last];
+            this.minXs[index] = this.minXs[last];
+            this.minYs[index] = this.minYs[last];
+            this.maxXs[index] = this.maxXs[last];
+            this.maxYs[index] = this.maxYs[last];
+        }
+        this.items[last] = null;
+    }
+
+    /**
+     * Copies the current collision rectangle of a static collidable that moved into its row.
+     *
+     * @param handle the {@link CollidableHandle} of the collidable.
+     */
+    void update(CollidableHandle handle) {
+        store(handle.slot(), handle);
+    }
+
+    /**
+     * Writes a collidable and its collision rectangle into a row of the table.
+     *
+     * @param index  the row.
+     * @param handle the {@link CollidableHandle} of the collidable.
+     */
+    private void store(int index, CollidableHandle handle) {
+        Rectangle rect = handle.collidable().getCollisionRectangle();
+        this.items[index] = handle.collidable();
+        this.orders[index] = handle.order();
+        this.minXs[index] = rect.getUpperLeft().getX();
+        this.minYs[index] = rect.getUpperLeft().getY();
+        this.maxXs[index] = this.minXs[index] + rect.getWidth();
+        this.maxYs[index] = this.minYs[index] + rect.getHeight();
+    }
+
+    /**
+     * Finds the closest hit of every trajectory of the batch, and stores it in the batch. The index of
+     * a hit is its position in the static set, or the number of static collidables plus its position in
+     * the dynamic set.
+     *
+     * @param batch    the {@link CollisionBatch} holding the trajectories.
+     * @param dynamics the {@link CollidableHandle}s of the dynamic collidables, in order.
+     */
+    void query(CollisionBatch batch, List<CollidableHandle> dynamics) {
+        for (int r = 0; r < batch.size(); r++) {
+            double x = batch.x(r);
+            double y = batch.y(r);
+            double dx = batch.dx(r);
+            double dy = batch.dy(r);
+            filter(x, y, dx != 0 ? 1 / dx : HUGE, dy != 0 ? 1 / dy : HUGE);
+            confirm(batch, r, x, y, dx, dy, dynamics);
+        }
+    }
+
+    /**
+     * The first pass: for every rectangle, a lower bound on the time the trajectory enters it, or infinity
+     * if the trajectory surely misses it. The loop has no branches and only reads flat arrays.
+     *
+     * @param x    the x value of the start of the trajectory.
+     * @param y    the y value of the start of the trajectory.
+     * @param invX 1 / dx, or a huge number when dx is 0.
+     * @param invY 1 / dy, or a huge number when dy is 0.
+     */
+    private void filter(double x, double y, double invX, double invY) {
+        double[] minX = this.minXs;
+        double[] minY = this.minYs;
+        double[] maxX = this.maxXs;
+        double[] maxY = this.maxYs;
+        double[] entry = this.entries;
+        for (int i = 0; i < this.size; i++) {
+            double tx1 = (minX[i] - x) * invX;
+            double tx2 = (maxX[i] - x) * invX;
+            double ty1 = (minY[i] - y) * invY;
+            double ty2 = (maxY[i] - y) * invY;
+            double near = Math.max(Math.min(tx1, tx2), Math.min(ty1, ty2));
+            double far = Math.min(Math.max(tx1, tx2), Math.max(ty1, ty2));
+            boolean candidate = near <= far + SLACK && far >= -SLACK && near <= 1 + SLACK;
+            entry[i] = candidate ? near : Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * The second pass: the exact test on the rectangles that may still be the closest, and then on the
+     * dynamic collidables.
+     *
+     * @param batch    the batch the result is stored in.
+     * @param r        the index of the trajectory.
+     * @param x        the x value of the start of the trajectory.
+     * @param y        the y value of the start of the trajectory.
+     * @param dx       the change in x along the trajectory.
+     * @param dy       the change in y along the trajectory.
+     * @param dynamics the handles of the dynamic collidables.
+     */
+    private void confirm(CollisionBatch batch, int r, double x, double y, double dx, double dy,
+                         List<CollidableHandle> dynamics) {
+        int best = -1;
+        long bestOrder = Long.MAX_VALUE;
+        Collidable bestObject = null;
+        double bestT = Double.MAX_VALUE;
+        int bestSides = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (this.entries[i] > bestT + SLACK) {
+                continue;
+            }
+            Collidable c = this.items[i];
+            Collidable object;
+            if (c instanceof CompoundCollidable) {
+                object = ((CompoundCollidable) c).closestCollision(x, y, dx, dy, 0, this.hit);
+            } else {
+                object = SlabTest.intersect(x, y, dx, dy, this.minXs[i], this.minYs[i],
+                        this.maxXs[i], this.maxYs[i], this.hit) ? c : null;
+            }
+            double t = this.hit.getT();
+            if (object != null && (t < bestT || (t == bestT && this.orders[i] < bestOrder))) {
+                best = i;
+                bestOrder = this.orders[i];
+                bestObject = object;
+                bestT = t;
+                bestSides = this.hit.getSides();
+            }
+        }
+        for (int k = 0; k < dynamics.size(); k++) {
+            CollidableHandle handle = dynamics.get(k);
+            Rectangle rect = handle.collidable().getCollisionRectangle();
+            double minX = rect.getUpperLeft().getX();
+            double minY = rect.getUpperLeft().getY();
+            if (!SlabTest.intersect(x, y, dx, dy, minX, minY, minX + rect.getWidth(),
+                    minY + rect.getHeight(), this.hit)) {
+                continue;
+            }
+            double t = this.hit.getT();
+            if (t < bestT || (t == bestT && handle.order() < bestOrder)) {
+                best = this.size + k;
+                bestOrder = handle.order();
+                bestObject = handle.collidable();
+                bestT = t;
+                bestSides = this.hit.getSides();
+            }
+        }
+        batch.setResult(r, best, bestObject, bestT, bestSides);
+    }
+
+    /**
+     * Allocates the arrays of the table, keeping the rows it already holds.
+     *
+     * @param capacity the number of collidables.
+     */
+    private void allocate(int capacity) {
+        if (this.items == null) {
+            this.minXs = new double[capacity];
+            this.minYs = new double[capacity];
+            this.maxXs = new double[capacity];
+            this.maxYs = new double[capacity];
+            this.entries = new double[capacity];
+            this.orders = new long[capacity];
+            this.items = new Collidable[capacity];
+            return;
+        }
+        this.minXs = Arrays.copyOf(this.minXs, capacity);
+        this.minYs = Arrays.copyOf(this.minYs, capacity);
+        this.maxXs = Arrays.copyOf(this.maxXs, capacity);
+        this.maxYs = Arrays.copyOf(this.maxYs, capacity);
+        this.entries = Arrays.copyOf(this.entries, capacity);
+        this.orders = Arrays.copyOf(this.orders, capacity);
+        this.items = Arrays.copyOf(this.items, capacity);
+    }
+}
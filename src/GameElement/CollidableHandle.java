@@ -0,0 +1,206 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import GameObjects.Collidable;
+import Geometry.FixedPoint;
+import Geometry.Rectangle;
+
+/**
+ * The CollidableHandle class is the record the {@link GameEnvironment} keeps for every registered
+ * {@link Collidable}, and is returned when the collidable is added. It remembers the registration order,
+ * used to break ties between collisions at the same distance exactly like the linear scan does, the bounds
+ * the collidable was indexed with, and its position in the environment's static or dynamic set, so it can
+ * be removed in constant time.
+ */
+public class CollidableHandle {
+    private final Collidable collidable;
+    private final long order;
+    private final boolean dynamic;
+    private int slot;
+    private int gridSlot;
+    private double minX;
+    private double minY;
+    private double maxX;
+    private double maxY;
+    // the same bounds rounded to fixed point, for the fixed-point queries
+    private long fixedMinX;
+    private long fixedMinY;
+    private long fixedMaxX;
+    private long fixedMaxY;
+
+    /**
+     * Constructs a new CollidableHandle for the given collidable.
+     *
+     * @param collidable the {@link Collidable} this handle refers to.
+     * @param order      the registration order of the collidable.
+     * @param dynamic    true if the collidable moves, false if it stands still.
+     */
+    CollidableHandle(Collidable collidable, long order, boolean dynamic) {
+        this.collidable = collidable;
+        this.order = order;
+        this.dynamic = dynamic;
+        this.slot = -1;
+        this.gridSlot = -1;
+        this.updateBounds();
+    }
+
+    /**
+     * Copies the current bounds of the collidable's rectangle into this handle, in double and in fixed
+     * point.
+     */
+    void updateBounds() {
+        Rectangle rect = this.collidable.getCollisionRectangle();
+        this.minX = rect.getUpperLeft().getX();
+        this.minY = rect.getUpperLeft().getY();
+        this.maxX = this.minX + rect.getWidth();
+        this.maxY = this.minY + rect.getHeight();
+        this.fixedMinX = FixedPoint.fromDouble(this.minX);
+        this.fixedMinY = FixedPoint.fromDouble(this.minY);
+        this.fixedMaxX = FixedPoint.fromDouble(this.maxX);
+        this.fixedMaxY = FixedPoint.fromDouble(this.maxY);
+    }
+
+    /**
+     * Returns the collidable this handle refers to.
+     *
+     * @return the {@link Collidable}.
+     */
+    public Collidable collidable() {
+        return this.collidable;
+    }
+
+    /**
+     * Returns true if the collidable is in the environment's dynamic set, the collidables that move.
+     *
+     * @return whether the collidable is dynamic.
+     */
+    public boolean isDynamic() {
+        return this.dynamic;
+    }
+
+    /**
+     * Returns true while the collidable is registered in the environment.
+     *
+     * @return whether the handle is registered.
+     */
+    public boolean isRegistered() {
+        return this.slot >= 0;
+    }
+
+    /**
+     * Returns the position of the handle in the environment's static or dynamic set.
+     *
+     * @return the position, or -1 if the handle is not registered.
+     */
+    int slot() {
+        return this.slot;
+    }
+
+    /**
+     * Sets the position of the handle in the environment's static or dynamic set.
+     *
+     * @param position the new position, or -1 when the handle is removed.
+     */
+    void setSlot(int position) {
+        this.slot = position;
+    }
+
+    /**
+     * Returns the position of the handle in the list of its {@link CollisionGrid}.
+     *
+     * @return the position, or -1 if the handle is not in a grid.
+     */
+    int gridSlot() {
+        return this.gridSlot;
+    }
+
+    /**
+     * Sets the position of the handle in the list of its {@link CollisionGrid}.
+     *
+     * @param position the new position, or -1 when the handle is removed from the grid.
+     */
+    void setGridSlot(int position) {
+        this.gridSlot = position;
+    }
+
+    /**
+     * Returns the registration order of the collidable.
+     *
+     * @return the registration order.
+     */
+    long order() {
+        return this.order;
+    }
+
+    /**
+     * Returns the smallest x value of the indexed bounds.
+     *
+     * @return the left edge of the bounds.
+     */
+    double minX() {
+        return this.minX;
+    }
+
+    /**
+     * Returns the smallest y value of the indexed bounds.
+     *
+     * @return the top edge of the bounds.
+     */
+    double minY() {
+        return this.minY;
+    }
+
+    /**
+     * Returns the largest x value of the indexed bounds.
+     *
+     * @return the right edge of the bounds.
+     */
+    double maxX() {
+        return this.maxX;
+    }
+
+    /**
+     * Returns the largest y value of the indexed bounds.
+     *
+     * @return the bottom edge of the bounds.
+     */
+    double maxY() {
+        return this.maxY;
+    }
+
+    /**
+     * Returns the left edge of the indexed bounds in fixed point.
+     *
+     * @return the left edge, a fixed-point value.
+     */
+    long fixedMinX() {
+        return this.fixedMinX;
+    }
+
+    /**
+     * Returns the top edge of the indexed bounds in fixed point.
+     *
+     * @return the top edge, a fixed-point value.
+     */
+    long fixedMinY() {
+        return this.fixedMinY;
+    }
+
+    /**
+     * Returns the right edge of the indexed bounds in fixed point.
+     *
+     * @return the right edge, a fixed-point value.
+     */
+    long fixedMaxX() {
+        return this.fixedMaxX;
+    }
+
+    /**
+     * Returns the bottom edge of the indexed bounds in fixed point.
+     *
+     * @return the bottom edge, a fixed-point value.
+     */
+    long fixedMaxY() {
+        return this.fixedMaxY;
+    }
+}
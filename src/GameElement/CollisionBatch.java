@@ -0,0 +1,233 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import GameObjects.Collidable;
+import GameObjects.CollisionInfo;
+import Geometry.Point;
+import java.util.Arrays;
+
+/**
+ * The CollisionBatch class holds the trajectories of many objects for one batched collision query
+ * ({@link GameEnvironment#getClosestCollisions(CollisionBatch)}), and the closest hit of each of them.
+ * <p>
+ * Trajectories and results are kept in primitive arrays that are reused from query to query, so a batch
+ * can be filled and queried every frame without allocating once it is large enough.
+ * </p>
+ */
+public class CollisionBatch {
+    private double[] xs;
+    private double[] ys;
+    private double[] dxs;
+    private double[] dys;
+    private double[] times;
+    private int[] sides;
+    private int[] indices;
+    private Collidable[] objects;
+    private int size;
+
+    /**
+     * Constructs an empty CollisionBatch with room for the given number of trajectories.
+     *
+     * @param capacity the number of trajectories the batch holds before it has to grow.
+     */
+    public CollisionBatch(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    /**
+     * Removes all the trajectories of the batch.
+     */
+    public void clear() {
+        for (int i = 0; i < this.size; i++) {
+            this.objects[i] = null;
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Adds the trajectory from (x, y) to (x + dx, y + dy) to the batch.
+     *
+     * @param x  the x value of the start of the trajectory.
+     * @param y  the y value of the start of the trajectory.
+     * @param dx the change in x along the trajectory.
+     * @param dy the change in y along the trajectory.
+     * @return the index of the trajectory in the batch.
+     */
+    public int add(double x, double y, double dx, double dy) {
+        if (this.size == this.xs.length) {
+            grow();
+        }
+        int i = this.size++;
+        this.xs[i] = x;
+        this.ys[i] = y;
+        this.dxs[i] = dx;
+        this.dys[i] = dy;
+        this.indices[i] = -1;
+        this.objects[i] = null;
+        return i;
+    }
+
+    /**
+     * Returns the number of trajectories in the batch.
+     *
+     * @return the number of trajectories.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns true if the given trajectory hits a collidable.
+     *
+     * @param i the index of the trajectory.
+     * @return whether there is a collision.
+     */
+    public boolean isHit(int i) {
+        return this.indices[i] >= 0;
+    }
+
+    /**
+     * Returns the index of the collidable the given trajectory hits first, in
+     * {@link GameEnvironment#getCollidables()}.
+     *
+     * @param i the index of the trajectory.
+     * @return the index of the collidable, or -1 if nothing is hit.
+     */
+    public int hitIndex(int i) {
+        return this.indices[i];
+    }
+
+    /**
+     * Returns the collidable the given trajectory hits first. For a
+     * {@link GameObjects.CompoundCollidable} this is the part that is hit.
+     *
+     * @param i the index of the trajectory.
+     * @return the {@link Collidable}, or {@code null} if nothing is hit.
+     */
+    public Collidable hitObject(int i) {
+        return this.objects[i];
+    }
+
+    /**
+     * Returns the parametric distance of the closest hit along the given trajectory.
+     *
+     * @param i the index of the trajectory.
+     * @return the time of impact, between 0 and 1, if there is a hit.
+     */
+    public double timeOfImpact(int i) {
+        return this.times[i];
+    }
+
+    /**
+     * Returns the sides of the collidable hit by the given trajectory.
+     *
+     * @param i the index of the trajectory.
+     * @return a combination of the side bits of {@link Geometry.RayHit}.
+     */
+    public int hitSides(int i) {
+        return this.sides[i];
+    }
+
+    /**
+     * Builds the {@link CollisionInfo} of the closest hit of the given trajectory, the same one
+     * {@link GameEnvironment#getClosestCollision(Geometry.Line)} returns for it.
+     *
+     * @param i the index of the trajectory.
+     * @return the {@link CollisionInfo}, or {@code null} if nothing is hit.
+     */
+    public CollisionInfo collisionInfo(int i) {
+        if (!isHit(i)) {
+            return null;
+        }
+        double t = this.times[i];
+        Point point = new Point(this.xs[i] + t * this.dxs[i], this.ys[i] + t * this.dys[i]);
+        return new CollisionInfo(point, this.objects[i], t, this.sides[i]);
+    }
+
+    /**
+     * Returns the x value of the start of the given trajectory.
+     *
+     * @param i the index of the trajectory.
+     * @return the x value.
+     */
+    double x(int i) {
+        return this.xs[i];
+    }
+
+    /**
+     * Returns the y value of the start of the given trajectory.
+     *
+     * @param i the index of the trajectory.
+     * @return the y value.
+     */
+    double y(int i) {
+        return this.ys[i];
+    }
+
+    /**
+     * Returns the change in x along the given trajectory.
+     *
+     * @param i the index of the trajectory.
+     * @return the change in x.
+     */
+    double dx(int i) {
+        return this.dxs[i];
+    }
+
+    /**
+     * Returns the change in y along the given trajectory.
+     *
+     * @param i the index of the trajectory.
+     * @return the change in y.
+     */
+    double dy(int i) {
+        return this.dys[i];
+    }
+
+    /**
+     * Stores the closest hit of the given trajectory.
+     *
+     * @param i        the index of the trajectory.
+     * @param index    the index of the collidable in the environment, -1 if nothing is hit.
+     * @param object   the collidable (or part) that is hit.
+     * @param t        the time of impact.
+     * @param hitSides the sides that are hit.
+     */
+    void setResult(int i, int index, Collidable object, double t, int hitSides) {
+        this.indices[i] = index;
+        this.objects[i] = object;
+        this.times[i] = t;
+        this.sides[i] = hitSides;
+    }
+
+    /**
+     * Doubles the number of trajectories the batch can hold, keeping the ones it has.
+     */
+    private void grow() {
+        int capacity = this.xs.length * 2;
+        this.xs = Arrays.copyOf(this.xs, capacity);
+        this.ys = Arrays.copyOf(this.ys, capacity);
+        this.dxs = Arrays.copyOf(this.dxs, capacity);
+        this.dys = Arrays.copyOf(this.dys, capacity);
+        this.times = Arrays.copyOf(this.times, capacity);
+        this.sides = Arrays.copyOf(this.sides, capacity);
+        this.indices = Arrays.copyOf(this.indices, capacity);
+        this.objects = Arrays.copyOf(this.objects, capacity);
+    }
+
+    /**
+     * Allocates the arrays of the batch.
+     *
+     * @param capacity the number of trajectories.
+     */
+    private void allocate(int capacity) {
+        this.xs = new double[capacity];
+        this.ys = new double[capacity];
+        this.dxs = new double[capacity];
+        this.dys = new double[capacity];
+        this.times = new double[capacity];
+        this.sides = new int[capacity];
+        this.indices = new int[capacity];
+        this.objects = new Collidable[capacity];
+    }
+}
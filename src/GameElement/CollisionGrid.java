@@ -0,0 +1,284 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The CollisionGrid class is a uniform grid index over the collidables of a {@link GameEnvironment}.
+ * Every collidable is registered in all the cells its rectangle overlaps, and a trajectory query
+ * walks only the cells its segment passes through (a "supercover" DDA walk).
+ * <p>
+ * The grid grows automatically when a collidable is registered outside the area it currently covers,
+ * so it works for playfields of any size.
+ * </p>
+ */
+class CollisionGrid {
+    // rectangles are registered slightly larger than they are, so that intersection points computed
+    // with the tolerance of Geometry.Line still land in a cell the rectangle is registered in.
+    private static final double PADDING = 0.001;
+
+    private final double cellSize;
+    private final List<CollidableHandle> handles;
+    private List<List<CollidableHandle>> cells;
+    private int firstCol;
+    private int firstRow;
+    private int cols;
+    private int rows;
+
+    /**
+     * Constructs an empty CollisionGrid with square cells of the given size.
+     *
+     * @param cellSize the width and height of a single cell.
+     */
+    CollisionGrid(double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("cell size must be positive");
+        }
+        this.cellSize = cellSize;
+        this.handles = new ArrayList<>();
+        this.cells = new ArrayList<>();
+    }
+
+    /**
+     * Registers the given handle in every cell its bounds overlap.
+     *
+     * @param handle the {@link CollidableHandle} to register.
+     */
+    void add(CollidableHandle handle) {
+        handle.setGridSlot(this.handles.size());
+        this.handles.add(handle);
+        int minCol = cellOf(handle.minX() - PADDING);
+        int minRow = cellOf(handle.minY() - PADDING);
+        int maxCol = cellOf(handle.maxX() + PADDING);
+        int maxRow = cellOf(handle.maxY() + PADDING);
+        if (this.cols == 0 || minCol < this.firstCol || minRow < this.firstRow
+                || maxCol >= this.firstCol + this.cols || maxRow >= this.firstRow + this.rows) {
+            grow(minCol, minRow, maxCol, maxRow);
+            return;
+        }
+        insert(handle, minCol, minRow, maxCol, maxRow);
+    }
+
+    /**
+     * Removes the given handle from every cell it is registered in.
+     *
+     * @param handle the {@link CollidableHandle} to remove.
+     */
+    void remove(CollidableHandle handle) {
+        // swap the last handle into the slot of the removed one
+        int slot = handle.gridSlot();
+        CollidableHandle last = this.handles.remove(this.handles.size() - 1);
+        if (last != handle) {
+            this.handles.set(slot, last);
+            last.setGridSlot(slot);
+        }
+        handle.setGridSlot(-1);
+        int minCol = Math.max(cellOf(handle.minX() - PADDING), this.firstCol);
+        int minRow = Math.max(cellOf(handle.minY() - PADDING), this.firstRow);
+        int maxCol = Math.min(cellOf(handle.maxX() + PADDING), this.firstCol + this.cols - 1);
+        int maxRow = Math.min(cellOf(handle.maxY() + PADDING), this.firstRow + this.rows - 1);
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minCol; c <= maxCol; c++) {
+                List<CollidableHandle> cell = this.cells.get(index(c, r));
+                if (cell != null) {
+                    cell.remove(handle);
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-registers a handle whose collidable has moved.
+     *
+     * @param handle the {@link CollidableHandle} of the collidable that moved.
+     */
+    void move(CollidableHandle handle) {
+        remove(handle);
+        handle.updateBounds();
+        add(handle);
+    }
+
+    /**
+     * Removes every handle from the grid.
+     */
+    void clear() {
+        for (int i = 0; i < this.handles.size(); i++) {
+            this.handles.get(i).setGridSlot(-1);
+        }
+        this.handles.clear();
+        this.cells = new ArrayList<>();
+        this.cols = 0;
+        this.rows = 0;
+    }
+
+    /**
+     * Appends to {@code out} the handles registered in every cell the segment from (x1, y1) to (x2, y2)
+     * passes through. A handle spanning several of those cells is appended once per cell.
+     *
+     * @param x1  the x value of the start of the segment.
+     * @param y1  the y value of the start of the segment.
+     * @param x2  the x value of the end of the segment.
+     * @param y2  the y value of the end of the segment.
+     * @param out the list the candidate handles are appended to.
+     */
+    void collectAlong(double x1, double y1, double x2, double y2, List<CollidableHandle> out) {
+        if (this.cols == 0) {
+            return;
+        }
+        int c = cellOf(x1);
+        int r = cellOf(y1);
+        int endC = cellOf(x2);
+        int endR = cellOf(y2);
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        int stepC = dx > 0 ? 1 : (dx < 0 ? -1 : 0);
+        int stepR = dy > 0 ? 1 : (dy < 0 ? -1 : 0);
+        double nextX = stepC == 0 ? Double.POSITIVE_INFINITY
+                : ((c + (stepC > 0 ? 1 : 0)) * this.cellSize - x1) / dx;
+        double nextY = stepR == 0 ? Double.POSITIVE_INFINITY
+                : ((r + (stepR > 0 ? 1 : 0)) * this.cellSize - y1) / dy;
+        double deltaX = stepC == 0 ? Double.POSITIVE_INFINITY : this.cellSize / Math.abs(dx);
+        double deltaY = stepR == 0 ? Double.POSITIVE_INFINITY : this.cellSize / Math.abs(dy);
+
+        int remaining = Math.abs(endC - c) + Math.abs(endR - r);
+        visit(c, r, out);
+        while (remaining > 0) {
+            if (nextX < nextY) {
+                c += stepC;
+                nextX += deltaX;
+                remaining--;
+            } else if (nextY < nextX) {
+                r += stepR;
+                nextY += deltaY;
+                remaining--;
+            } else {
+                // the segment passes exactly through a cell corner, visit both neighbours
+                visit(c + stepC, r, out);
+                visit(c, r + stepR, out);
+                c += stepC;
+                r += stepR;
+                nextX += deltaX;
+                nextY += deltaY;
+                remaining -= 2;
+            }
+            visit(c, r, out);
+        }
+    }
+
+    /**
+     * Appends to {@code out} the handles registered in every cell that overlaps the given box.
+     * A handle spanning several of those cells is appended once per cell.
+     *
+     * @param minX the left edge of the box.
+     * @param minY the top edge of the box.
+     * @param maxX the right edge of the box.
+     * @param maxY the bottom edge of the box.
+     * @param out  the list the candidate handles are appended to.
+     */
+    void collect(double minX, double minY, double maxX, double maxY, List<CollidableHandle> out) {
+        int minCol = Math.max(cellOf(minX), this.firstCol);
+        int minRow = Math.max(cellOf(minY), this.firstRow);
+        int maxCol = Math.min(cellOf(maxX), this.firstCol + this.cols - 1);
+        int maxRow = Math.min(cellOf(maxY), this.firstRow + this.rows - 1);
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minCol; c <= maxCol; c++) {
+                visit(c, r, out);
+            }
+        }
+    }
+
+    /**
+     * Appends the handles registered in the given cell to {@code out}, if the cell is inside the grid.
+     *
+     * @param c   the column of the cell.
+     * @param r   the row of the cell.
+     * @param out the list the handles are appended to.
+     */
+    private void visit(int c, int r, List<CollidableHandle> out) {
+        if (c < this.firstCol || r < this.firstRow || c >= this.firstCol + this.cols
+                || r >= this.firstRow + this.rows) {
+            return;
+        }
+        List<CollidableHandle> cell = this.cells.get(index(c, r));
+        if (cell != null) {
+            for (int i = 0; i < cell.size(); i++) {
+                out.add(cell.get(i));
+            }
+        }
+    }
+
+    /**
+     * Registers the handle in every cell of the given (already covered) cell range.
+     *
+     * @param handle the handle to register.
+     * @param minCol the first column.
+     * @param minRow the first row.
+     * @param maxCol the last column.
+     * @param maxRow the last row.
+     */
+    private void insert(CollidableHandle handle, int minCol, int minRow, int maxCol, int maxRow) {
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minCol; c <= maxCol; c++) {
+                int i = index(c, r);
+                List<CollidableHandle> cell = this.cells.get(i);
+                if (cell == null) {
+                    cell = new ArrayList<>();
+                    this.cells.set(i, cell);
+                }
+                cell.add(handle);
+            }
+        }
+    }
+
+    /**
+     * Enlarges the grid so it covers the given cell range, and registers all the handles again.
+     *
+     * @param minCol the first column that has to be covered.
+     * @param minRow the first row that has to be covered.
+     * @param maxCol the last column that has to be covered.
+     * @param maxRow the last row that has to be covered.
+     */
+    private void grow(int minCol, int minRow, int maxCol, int maxRow) {
+        if (this.cols != 0) {
+            minCol = Math.min(minCol, this.firstCol);
+            minRow = Math.min(minRow, this.firstRow);
+            maxCol = Math.max(maxCol, this.firstCol + this.cols - 1);
+            maxRow = Math.max(maxRow, this.firstRow + this.rows - 1);
+        }
+        this.firstCol = minCol;
+        this.firstRow = minRow;
+        this.cols = maxCol - minCol + 1;
+        this.rows = maxRow - minRow + 1;
+        int size = this.cols * this.rows;
+        this.cells = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            this.cells.add(null);
+        }
+        for (CollidableHandle h : this.handles) {
+            insert(h, cellOf(h.minX() - PADDING), cellOf(h.minY() - PADDING),
+                    cellOf(h.maxX() + PADDING), cellOf(h.maxY() + PADDING));
+        }
+    }
+
+    /**
+     * Returns the global column (or row) of the cell that contains the given coordinate.
+     *
+     * @param value an x or y coordinate.
+     * @return the column or row of the cell containing it.
+     */
+    private int cellOf(double value) {
+        return (int) Math.floor(value / this.cellSize);
+    }
+
+    /**
+     * Returns the position of the given cell in the cell list.
+     *
+     * @param c the global column of the cell.
+     * @param r the global row of the cell.
+     * @return the index of the cell.
+     */
+    private int index(int c, int r) {
+        return (r - this.firstRow) * this.cols + (c - this.firstCol);
+    }
+}
@@ -0,0 +1,18 @@
+// Ori Kenigsbuch
+package GameElement;
+
+/**
+ * The CollisionMode enum selects how the {@link GameEnvironment} finds the collidables
+ * that a trajectory has to be tested against.
+ */
+public enum CollisionMode {
+    /**
+     * Every collidable in the environment is tested on every query.
+     */
+    LINEAR,
+
+    /**
+     * Only the collidables registered in the grid cells that the trajectory passes through are tested.
+     */
+    GRID
+}
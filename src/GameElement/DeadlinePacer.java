@@ -0,0 +1,89 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The DeadlinePacer class paces frames against {@link System#nanoTime()} deadlines.
+ * <p>
+ * Every deadline is the previous one plus the frame interval, not the time the frame ended plus the
+ * interval, so rounding and oversleeping do not add up into drift. The pacer parks the thread until
+ * {@code spinNanos} before the deadline, since the operating system may wake it late, and then spins
+ * until the deadline. More spinning gives smoother frames for more CPU time; no spinning sleeps the
+ * whole way. A frame that is already late counts as a missed deadline, and if it is late by a whole
+ * frame or more the deadlines start over from now, so the loop does not rush through frames to catch
+ * up.
+ * </p>
+ */
+public class DeadlinePacer implements FramePacer {
+    /**
+     * The default time spun before a deadline, in nanoseconds.
+     */
+    public static final long DEFAULT_SPIN_NANOS = 1_000_000L;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final long spinNanos;
+    private final FrameStats stats;
+    private long interval;
+    private long deadline;
+    private long lastFrame;
+
+    /**
+     * Constructs a DeadlinePacer that spins for the last millisecond before a deadline.
+     */
+    public DeadlinePacer() {
+        this(DEFAULT_SPIN_NANOS);
+    }
+
+    /**
+     * Constructs a DeadlinePacer that spins for the given time before a deadline.
+     *
+     * @param spinNanos the time spun, in nanoseconds, 0 to only sleep.
+     */
+    public DeadlinePacer(long spinNanos) {
+        if (spinNanos < 0) {
+            throw new IllegalArgumentException("the spin time can't be negative");
+        }
+        this.spinNanos = spinNanos;
+        this.stats = new FrameStats();
+    }
+
+    @Override
+    public void start(int framesPerSecond) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("the frame rate must be positive");
+        }
+        this.interval = NANOS_PER_SECOND / framesPerSecond;
+        this.lastFrame = System.nanoTime();
+        this.deadline = this.lastFrame + this.interval;
+        this.stats.reset(this.interval);
+    }
+
+    @Override
+    public void awaitNextFrame() {
+        long now = System.nanoTime();
+        if (now > this.deadline) {
+            this.stats.recordMissed();
+            if (now - this.deadline >= this.interval) {
+                this.deadline = now;
+            }
+        } else {
+            // parking can end early, so it is repeated until the spinning starts
+            while (this.deadline - now > this.spinNanos) {
+                LockSupport.parkNanos(this.deadline - now - this.spinNanos);
+                now = System.nanoTime();
+            }
+            while ((now = System.nanoTime()) < this.deadline) {
+                Thread.onSpinWait();
+            }
+        }
+        this.stats.record(now - this.lastFrame);
+        this.lastFrame = now;
+        this.deadline += this.interval;
+    }
+
+    @Override
+    public FrameStats getStats() {
+        return this.stats;
+    }
+}
@@ -0,0 +1,191 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The DistanceField class is a coarse grid over the static collidables of a {@link GameEnvironment}.
+ * Every cell holds a lower bound on the distance from any point inside it to the closest static
+ * collidable, so a ball that is further from all geometry than it moves in one step can skip the exact
+ * collision query.
+ * <p>
+ * Distances are only tracked up to {@value #MAX_DISTANCE}: a collidable only changes the cells within
+ * that distance of it, so adding or removing one patches a small area of the field instead of
+ * rebuilding it. Like the {@link CollisionGrid}, the field grows when a collidable is added outside the
+ * area it covers, and any point outside that area is reported as touching geometry.
+ * </p>
+ * <p>
+ * The field does not keep the collidables itself: the environment passes the ones it needs, from its
+ * static set or from its grid, and the field reads the bounds stored in their {@link CollidableHandle}s.
+ * </p>
+ */
+class DistanceField {
+    /**
+     * The largest distance the field tracks, further cells just hold this value.
+     */
+    static final float MAX_DISTANCE = 32;
+
+    private final double cellSize;
+    private float[] distances;
+    private int firstCol;
+    private int firstRow;
+    private int cols;
+    private int rows;
+
+    /**
+     * Constructs an empty DistanceField with square cells of the given size.
+     *
+     * @param cellSize the width and height of a single cell.
+     */
+    DistanceField(double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("cell size must be positive");
+        }
+        this.cellSize = cellSize;
+        this.distances = new float[0];
+    }
+
+    /**
+     * Adds a static collidable to the field, lowering the distances of the cells around it.
+     *
+     * @param handle  the {@link CollidableHandle} of the collidable to add.
+     * @param statics all the static collidables, including the new one, in case the field has to grow.
+     */
+    void add(CollidableHandle handle, List<CollidableHandle> statics) {
+        int minCol = cellOf(handle.minX() - MAX_DISTANCE);
+        int minRow = cellOf(handle.minY() - MAX_DISTANCE);
+        int maxCol = cellOf(handle.maxX() + MAX_DISTANCE);
+        int maxRow = cellOf(handle.maxY() + MAX_DISTANCE);
+        if (this.cols == 0 || minCol < this.firstCol || minRow < this.firstRow
+                || maxCol >= this.firstCol + this.cols || maxRow >= this.firstRow + this.rows) {
+            grow(minCol, minRow, maxCol, maxRow, statics);
+            return;
+        }
+        stamp(handle, minCol, minRow, maxCol, maxRow);
+    }
+
+    /**
+     * Removes a static collidable from the field, and computes the cells around it again from the
+     * collidables that are left.
+     *
+     * @param handle the {@link CollidableHandle} of the removed collidable, with the bounds it was added with.
+     * @param nearby the remaining static collidables within {@value #MAX_DISTANCE} of it (more are allowed,
+     *               and may appear more than once).
+     */
+    void remove(CollidableHandle handle, List<CollidableHandle> nearby) {
+        int minCol = Math.max(cellOf(handle.minX() - MAX_DISTANCE), this.firstCol);
+        int minRow = Math.max(cellOf(handle.minY() - MAX_DISTANCE), this.firstRow);
+        int maxCol = Math.min(cellOf(handle.maxX() + MAX_DISTANCE), this.firstCol + this.cols - 1);
+        int maxRow = Math.min(cellOf(handle.maxY() + MAX_DISTANCE), this.firstRow + this.rows - 1);
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                this.distances[index(col, r)] = MAX_DISTANCE;
+            }
+        }
+        for (int i = 0; i < nearby.size(); i++) {
+            if (nearby.get(i) != handle) {
+                stamp(nearby.get(i), minCol, minRow, maxCol, maxRow);
+            }
+        }
+    }
+
+    /**
+     * Returns a lower bound on the distance from the given point to the closest static collidable.
+     *
+     * @param x the x value of the point.
+     * @param y the y value of the point.
+     * @return the lower bound, at most {@value #MAX_DISTANCE}, and 0 outside the area the field covers.
+     */
+    double distanceAt(double x, double y) {
+        int col = cellOf(x);
+        int r = cellOf(y);
+        if (col < this.firstCol || r < this.firstRow || col >= this.firstCol + this.cols
+                || r >= this.firstRow + this.rows) {
+            return 0;
+        }
+        return this.distances[index(col, r)];
+    }
+
+    /**
+     * Lowers every cell of the given range (clipped to the field) to its distance from the collidable.
+     *
+     * @param handle the {@link CollidableHandle} of the collidable.
+     * @param minCol the first column.
+     * @param minRow the first row.
+     * @param maxCol the last column.
+     * @param maxRow the last row.
+     */
+    private void stamp(CollidableHandle handle, int minCol, int minRow, int maxCol, int maxRow) {
+        double minX = handle.minX();
+        double minY = handle.minY();
+        double maxX = handle.maxX();
+        double maxY = handle.maxY();
+        minCol = Math.max(Math.max(minCol, cellOf(minX - MAX_DISTANCE)), this.firstCol);
+        minRow = Math.max(Math.max(minRow, cellOf(minY - MAX_DISTANCE)), this.firstRow);
+        maxCol = Math.min(Math.min(maxCol, cellOf(maxX + MAX_DISTANCE)), this.firstCol + this.cols - 1);
+        maxRow = Math.min(Math.min(maxRow, cellOf(maxY + MAX_DISTANCE)), this.firstRow + this.rows - 1);
+        for (int r = minRow; r <= maxRow; r++) {
+            double cellTop = r * this.cellSize;
+            // the gap between the row of cells and the rectangle, 0 if they overlap
+            double gapY = Math.max(0, Math.max(minY - (cellTop + this.cellSize), cellTop - maxY));
+            for (int col = minCol; col <= maxCol; col++) {
+                double cellLeft = col * this.cellSize;
+                double gapX = Math.max(0, Math.max(minX - (cellLeft + this.cellSize), cellLeft - maxX));
+                float distance = (float) Math.sqrt(gapX * gapX + gapY * gapY);
+                int i = index(col, r);
+                if (distance < this.distances[i]) {
+                    this.distances[i] = distance;
+                }
+            }
+        }
+    }
+
+    /**
+     * Enlarges the field so it covers the given cell range, and stamps all the collidables again.
+     *
+     * @param minCol the first column that has to be covered.
+     * @param minRow the first row that has to be covered.
+     * @param maxCol the last column that has to be covered.
+     * @param maxRow the last row that has to be covered.
+     * @param statics all the static collidables.
+     */
+    private void grow(int minCol, int minRow, int maxCol, int maxRow, List<CollidableHandle> statics) {
+        if (this.cols != 0) {
+            minCol = Math.min(minCol, this.firstCol);
+            minRow = Math.min(minRow, this.firstRow);
+            maxCol = Math.max(maxCol, this.firstCol + this.cols - 1);
+            maxRow = Math.max(maxRow, this.firstRow + this.rows - 1);
+        }
+        this.firstCol = minCol;
+        this.firstRow = minRow;
+        this.cols = maxCol - minCol + 1;
+        this.rows = maxRow - minRow + 1;
+        this.distances = new float[this.cols * this.rows];
+        Arrays.fill(this.distances, MAX_DISTANCE);
+        for (int i = 0; i < statics.size(); i++) {
+            stamp(statics.get(i), minCol, minRow, maxCol, maxRow);
+        }
+    }
+
+    /**
+     * Returns the global column (or row) of the cell that contains the given coordinate.
+     *
+     * @param value an x or y coordinate.
+     * @return the column or row of the cell containing it.
+     */
+    private int cellOf(double value) {
+        return (int) Math.floor(value / this.cellSize);
+    }
+
+    /**
+     * Returns the position of the given cell in the distance array.
+     *
+     * @param col the global column of the cell.
+     * @param r   the global row of the cell.
+     * @return the index of the cell.
+     */
+    private int index(int col, int r) {
+        return (r - this.firstRow) * this.cols + (col - this.firstCol);
+    }
+}
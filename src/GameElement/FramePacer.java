@@ -0,0 +1,28 @@
+// Ori Kenigsbuch
+package GameElement;
+
+/**
+ * The FramePacer interface is the strategy an animation loop uses to wait for its next frame, such as
+ * {@link Game#run()}. Implementations trade CPU time for how close to the deadline a frame starts, and
+ * keep {@link FrameStats} of how well they do.
+ */
+public interface FramePacer {
+    /**
+     * Starts pacing at the given frame rate, from now. The statistics are cleared.
+     *
+     * @param framesPerSecond the frame rate.
+     */
+    void start(int framesPerSecond);
+
+    /**
+     * Waits until the deadline of the next frame, and records the interval since the last frame.
+     */
+    void awaitNextFrame();
+
+    /**
+     * Returns the statistics of the frames paced since {@link #start(int)}.
+     *
+     * @return the {@link FrameStats}.
+     */
+    FrameStats getStats();
+}
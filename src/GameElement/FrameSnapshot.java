@@ -0,0 +1,385 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import biuoop.DrawSurface;
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.util.Arrays;
+
+/**
+ * The FrameSnapshot class is one frame of the game, recorded on the simulation thread and drawn later on
+ * a render thread.
+ * <p>
+ * It is a {@link DrawSurface}, so the sprites record themselves by drawing on it exactly as they draw on
+ * a window: every call is stored as an operation code with its numbers and its color or text, in arrays
+ * that are reused from frame to frame and only grow. {@link #replay(DrawSurface)} then makes the same
+ * calls on a real surface. Once a snapshot is published (see {@link TripleBuffer}) it is not changed
+ * until the render thread hands it back, so the render thread reads a consistent frame while the next
+ * one is simulated. Colors, texts and images are immutable and only referenced; a polygon is copied.
+ * </p>
+ */
+public class FrameSnapshot implements DrawSurface {
+    private static final int SET_COLOR = 0;
+    private static final int DRAW_LINE = 1;
+    private static final int DRAW_OVAL = 2;
+    private static final int FILL_OVAL = 3;
+    private static final int DRAW_RECTANGLE = 4;
+    private static final int FILL_RECTANGLE = 5;
+    private static final int DRAW_CIRCLE = 6;
+    private static final int FILL_CIRCLE = 7;
+    private static final int DRAW_TEXT = 8;
+    private static final int DRAW_POLYGON = 9;
+    private static final int FILL_POLYGON = 10;
+    private static final int DRAW_IMAGE = 11;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final int width;
+    private final int height;
+    private int[] ops;
+    private int[] args;
+    private Object[] refs;
+    private int opCount;
+    private int argCount;
+    private int refCount;
+    private long tick;
+
+    /**
+     * Constructs an empty FrameSnapshot of a surface of the given size.
+     *
+     * @param width  the width of the surface, in pixels.
+     * @param height the height of the surface, in pixels.
+     */
+    public FrameSnapshot(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.ops = new int[INITIAL_CAPACITY];
+        this.args = new int[INITIAL_CAPACITY * 4];
+        this.refs = new Object[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Empties the snapshot, to record a new frame in it.
+     *
+     * @param frameTick the number of the tick the frame is recorded after.
+     */
+    public void clear(long frameTick) {
+        // the references are dropped so the snapshot does not keep old texts alive
+        Arrays.fill(this.refs, 0, this.refCount, null);
+        this.opCount = 0;
+        this.argCount = 0;
+        this.refCount = 0;
+        this.tick = frameTick;
+    }
+
+    /**
+     * Returns the number of the tick the frame was recorded after.
+     *
+     * @return the tick.
+     */
+    public long getTick() {
+        return this.tick;
+    }
+
+    /**
+     * Returns the number of drawing calls recorded.
+     *
+     * @return the number of calls.
+     */
+    public int size() {
+        return this.opCount;
+    }
+
+    /**
+     * Draws the recorded frame on the given surface, with the same calls it was recorded from.
+     *
+     * @param d the {@link DrawSurface} to draw on.
+     */
+    public void replay(DrawSurface d) {
+        int a = 0;
+        int r = 0;
+        int[] n = this.args;
+        for (int i = 0; i < this.opCount; i++) {
+            switch (this.ops[i]) {
+                case SET_COLOR:
+                    d.setColor((Color) this.refs[r++]);
+                    break;
+                case DRAW_LINE:
+                    d.drawLine(n[a], n[a + 1], n[a + 2], n[a + 3]);
+                    a += 4;
+                    break;
+                case DRAW_OVAL:
+                    d.drawOval(n[a], n[a + 1], n[a + 2], n[a + 3]);
+                    a += 4;
+                    break;
+                case FILL_OVAL:
+                    d.fillOval(n[a], n[a + 1], n[a + 2], n[a + 3]);
+                    a += 4;
+                    break;
+                case DRAW_RECTANGLE:
+                    d.drawRectangle(n[a], n[a + 1], n[a + 2], n[a + 3]);
+                    a += 4;
+                    break;
+                case FILL_RECTANGLE:
+                    d.fillRectangle(n[a], n[a + 1], n[a + 2], n[a + 3]);
+                    a += 4;
+                    break;
+                case DRAW_CIRCLE:
+                    d.drawCircle(n[a], n[a + 1], n[a + 2]);
+                    a += 3;
+                    break;
+                case FILL_CIRCLE:
+                    d.fillCircle(n[a], n[a + 1], n[a + 2]);
+                    a += 3;
+                    break;
+                case DRAW_TEXT:
+                    d.drawText(n[a], n[a + 1], (String) this.refs[r++], n[a + 2]);
+                    a += 3;
+                    break;
+                case DRAW_POLYGON:
+                    d.drawPolygon((Polygon) this.refs[r++]);
+                    break;
+                case FILL_POLYGON:
+                    d.fillPolygon((Polygon) this.refs[r++]);
+                    break;
+                case DRAW_IMAGE:
+                    d.drawImage(n[a], n[a + 1], (Image) this.refs[r++]);
+                    a += 2;
+                    break;
+                default:
+                    throw new IllegalStateException("unknown drawing operation " + this.ops[i]);
+            }
+        }
+    }
+
+    /**
+     * Records an operation, making room for its numbers and its reference.
+     *
+     * @param op      the operation code.
+     * @param numbers how many numbers the operation has.
+     * @param ref     the color, text, polygon or image of the operation, or {@code null} if it has none.
+     */
+    private void record(int op, int numbers, Object ref) {
+        if (this.opCount == this.ops.length) {
+            this.ops = Arrays.copyOf(this.ops, this.ops.length * 2);
+        }
+        if (this.argCount + numbers > this.args.length) {
+            this.args = Arrays.copyOf(this.args, this.args.length * 2);
+        }
+        this.ops[this.opCount++] = op;
+        if (ref != null) {
+            if (this.refCount == this.refs.length) {
+                this.refs = Arrays.copyOf(this.refs, this.refs.length * 2);
+            }
+            this.refs[this.refCount++] = ref;
+        }
+    }
+
+    /**
+     * Records an operation with four numbers.
+     *
+     * @param op the operation code.
+     * @param x  the first number.
+     * @param y  the second number.
+     * @param w  the third number.
+     * @param h  the fourth number.
+     */
+    private void record4(int op, int x, int y, int w, int h) {
+        record(op, 4, null);
+        this.args[this.argCount++] = x;
+        this.args[this.argCount++] = y;
+        this.args[this.argCount++] = w;
+        this.args[this.argCount++] = h;
+    }
+
+    /**
+     * Records an operation with three numbers.
+     *
+     * @param op  the operation code.
+     * @param ref the text of the operation, or {@code null}.
+     * @param x   the first number.
+     * @param y   the second number.
+     * @param z   the third number.
+     */
+    private void record3(int op, Object ref, int x, int y, int z) {
+        record(op, 3, ref);
+        this.args[this.argCount++] = x;
+        this.args[this.argCount++] = y;
+        this.args[this.argCount++] = z;
+    }
+
+    /**
+     * Returns the width of the surface the frame is recorded for.
+     *
+     * @return the width, in pixels.
+     */
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Returns the height of the surface the frame is recorded for.
+     *
+     * @return the height, in pixels.
+     */
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Records a change of the drawing color.
+     *
+     * @param color the new color.
+     */
+    @Override
+    public void setColor(Color color) {
+        if (color == null) {
+            throw new IllegalArgumentException("the color can't be null");
+        }
+        record(SET_COLOR, 0, color);
+    }
+
+    /**
+     * Records a line.
+     *
+     * @param x1 the x of the start.
+     * @param y1 the y of the start.
+     * @param x2 the x of the end.
+     * @param y2 the y of the end.
+     */
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        record4(DRAW_LINE, x1, y1, x2, y2);
+    }
+
+    /**
+     * Records the outline of an oval.
+     *
+     * @param x the x of the bounding box.
+     * @param y the y of the bounding box.
+     * @param w the width.
+     * @param h the height.
+     */
+    @Override
+    public void drawOval(int x, int y, int w, int h) {
+        record4(DRAW_OVAL, x, y, w, h);
+    }
+
+    /**
+     * Records a filled oval.
+     *
+     * @param x the x of the bounding box.
+     * @param y the y of the bounding box.
+     * @param w the width.
+     * @param h the height.
+     */
+    @Override
+    public void fillOval(int x, int y, int w, int h) {
+        record4(FILL_OVAL, x, y, w, h);
+    }
+
+    /**
+     * Records the outline of a rectangle.
+     *
+     * @param x the x of the upper left corner.
+     * @param y the y of the upper left corner.
+     * @param w the width.
+     * @param h the height.
+     */
+    @Override
+    public void drawRectangle(int x, int y, int w, int h) {
+        record4(DRAW_RECTANGLE, x, y, w, h);
+    }
+
+    /**
+     * Records a filled rectangle.
+     *
+     * @param x the x of the upper left corner.
+     * @param y the y of the upper left corner.
+     * @param w the width.
+     * @param h the height.
+     */
+    @Override
+    public void fillRectangle(int x, int y, int w, int h) {
+        record4(FILL_RECTANGLE, x, y, w, h);
+    }
+
+    /**
+     * Records the outline of a circle.
+     *
+     * @param x the x of the center.
+     * @param y the y of the center.
+     * @param r the radius.
+     */
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        record3(DRAW_CIRCLE, null, x, y, r);
+    }
+
+    /**
+     * Records a filled circle.
+     *
+     * @param x the x of the center.
+     * @param y the y of the center.
+     * @param r the radius.
+     */
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        record3(FILL_CIRCLE, null, x, y, r);
+    }
+
+    /**
+     * Records a text.
+     *
+     * @param x        the x of the text.
+     * @param y        the y of the text.
+     * @param s        the text.
+     * @param fontSize the font size.
+     */
+    @Override
+    public void drawText(int x, int y, String s, int fontSize) {
+        if (s == null) {
+            throw new IllegalArgumentException("the text can't be null");
+        }
+        record3(DRAW_TEXT, s, x, y, fontSize);
+    }
+
+    /**
+     * Records the outline of a polygon, copying it.
+     *
+     * @param p the polygon.
+     */
+    @Override
+    public void drawPolygon(Polygon p) {
+        record(DRAW_POLYGON, 0, new Polygon(p.xpoints, p.ypoints, p.npoints));
+    }
+
+    /**
+     * Records a filled polygon, copying it.
+     *
+     * @param p the polygon.
+     */
+    @Override
+    public void fillPolygon(Polygon p) {
+        record(FILL_POLYGON, 0, new Polygon(p.xpoints, p.ypoints, p.npoints));
+    }
+
+    /**
+     * Records an image.
+     *
+     * @param x   the x of the upper left corner.
+     * @param y   the y of the upper left corner.
+     * @param img the image.
+     */
+    @Override
+    public void drawImage(int x, int y, Image img) {
+        if (img == null) {
+            throw new IllegalArgumentException("the image can't be null");
+        }
+        record(DRAW_IMAGE, 2, img);
+        this.args[this.argCount++] = x;
+        this.args[this.argCount++] = y;
+    }
+}
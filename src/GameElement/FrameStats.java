@@ -0,0 +1,127 @@
+// Ori Kenigsbuch
+package GameElement;
+
+/**
+ * The FrameStats class keeps live statistics of the intervals between frames of a {@link FramePacer}:
+ * their mean, their jitter (the standard deviation, kept with Welford's running update so nothing is
+ * stored per frame), the largest distance from the target interval, and how many frames missed their
+ * deadline.
+ */
+public class FrameStats {
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private long targetNanos;
+    private long frames;
+    private long missed;
+    private double mean;
+    // the sum of squared distances from the mean
+    private double squares;
+    private long worstError;
+    private long lastInterval;
+
+    /**
+     * Forgets every frame, and sets the interval the frames are aimed at.
+     *
+     * @param target the target interval, in nanoseconds.
+     */
+    void reset(long target) {
+        this.targetNanos = target;
+        this.frames = 0;
+        this.missed = 0;
+        this.mean = 0;
+        this.squares = 0;
+        this.worstError = 0;
+        this.lastInterval = 0;
+    }
+
+    /**
+     * Records the interval between two frames.
+     *
+     * @param interval the interval, in nanoseconds.
+     */
+    void record(long interval) {
+        this.frames++;
+        this.lastInterval = interval;
+        double delta = interval - this.mean;
+        this.mean += delta / this.frames;
+        this.squares += delta * (interval - this.mean);
+        this.worstError = Math.max(this.worstError, Math.abs(interval - this.targetNanos));
+    }
+
+    /**
+     * Records a frame that started after its deadline.
+     */
+    void recordMissed() {
+        this.missed++;
+    }
+
+    /**
+     * Returns the number of intervals recorded.
+     *
+     * @return the number of frames.
+     */
+    public long getFrames() {
+        return this.frames;
+    }
+
+    /**
+     * Returns the number of frames that started after their deadline.
+     *
+     * @return the number of missed deadlines.
+     */
+    public long getMissedDeadlines() {
+        return this.missed;
+    }
+
+    /**
+     * Returns the interval the frames are aimed at.
+     *
+     * @return the target interval, in nanoseconds.
+     */
+    public long getTargetNanos() {
+        return this.targetNanos;
+    }
+
+    /**
+     * Returns the mean interval between frames.
+     *
+     * @return the mean, in nanoseconds.
+     */
+    public double getMeanNanos() {
+        return this.mean;
+    }
+
+    /**
+     * Returns the jitter, the standard deviation of the interval between frames.
+     *
+     * @return the jitter, in nanoseconds.
+     */
+    public double getJitterNanos() {
+        return this.frames < 2 ? 0 : Math.sqrt(this.squares / (this.frames - 1));
+    }
+
+    /**
+     * Returns the largest distance of an interval from the target interval.
+     *
+     * @return the distance, in nanoseconds.
+     */
+    public long getWorstErrorNanos() {
+        return this.worstError;
+    }
+
+    /**
+     * Returns the last interval between frames.
+     *
+     * @return the interval, in nanoseconds.
+     */
+    public long getLastIntervalNanos() {
+        return this.lastInterval;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d frames, mean %.3f ms (target %.3f ms), jitter %.3f ms, worst %.3f ms, %d missed",
+                this.frames, this.mean / NANOS_PER_MILLI, this.targetNanos / NANOS_PER_MILLI,
+                getJitterNanos() / NANOS_PER_MILLI, this.worstError / NANOS_PER_MILLI, this.missed);
+    }
+}
@@ -1,6 +1,7 @@
 // Ori Kenigsbuch
 package GameElement;
 
+import Ecs.World;
 import GameObjects.Collidable;
 import GameObjects.Sprite;
 import GameObjects.SpriteCollection;
@@ -10,22 +11,58 @@ import Listeners.BallRemover;
 import Listeners.BlockRemover;
 import Listeners.ScoreTrackingListener;
 
-import biuoop.Sleeper;
 import biuoop.DrawSurface;
 import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The GameElement.GameElement.Game class represents the main class of the game.
  * It manages the game environment, sprites, and runs the game animation loop.
  */
 public class Game {
+    // the tick rate the velocities of the game were tuned for
+    private static final int BASE_RATE = 60;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    // the most simulated time made up before a frame is drawn, whatever the physics rate
+    private static final long MAX_CATCH_UP_NANOS = 100_000_000L;
+    // the first seconds of a run, whose missed deadlines are reported on their own
+    private static final int REPORT_SECONDS = 10;
+    // how many times the scripted paddle of the warm-up changes direction
+    private static final int WARM_UP_MOVES = 8;
+
     private SpriteCollection sprites;
     private GameEnvironment environment;
-    private biuoop.GUI gui;
+    private RenderBackend renderBackend;
+    private InputSampler input;
     private Counter blockCounter;
     private Counter ballCounter;
     private Counter score;
+    private boolean tileMapLevels;
+    private boolean ballSystemBalls;
+    private BallSystem ballSystem;
+    private ImpactScheduler impactScheduler;
+    private BallCollisions ballCollisions;
+    private ParallelBallStepper parallelStepper;
+    private ForkJoinPool parallelPool;
+    private World world;
+    private AllocationMonitor allocationMonitor;
+    private StateMirror stateMirror;
+    private int physicsRate;
+    private int frameRate;
+    private FramePacer framePacer;
+    private boolean pipelinedRendering;
+    private SnapshotRenderer renderer;
+    private TripleBuffer<FrameSnapshot> snapshots;
+    private long tickCount;
+    private long warmUpTicks;
+    private long earlyMissedDeadlines;
+    // how far the frame being drawn is from the previous tick to the last one
+    private double renderAlpha;
 
     /**
      * Constructs a new GameElement.GameElement.Game with an empty GameObjects.SpriteCollection and a new GameElement.GameElement.GameEnvironment.
@@ -36,14 +73,20 @@ public class Game {
         this.blockCounter = new Counter(42);
         this.ballCounter = new Counter(3);
         this.score = new Counter(0);
+        this.physicsRate = BASE_RATE;
+        this.frameRate = BASE_RATE;
+        this.framePacer = new DeadlinePacer();
+        this.earlyMissedDeadlines = -1;
+        this.renderAlpha = 1;
     }
     /**
      * Adds a collidable object to the game environment.
      *
      * @param c The collidable object to be added.
+     * @return the handle of the collidable in the environment.
      */
-    public void addCollidable(Collidable c) {
-        this.environment.addCollidable(c);
+    public CollidableHandle addCollidable(Collidable c) {
+        return this.environment.addCollidable(c);
     }
     /**
      * Adds a sprite object to the game sprites.
@@ -55,11 +98,27 @@ public class Game {
 
     }
 
+    /**
+     * Makes the game run without a window: nothing is drawn, and the paddle reads its keys from the
+     * given input. It has to be called before {@link #initialize()}, which then opens no window.
+     *
+     * @param script the {@link InputSource} of the paddle, such as a {@link ScriptedInput}.
+     */
+    public void setHeadless(InputSource script) {
+        this.renderBackend = new NullRenderBackend();
+        this.input = new InputSampler(script);
+    }
+
     /**
      * Initializes the game by creating the GUI and adding blocks, balls, and a paddle.
+     * A headless game (see {@link #setHeadless}) creates no GUI.
      */
     public void initialize() {
-        this.gui = new biuoop.GUI("", 800, 600);
+        if (this.renderBackend == null) {
+            biuoop.GUI gui = new biuoop.GUI("", 800, 600);
+            this.renderBackend = new GuiRenderBackend(gui);
+            this.input = new InputSampler(new KeyboardInput(gui.getKeyboardSensor()));
+        }
         Random random = new Random();
         double speed = 3;
         double angle =  (0.8) * 360;
@@ -67,15 +126,23 @@ public class Game {
 
 
         //balls
-        Ball b = new Ball(100, 400, 7, Color.white, environment, this);
-        Ball b1 = new Ball(120, 420, 7, Color.white, environment, this);
-        Ball b2 = new Ball(130, 350, 7, Color.white, environment, this);
-        b.setVelocity(v);
-        b1.setVelocity(v);
-        b2.setVelocity(v);
-        b.addToGame(this);
-        b1.addToGame(this);
-        b2.addToGame(this);
+        if (this.ballSystemBalls) {
+            this.ballSystem = new BallSystem(this.environment, 3);
+            this.ballSystem.add(100, 400, 7, Color.white, v.getDx(), v.getDy());
+            this.ballSystem.add(120, 420, 7, Color.white, v.getDx(), v.getDy());
+            this.ballSystem.add(130, 350, 7, Color.white, v.getDx(), v.getDy());
+            this.ballSystem.addToGame(this);
+        } else {
+            Ball b = new Ball(100, 400, 7, Color.white, environment, this);
+            Ball b1 = new Ball(120, 420, 7, Color.white, environment, this);
+            Ball b2 = new Ball(130, 350, 7, Color.white, environment, this);
+            b.setVelocity(v);
+            b1.setVelocity(v);
+            b2.setVelocity(v);
+            b.addToGame(this);
+            b1.addToGame(this);
+            b2.addToGame(this);
+        }
         //listeners
         BlockRemover blockRemover = new BlockRemover(this, blockCounter);
         BallRemover ballRemover = new BallRemover(this, ballCounter);
@@ -85,20 +152,25 @@ public class Game {
         double x, y;
 
 
-        for (int i = 0; i < 6; i++) {
-            Color color = generateRandColor();
-            for (int j = 0; j < 6 * 2 - i; j++) {
-                double xVal = this.environment.getGuiWidth() - ((j + 1) * 50 + 20);
-                double yVal = (i + 3) * 20 + 20 + 3;
-                Rectangle rectangle = new Rectangle(new Point(xVal, yVal), 50, 20);
-                Block block = new Block(rectangle, color, this);
-                block.addHitListener(blockRemover);
-                block.addHitListener(scoreListener);
-                block.addToGame();
+        if (this.tileMapLevels) {
+            buildTileMap(6, 50, 20, blockRemover, scoreListener);
+        } else {
+            for (int i = 0; i < 6; i++) {
+                // the blocks of a row share one archetype
+                BlockArchetype rowType = new BlockArchetype(generateRandColor(), BlockArchetype.DEFAULT_SCORE,
+                        this, blockRemover, scoreListener);
+                for (int j = 0; j < 6 * 2 - i; j++) {
+                    double xVal = this.environment.getGuiWidth() - ((j + 1) * 50 + 20);
+                    double yVal = (i + 3) * 20 + 20 + 3;
+                    Rectangle rectangle = new Rectangle(new Point(xVal, yVal), 50, 20);
+                    Block block = new Block(rectangle, rowType);
+                    block.addToGame();
+                }
             }
         }
         //paddle
-        Paddle p = new Paddle(new Block(new Rectangle(new Point(25, 560), 120, 20), Color.blue, this), gui, environment);
+        Paddle p = new Paddle(new Block(new Rectangle(new Point(25, 560), 120, 20), Color.blue, this), this.input,
+                this.renderBackend, environment);
         p.addToGame(this);
 
         //borders:
@@ -127,6 +199,62 @@ public class Game {
         rightB.addToGame();
     }
 
+    /**
+     * Runs throwaway copies of the level headless for the warm-up ticks, so the JIT compiles the physics
+     * and drawing code before the first visible frame. Each copy is configured like this game: the same
+     * level, physics rate and collision settings of the environment, and the same engines (ball
+     * collisions, event-driven physics, parallel stepping on the same pool), so the code paths the run
+     * takes are the ones that get compiled. The copies tick as fast as they can, with a paddle moving
+     * back and forth, and draw every tick into a {@link FrameSnapshot} that is never shown; with
+     * pipelined rendering the snapshot also goes through a {@link TripleBuffer} and is replayed, as on
+     * the render thread. A copy that ends is replaced by a new one. Nothing of them is kept.
+     */
+    private void warmUp() {
+        long done = 0;
+        while (done < this.warmUpTicks) {
+            ScriptedInput script = new ScriptedInput();
+            long move = Math.max(1, this.warmUpTicks / WARM_UP_MOVES);
+            for (int i = 0; i < WARM_UP_MOVES; i++) {
+                String key = i % 2 == 0 ? biuoop.KeyboardSensor.LEFT_KEY : biuoop.KeyboardSensor.RIGHT_KEY;
+                script.press(key, i * move, (i + 1) * move);
+            }
+            Game copy = new Game();
+            copy.setHeadless(script);
+            copy.setTileMapLevels(this.tileMapLevels);
+            copy.setBallSystem(this.ballSystemBalls);
+            copy.setPhysicsRate(this.physicsRate);
+            copy.environment.copySettingsFrom(this.environment);
+            copy.initialize();
+            if (this.ballCollisions != null) {
+                copy.enableBallCollisions();
+            }
+            if (this.impactScheduler != null) {
+                copy.enableEventDrivenPhysics();
+            }
+            if (this.parallelStepper != null) {
+                copy.enableParallelStepping(this.parallelPool);
+            }
+            int width = this.environment.getGuiWidth();
+            int height = this.environment.getGuiHeight();
+            TripleBuffer<FrameSnapshot> frames = new TripleBuffer<>(new FrameSnapshot(width, height),
+                    new FrameSnapshot(width, height), new FrameSnapshot(width, height));
+            FrameSnapshot screen = new FrameSnapshot(width, height);
+            while (done < this.warmUpTicks && !copy.isOver()) {
+                copy.tick(null);
+                FrameSnapshot frame = frames.writable();
+                frame.clear(copy.tickCount);
+                copy.sprites.drawAllOn(frame);
+                if (this.pipelinedRendering) {
+                    frames.publish();
+                    frames.acquire();
+                    screen.clear(copy.tickCount);
+                    frames.readable().replay(screen);
+                }
+                done++;
+            }
+        }
+    }
+
     /**
      * Generates and adds the game background.
      */
@@ -179,7 +307,8 @@ public class Game {
     public void generatePaddle(int boundH, int paddleW, int paddleH) {
         Point topLeft = new Point(400, 565);
         Rectangle paddleRect = new Rectangle(topLeft, paddleW, paddleH);
-        Paddle p = new Paddle(new Block(paddleRect, Color.orange, this), this.gui, this.environment);
+        Paddle p = new Paddle(new Block(paddleRect, Color.orange, this), this.input, this.renderBackend,
+                this.environment);
         p.addToGame(this);
     }
 
@@ -197,19 +326,87 @@ public class Game {
         BlockRemover blockRemover = new BlockRemover(this, blockCounter);
         ScoreTrackingListener scoreListener = new ScoreTrackingListener(score);
         for (int i = 0; i < numOfRows; i++) {
-            Color color = generateRandColor();
+            // the blocks of a row share one archetype
+            BlockArchetype rowType = new BlockArchetype(generateRandColor(), BlockArchetype.DEFAULT_SCORE, this,
+                    blockRemover, scoreListener);
             for (int j = 0; j < numOfRows * 2 - i; j++) {
                 double xVal = this.environment.getGuiWidth() - ((j + 1) * blockW + 20);
                 double yVal = (i + 3) * blockH + blockH + 3;
                 Rectangle rectangle = new Rectangle(new Point(xVal, yVal), blockW, blockH);
-                Block block = new Block(rectangle, color, this);
-                block.addHitListener(blockRemover);
-                block.addHitListener(scoreListener);
+                Block block = new Block(rectangle, rowType);
                 block.addToGame();
             }
         }
     }
 
+    /**
+     * Generates and adds the same pattern of blocks as {@link #generateBlocks}, stored in a single
+     * {@link TileMap} instead of one {@link Block} object per block.
+     *
+     * @param numOfRows the number of rows of blocks
+     * @param blockW the width of each block
+     * @param blockH the height of each block
+     */
+    public void generateTileMap(int numOfRows, int blockW, int blockH) {
+        BlockRemover blockRemover = new BlockRemover(this, blockCounter);
+        ScoreTrackingListener scoreListener = new ScoreTrackingListener(score);
+        buildTileMap(numOfRows, blockW, blockH, blockRemover, scoreListener);
+    }
+
+    /**
+     * Builds the block pattern as a {@link TileMap} and adds it to the game.
+     *
+     * @param numOfRows the number of rows of blocks
+     * @param blockW the width of each block
+     * @param blockH the height of each block
+     * @param blockRemover the listener removing hit blocks
+     * @param scoreListener the listener updating the score
+     */
+    private void buildTileMap(int numOfRows, int blockW, int blockH, BlockRemover blockRemover,
+                              ScoreTrackingListener scoreListener) {
+        int cols = numOfRows * 2;
+        Point topLeft = new Point(this.environment.getGuiWidth() - (cols * blockW + 20), 4 * blockH + 3);
+        TileMap map = new TileMap(topLeft, numOfRows, cols, blockW, blockH, this);
+        for (int i = 0; i < numOfRows; i++) {
+            int id = map.addTileType(generateRandColor());
+            for (int j = 0; j < cols - i; j++) {
+                map.setTile(i, cols - 1 - j, id);
+            }
+        }
+        map.addHitListener(blockRemover);
+        map.addHitListener(scoreListener);
+        map.addToGame();
+    }
+
+    /**
+     * Selects whether the levels built by {@link #initialize()} store their blocks in a {@link TileMap}.
+     *
+     * @param enabled true to build tile map levels.
+     */
+    public void setTileMapLevels(boolean enabled) {
+        this.tileMapLevels = enabled;
+    }
+
+    /**
+     * Selects whether {@link #initialize()} puts the balls of the game in one {@link BallSystem} instead of
+     * adding a {@link Ball} sprite for each, so a multi-ball mode can add thousands more to the system.
+     *
+     * @param enabled true to keep the balls in a {@link BallSystem}.
+     */
+    public void setBallSystem(boolean enabled) {
+        this.ballSystemBalls = enabled;
+    }
+
+    /**
+     * Returns the {@link BallSystem} of the game.
+     *
+     * @return the {@link BallSystem} made by {@link #initialize()}, or {@code null} if the balls are
+     * {@link Ball} sprites.
+     */
+    public BallSystem getBallSystem() {
+        return this.ballSystem;
+    }
+
     /**
      * Generates and adds two balls to the game with random velocities.
      */
@@ -233,33 +430,356 @@ public class Game {
 
     /**
      * Runs the game animation loop.
+     * <p>
+     * Physics and drawing are decoupled: the time since the last frame is added to an accumulator, and
+     * the sprites are stepped in fixed ticks of {@code 1 / physicsRate} seconds while it holds a whole
+     * tick, so a slow frame is made up by more ticks instead of slowing the game down. The accumulator is
+     * clamped to {@value #MAX_CATCH_UP_NANOS} nanoseconds, so a frame makes up at most that much time, as
+     * many ticks as fit in it at the physics rate; when the machine falls further behind than that the
+     * time over it is dropped, and the game slows down rather than falling further and further behind.
+     * The frame is then drawn between the last two ticks, at the fraction of a tick that is
+     * left in the accumulator, and the {@link FramePacer} of the game waits for the next frame.
+     * </p>
+     * <p>
+     * With pipelined rendering (see {@link #setPipelinedRendering}) the frame is only recorded into a
+     * {@link FrameSnapshot} here, and drawn by a {@link SnapshotRenderer} thread while the next frame is
+     * simulated.
+     * </p>
      */
     public void run() {
-        biuoop.Sleeper sleeper = new Sleeper();
-        int framesPerSecond = 60;
-        int millisecondsPerFrame = 1000 / framesPerSecond;
+        if (this.warmUpTicks > 0) {
+            warmUp();
+        }
+        if (this.pipelinedRendering) {
+            startRenderer();
+        }
+        long nanosPerTick = NANOS_PER_SECOND / this.physicsRate;
+        // whole ticks, plus the fraction the frame is drawn at, the cap scales with the physics rate
+        long maxBacklog = Math.max(1, MAX_CATCH_UP_NANOS / nanosPerTick) * nanosPerTick + nanosPerTick - 1;
+        long accumulator = 0;
+        long previousTime = System.nanoTime();
+        long reportTime = previousTime + REPORT_SECONDS * NANOS_PER_SECOND;
+        this.earlyMissedDeadlines = -1;
+        this.framePacer.start(this.frameRate);
         while (true) {
-            long startTime = System.currentTimeMillis(); // timing
-            if (blockCounter.getValue() == 0 || ballCounter.getValue() == 0) {
-                gui.close();
-                if (blockCounter.getValue() == 0) {
-                    score.increase(100);
+            long startTime = System.nanoTime(); // timing
+            if (this.earlyMissedDeadlines < 0 && startTime - reportTime >= 0) {
+                this.earlyMissedDeadlines = this.framePacer.getStats().getMissedDeadlines();
+            }
+            if (isOver()) {
+                if (this.earlyMissedDeadlines < 0) {
+                    this.earlyMissedDeadlines = this.framePacer.getStats().getMissedDeadlines();
                 }
+                stopRenderer();
+                finish();
                 return;
             }
 
-            DrawSurface d = gui.getDrawSurface();
-            this.sprites.drawAllOn(d);
-            gui.show(d);
-            this.sprites.notifyAllTimePassed();
+            AllocationMonitor monitor = this.allocationMonitor;
+            if (monitor != null) {
+                monitor.beginFrame();
+            }
+            // too far behind to catch up, only the most recent time is made up
+            accumulator = Math.min(accumulator + startTime - previousTime, maxBacklog);
+            previousTime = startTime;
+            while (accumulator >= nanosPerTick) {
+                tick(monitor);
+                accumulator -= nanosPerTick;
+            }
+            this.renderAlpha = (double) accumulator / nanosPerTick;
+            if (this.renderer != null) {
+                capture(monitor);
+            } else {
+                render(monitor);
+            }
+            if (monitor != null) {
+                monitor.endFrame();
+            }
 
             // timing
-            long usedTime = System.currentTimeMillis() - startTime;
-            long milliSecondLeftToSleep = millisecondsPerFrame - usedTime;
-            if (milliSecondLeftToSleep > 0) {
-                sleeper.sleepFor(milliSecondLeftToSleep);
+            this.framePacer.awaitNextFrame();
+        }
+    }
+
+    /**
+     * Runs the game headless and uncapped: ticks are run back to back, as fast as the CPU allows, and no
+     * frame is drawn, until the game is over or the given number of ticks has run. Each tick counts as a
+     * frame of the {@link AllocationMonitor} of the game, if it has one, so a strict monitor fails a
+     * headless run that goes over its budget.
+     *
+     * @param maxTicks the most ticks to run.
+     * @return the number of ticks that were run.
+     * @throws IllegalStateException if a strict {@link AllocationMonitor} finds the budget exceeded.
+     */
+    public long simulate(long maxTicks) {
+        AllocationMonitor monitor = this.allocationMonitor;
+        long ticks = 0;
+        while (ticks < maxTicks) {
+            if (isOver()) {
+                finish();
+                return ticks;
             }
+            if (monitor != null) {
+                monitor.beginFrame();
+            }
+            tick(monitor);
+            if (monitor != null) {
+                monitor.endFrame();
+            }
+            ticks++;
+        }
+        return ticks;
+    }
+
+    /**
+     * Returns true once all the blocks or all the balls are gone.
+     *
+     * @return whether the game is over.
+     */
+    private boolean isOver() {
+        return blockCounter.getValue() == 0 || ballCounter.getValue() == 0;
+    }
+
+    /**
+     * Ends the game: closes the render backend, and gives the bonus for clearing all the blocks.
+     */
+    private void finish() {
+        this.renderBackend.close();
+        if (blockCounter.getValue() == 0) {
+            score.increase(100);
+        }
+    }
+
+    /**
+     * Steps the sprites of the game one physics tick.
+     *
+     * @param monitor the {@link AllocationMonitor} of the frame, or {@code null}.
+     */
+    private void tick(AllocationMonitor monitor) {
+        if (monitor != null) {
+            monitor.begin(AllocationMonitor.Phase.TIME_PASSED);
+        }
+        this.sprites.notifyAllTimePassed();
+        if (monitor != null) {
+            monitor.end(AllocationMonitor.Phase.TIME_PASSED);
+        }
+        if (this.input != null) {
+            this.input.advance();
+        }
+        this.tickCount++;
+        if (this.stateMirror != null) {
+            this.stateMirror.publish();
+        }
+    }
+
+    /**
+     * Draws the sprites of the game and shows the frame.
+     *
+     * @param monitor the {@link AllocationMonitor} of the frame, or {@code null}.
+     */
+    private void render(AllocationMonitor monitor) {
+        DrawSurface d = this.renderBackend.getDrawSurface();
+        if (d == null) {
+            // a headless game draws nothing
+            return;
+        }
+        if (monitor != null) {
+            monitor.begin(AllocationMonitor.Phase.DRAW);
+        }
+        this.sprites.drawAllOn(d);
+        if (monitor != null) {
+            monitor.end(AllocationMonitor.Phase.DRAW);
+            monitor.begin(AllocationMonitor.Phase.SHOW);
+        }
+        this.renderBackend.show(d);
+        if (monitor != null) {
+            monitor.end(AllocationMonitor.Phase.SHOW);
+        }
+        if (this.input != null) {
+            this.input.presented(this.tickCount);
+        }
+    }
+
+    /**
+     * Records the sprites of the game into the next snapshot, and publishes it to the render thread.
+     *
+     * @param monitor the {@link AllocationMonitor} of the frame, or {@code null}.
+     */
+    private void capture(AllocationMonitor monitor) {
+        FrameSnapshot frame = this.snapshots.writable();
+        frame.clear(this.tickCount);
+        if (monitor != null) {
+            monitor.begin(AllocationMonitor.Phase.DRAW);
+        }
+        this.sprites.drawAllOn(frame);
+        if (monitor != null) {
+            monitor.end(AllocationMonitor.Phase.DRAW);
+        }
+        this.snapshots.publish();
+        this.renderer.signal();
+    }
+
+    /**
+     * Starts the render thread of a pipelined run, with a new set of snapshots.
+     */
+    private void startRenderer() {
+        int width = this.environment.getGuiWidth();
+        int height = this.environment.getGuiHeight();
+        this.snapshots = new TripleBuffer<>(new FrameSnapshot(width, height), new FrameSnapshot(width, height),
+                new FrameSnapshot(width, height));
+        this.renderer = new SnapshotRenderer(this.snapshots, this.renderBackend, this.input);
+        this.renderer.start();
+    }
+
+    /**
+     * Stops the render thread of a pipelined run, if there is one, before the game is finished.
+     */
+    private void stopRenderer() {
+        if (this.renderer == null) {
+            return;
+        }
+        try {
+            this.renderer.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.renderer = null;
+    }
+
+    /**
+     * Makes {@link #run()} draw on its own thread: every frame the sprites are recorded into a
+     * {@link FrameSnapshot}, which a {@link SnapshotRenderer} draws and shows while the next frame is
+     * simulated, so a frame takes about as long as the slower of the two instead of both. The
+     * {@link AllocationMonitor} then measures the recording, and not the showing, of the frames.
+     *
+     * @param enabled true to draw on a render thread.
+     */
+    public void setPipelinedRendering(boolean enabled) {
+        this.pipelinedRendering = enabled;
+    }
+
+    /**
+     * Makes {@link #run()} warm the JIT up before the first frame is drawn, by running throwaway copies
+     * of the level headless for the given number of ticks. The warm-up runs when the game starts and not
+     * when it is initialized, so the copies get every setting of the game, including engines enabled
+     * after {@link #initialize()}. The first seconds of the run then do not stutter while the physics
+     * code is still interpreted; {@link #getEarlyMissedDeadlines()} tells how much that helps.
+     *
+     * @param ticks the number of warm-up ticks, 0 (the default) for no warm-up.
+     */
+    public void setWarmUpTicks(long ticks) {
+        if (ticks < 0) {
+            throw new IllegalArgumentException("the number of warm-up ticks can't be negative");
+        }
+        this.warmUpTicks = ticks;
+    }
+
+    /**
+     * Returns how many frames missed their deadline in the first {@value #REPORT_SECONDS} seconds of the
+     * last {@link #run()}, or of the whole run if it was shorter.
+     *
+     * @return the number of missed deadlines, or -1 while the first seconds are still running.
+     */
+    public long getEarlyMissedDeadlines() {
+        return this.earlyMissedDeadlines;
+    }
+
+    /**
+     * Sets how many physics ticks {@link #run()} runs per second. All velocities are in pixels per frame
+     * of the original 60 Hz loop, and every tick moves things by the matching fraction of that, so the
+     * game keeps its speed at any rate; a higher rate gives smoother and more precise collisions.
+     *
+     * @param ticksPerSecond the tick rate, 60 by default, for example 120 or 240.
+     */
+    public void setPhysicsRate(int ticksPerSecond) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("the physics rate must be positive");
+        }
+        this.physicsRate = ticksPerSecond;
+        this.environment.setTimeStep((double) BASE_RATE / ticksPerSecond);
+    }
+
+    /**
+     * Selects how the environment of the game looks up collisions. Every collidable is tested by default;
+     * {@link CollisionMode#GRID} finds the same collisions and only tests the collidables near each
+     * trajectory, which pays off with many blocks.
+     *
+     * @param mode the {@link CollisionMode} to use.
+     */
+    public void setCollisionMode(CollisionMode mode) {
+        this.environment.setCollisionMode(mode);
+    }
+
+    /**
+     * Returns the sampler the paddle reads its keys from, whose statistics give the time from a key
+     * change to the first frame that shows it.
+     *
+     * @return the {@link InputSampler}, or {@code null} before the game is initialized.
+     */
+    public InputSampler getInputSampler() {
+        return this.input;
+    }
+
+    /**
+     * Returns the score.
+     *
+     * @return the score.
+     */
+    public int getScore() {
+        return this.score.getValue();
+    }
+
+    /**
+     * Returns the number of balls left.
+     *
+     * @return the number of balls left.
+     */
+    public int getBallsLeft() {
+        return this.ballCounter.getValue();
+    }
+
+    /**
+     * Returns the number of blocks left.
+     *
+     * @return the number of blocks left.
+     */
+    public int getBlocksLeft() {
+        return this.blockCounter.getValue();
+    }
+
+    /**
+     * Sets the strategy {@link #run()} waits for the next frame with.
+     *
+     * @param pacer the {@link FramePacer}, a {@link DeadlinePacer} by default.
+     */
+    public void setFramePacer(FramePacer pacer) {
+        if (pacer == null) {
+            throw new IllegalArgumentException("the frame pacer can't be null");
         }
+        this.framePacer = pacer;
+    }
+
+    /**
+     * Returns the strategy {@link #run()} waits for the next frame with, whose statistics describe the
+     * frames of the last run.
+     *
+     * @return the {@link FramePacer}.
+     */
+    public FramePacer getFramePacer() {
+        return this.framePacer;
+    }
+
+    /**
+     * Sets how many frames {@link #run()} draws per second at most. Frames between ticks are
+     * interpolated, so drawing can be faster than the physics rate.
+     *
+     * @param framesPerSecond the frame rate, 60 by default.
+     */
+    public void setFrameRate(int framesPerSecond) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("the frame rate must be positive");
+        }
+        this.frameRate = framesPerSecond;
     }
 
     /**
@@ -293,6 +813,170 @@ public class Game {
         this.sprites.removeSprite(s);
     }
 
+    /**
+     * Adds a ball to the game, as a sprite, and to the event-driven physics if it is enabled.
+     *
+     * @param b The ball to add.
+     */
+    public void addBall(Ball b) {
+        this.sprites.addSprite(b);
+        if (this.impactScheduler != null) {
+            this.impactScheduler.add(b);
+        }
+        if (this.ballCollisions != null) {
+            this.ballCollisions.addBall(b);
+        }
+        if (this.parallelStepper != null) {
+            this.parallelStepper.add(b);
+        }
+    }
+
+    /**
+     * Removes a ball from the game, and from the event-driven physics if it is enabled.
+     *
+     * @param b The ball to remove.
+     */
+    public void removeBall(Ball b) {
+        this.sprites.removeSprite(b);
+        if (this.impactScheduler != null) {
+            this.impactScheduler.remove(b);
+        }
+        if (this.ballCollisions != null) {
+            this.ballCollisions.removeBall(b);
+        }
+        if (this.parallelStepper != null) {
+            this.parallelStepper.remove(b);
+        }
+    }
+
+    /**
+     * Makes the balls of the game bounce off each other (see {@link BallCollisions}). It is off by
+     * default, since it changes how the game plays. Balls already in the game are included too.
+     */
+    public void enableBallCollisions() {
+        if (this.ballCollisions != null) {
+            return;
+        }
+        this.ballCollisions = new BallCollisions();
+        this.sprites.addSprite(this.ballCollisions);
+        for (Sprite s : new ArrayList<>(this.sprites.getSprites())) {
+            if (s instanceof Ball) {
+                this.ballCollisions.addBall((Ball) s);
+            }
+        }
+    }
+
+    /**
+     * Returns the entity-component-system {@link World} of the game, creating it the first time with the
+     * default systems and adding it to the game as a sprite. Its entities bounce off the collidables of
+     * the game and score into the game's score.
+     *
+     * @return the {@link World} of the game.
+     */
+    public World getWorld() {
+        if (this.world == null) {
+            this.world = World.withDefaultSystems(this.environment, this.score);
+            this.world.addToGame(this);
+        }
+        return this.world;
+    }
+
+    /**
+     * Measures the allocation of every frame of {@link #run()}, and of every tick of {@link #simulate}, with
+     * the given monitor, including the hit listener dispatch of the blocks of the game.
+     *
+     * @param monitor the {@link AllocationMonitor}, or {@code null} to stop measuring.
+     */
+    public void setAllocationMonitor(AllocationMonitor monitor) {
+        this.allocationMonitor = monitor;
+    }
+
+    /**
+     * Returns the allocation monitor of the game.
+     *
+     * @return the {@link AllocationMonitor}, or {@code null} if the game is not measured.
+     */
+    public AllocationMonitor getAllocationMonitor() {
+        return this.allocationMonitor;
+    }
+
+    /**
+     * Returns how far the frame being drawn is from the previous tick to the last one. Balls and the
+     * paddle are drawn at that fraction of the way between their positions in the two ticks.
+     *
+     * @return the fraction, from 0 (the previous tick) to 1 (the last tick), 1 unless {@link #run()}
+     * interpolates.
+     */
+    public double getRenderAlpha() {
+        return this.renderAlpha;
+    }
+
+    /**
+     * Mirrors the state of the game into a memory-mapped file after every tick of {@link #run()}, for
+     * tools in other processes (see {@link StateMirror}). The block bitmap covers the blocks that are in
+     * the game when the mirror is created, so it should be created after the level is built.
+     *
+     * @param file     the file to map, created or overwritten.
+     * @param maxBalls the number of balls the file has room for.
+     * @return the {@link StateMirror}.
+     * @throws IOException if the file cannot be created or mapped.
+     */
+    public StateMirror mirrorStateTo(Path file, int maxBalls) throws IOException {
+        List<Block> blocks = new ArrayList<>();
+        for (Collidable c : this.environment.getCollidables()) {
+            if (c instanceof Block) {
+                blocks.add((Block) c);
+            }
+        }
+        this.stateMirror = new StateMirror(file, maxBalls, blocks, this.sprites.getSprites(), this.environment,
+                this.score, this.ballCounter, this.blockCounter);
+        return this.stateMirror;
+    }
+
+    /**
+     * Moves the balls with event-driven physics: instead of every ball looking for a collision every
+     * frame, the time of each ball's next impact is predicted once and kept in a queue
+     * (see {@link ImpactScheduler}). Balls already in the game are handed over too.
+     */
+    public void enableEventDrivenPhysics() {
+        if (this.impactScheduler != null) {
+            return;
+        }
+        this.impactScheduler = new ImpactScheduler(this.environment);
+        this.environment.addEnvironmentListener(this.impactScheduler);
+        this.sprites.addSprite(this.impactScheduler);
+        for (Sprite s : new ArrayList<>(this.sprites.getSprites())) {
+            if (s instanceof Ball) {
+                this.impactScheduler.add((Ball) s);
+            }
+        }
+    }
+
+    /**
+     * Steps the balls on the given pool (see {@link ParallelBallStepper}): their collision queries run in
+     * parallel, and their hits are applied one ball at a time in the order the balls were added, so the
+     * game plays out exactly as if they were stepped in that order on the game thread. Without a pool the
+     * queries are made on the game thread, all at once through a batched query. Balls already in the game
+     * are handed over too.
+     *
+     * @param pool the {@link ForkJoinPool}, such as {@link ForkJoinPool#commonPool()}, or {@code null} to
+     *             batch the queries on the game thread.
+     */
+    public void enableParallelStepping(ForkJoinPool pool) {
+        if (this.parallelStepper != null) {
+            return;
+        }
+        this.parallelStepper = new ParallelBallStepper(this.environment, pool);
+        this.parallelPool = pool;
+        this.environment.addEnvironmentListener(this.parallelStepper);
+        this.sprites.addSprite(this.parallelStepper);
+        for (Sprite s : new ArrayList<>(this.sprites.getSprites())) {
+            if (s instanceof Ball) {
+                this.parallelStepper.add((Ball) s);
+            }
+        }
+    }
+
 
 }
 
@@ -3,15 +3,31 @@ package GameElement;
 
 import GameObjects.Collidable;
 import GameObjects.CollisionInfo;
+import GameObjects.CompoundCollidable;
+import GameObjects.MovingCollidable;
+import Geometry.FixedPoint;
 import Geometry.Line;
 import Geometry.Point;
+import Geometry.RayHit;
+import Geometry.Rectangle;
+import Geometry.SlabTest;
+import Listeners.EnvironmentListener;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The GameElement.GameEnvironment class represents the environment in which the game objects exist.
  * It manages a collection of collidable objects and provides utilities for detecting collisions
  * and accessing game-related settings such as dimensions and object sizes.
+ * <p>
+ * Collidables are kept in two sets: a static set of collidables that stand still (walls, blocks), which
+ * the grid and the other indexes are built over, and a dynamic set of {@link MovingCollidable}s (the
+ * paddle), which are tested on every query so their motion never forces an index to be rebuilt. Each
+ * registered collidable has a {@link CollidableHandle} that allows removing it in constant time.
+ * </p>
  */
 public class GameEnvironment {
         //screen size
@@ -27,36 +43,448 @@ public class GameEnvironment {
         //GameElement.Paddle size
         private static final int PADDLE_WIDTH = 150;
         private static final int PADDLE_HEIGHT = 10;
+        //grid cell size, one block wide
+        private static final double GRID_CELL_SIZE = 50;
+        //distance field cell size
+        private static final double DISTANCE_CELL_SIZE = 10;
 
-        private List<Collidable> collidables;
+        private List<CollidableHandle> staticHandles;
+        private List<CollidableHandle> dynamicHandles;
+        private List<Collidable> collidableView;
+        private CollisionMode mode;
+        private CollisionGrid grid;
+        private Map<Collidable, CollidableHandle> handles;
+        // the scratch of the environment's own queries, candidates, hit and closestHit belong to it
+        private QueryScratch scratch;
+        private List<CollidableHandle> candidates;
+        private long nextOrder;
+        private RayHit hit;
+        private RayHit closestHit;
+        private List<CompoundCollidable> compoundCollidables;
+        private boolean continuousCollision;
+        private boolean fixedPoint;
+        private List<EnvironmentListener> listeners;
+        private DistanceField distanceField;
+        private BoundsTable boundsTable;
+        private ShadowVerifier shadowVerifier;
+        private double timeStep;
 
         /**
          * Creates a new GameElement.GameEnvironment with no collidable objects.
+         * Collisions are looked up by testing every collidable, see {@link #setCollisionMode}.
          */
         public GameEnvironment() {
-                this.collidables = new ArrayList<>();
+                this.staticHandles = new ArrayList<>();
+                this.dynamicHandles = new ArrayList<>();
+                this.collidableView = new CollidableView();
+                this.handles = new IdentityHashMap<>();
+                this.scratch = new QueryScratch();
+                this.candidates = this.scratch.candidates();
+                this.hit = this.scratch.hit();
+                this.closestHit = this.scratch.closestHit();
+                this.compoundCollidables = new ArrayList<>();
+                this.listeners = new ArrayList<>();
+                this.boundsTable = new BoundsTable();
+                this.timeStep = 1;
+                this.mode = CollisionMode.LINEAR;
         }
 
         /**
-         * Adds the given collidable object to the environment.
+         * Adds the given collidable object to the environment. A {@link MovingCollidable} goes to the
+         * dynamic set, any other collidable to the static set. Adding a collidable that is already in the
+         * environment does nothing.
          *
          * @param c the {@link Collidable} object to add.
+         * @return the {@link CollidableHandle} of the collidable, which can be used to remove it.
          */
-        public void addCollidable(Collidable c) {
-                collidables.add(c);
+        public CollidableHandle addCollidable(Collidable c) {
+                CollidableHandle existing = this.handles.get(c);
+                if (existing != null) {
+                        return existing;
+                }
+                boolean dynamic = c instanceof MovingCollidable;
+                CollidableHandle handle = new CollidableHandle(c, this.nextOrder++, dynamic);
+                this.handles.put(c, handle);
+                List<CollidableHandle> set = dynamic ? this.dynamicHandles : this.staticHandles;
+                handle.setSlot(set.size());
+                set.add(handle);
+                if (!dynamic) {
+                        this.boundsTable.add(handle);
+                        if (this.grid != null) {
+                                this.grid.add(handle);
+                        }
+                        if (this.distanceField != null) {
+                                this.distanceField.add(handle, this.staticHandles);
+                        }
+                }
+                if (c instanceof CompoundCollidable) {
+                        this.compoundCollidables.add((CompoundCollidable) c);
+                }
+                for (int i = 0; i < this.listeners.size(); i++) {
+                        this.listeners.get(i).collidableAdded(c);
+                }
+                return handle;
         }
 
+        /**
+         * Removes the given collidable object from the environment.
+         *
+         * @param c the {@link Collidable} object to remove.
+         */
         public void removeCollidable(Collidable c) {
-                collidables.remove(c);
+                CollidableHandle handle = this.handles.get(c);
+                if (handle != null) {
+                        this.removeCollidable(handle);
+                }
+        }
+
+        /**
+         * Removes the collidable of the given handle from the environment, in constant time: the last
+         * collidable of its set takes its place.
+         *
+         * @param handle the {@link CollidableHandle} returned when the collidable was added.
+         */
+        public void removeCollidable(CollidableHandle handle) {
+                Collidable c = handle.collidable();
+                if (this.handles.get(c) != handle) {
+                        return;
+                }
+                this.handles.remove(c);
+                if (!handle.isDynamic()) {
+                        this.boundsTable.remove(handle.slot());
+                }
+                List<CollidableHandle> set = handle.isDynamic() ? this.dynamicHandles : this.staticHandles;
+                CollidableHandle last = set.remove(set.size() - 1);
+                if (last != handle) {
+                        set.set(handle.slot(), last);
+                        last.setSlot(handle.slot());
+                }
+                handle.setSlot(-1);
+                if (!handle.isDynamic()) {
+                        if (this.grid != null) {
+                                this.grid.remove(handle);
+                        }
+                        if (this.distanceField != null) {
+                                this.patchDistanceField(handle);
+                        }
+                }
+                if (c instanceof CompoundCollidable) {
+                        this.compoundCollidables.remove(c);
+                }
+                for (int i = 0; i < this.listeners.size(); i++) {
+                        this.listeners.get(i).collidableRemoved(c);
+                }
+        }
+
+        /**
+         * Tells the environment that the collision rectangle of the given collidable has moved.
+         * Static collidables that change their rectangle must call this so the indexes over the static set
+         * are updated; for dynamic collidables it only notifies the {@link EnvironmentListener}s.
+         *
+         * @param c the {@link Collidable} object that moved.
+         */
+        public void updateCollidable(Collidable c) {
+                CollidableHandle handle = this.handles.get(c);
+                if (handle != null && !handle.isDynamic()) {
+                        this.boundsTable.update(handle);
+                        if (this.distanceField != null) {
+                                this.patchDistanceField(handle);
+                        }
+                        if (this.grid != null) {
+                                this.grid.move(handle);
+                        } else {
+                                handle.updateBounds();
+                        }
+                        if (this.distanceField != null) {
+                                this.distanceField.add(handle, this.staticHandles);
+                        }
+                } else if (handle != null) {
+                        handle.updateBounds();
+                }
+                for (int i = 0; i < this.listeners.size(); i++) {
+                        this.listeners.get(i).collidableMoved(c);
+                }
+        }
+
+        /**
+         * Clears a static collidable, with the bounds of its handle, out of the distance field, and lowers
+         * the cleared area again from the static collidables near it.
+         *
+         * @param handle the {@link CollidableHandle} of the collidable.
+         */
+        private void patchDistanceField(CollidableHandle handle) {
+                if (this.grid == null) {
+                        this.distanceField.remove(handle, this.staticHandles);
+                        return;
+                }
+                double reach = DistanceField.MAX_DISTANCE * 2;
+                this.grid.collect(handle.minX() - reach, handle.minY() - reach,
+                        handle.maxX() + reach, handle.maxY() + reach, this.candidates);
+                this.distanceField.remove(handle, this.candidates);
+                this.candidates.clear();
         }
 
         /**
-         * Retrieves the list of collidable objects in the environment.
+         * Returns true if the given collidable is in the environment, either registered itself
+         * or as a live part of a registered {@link CompoundCollidable}.
+         *
+         * @param c the {@link Collidable} to look for.
+         * @return whether the collidable is in the environment.
+         */
+        public boolean contains(Collidable c) {
+                if (this.handles.containsKey(c)) {
+                        return true;
+                }
+                for (int i = 0; i < this.compoundCollidables.size(); i++) {
+                        if (this.compoundCollidables.get(i).containsPart(c)) {
+                                return true;
+                        }
+                }
+                return false;
+        }
+
+        /**
+         * Registers a listener that is told whenever a collidable is added, removed or moved.
+         *
+         * @param l the {@link EnvironmentListener} to register.
+         */
+        public void addEnvironmentListener(EnvironmentListener l) {
+                this.listeners.add(l);
+        }
+
+        /**
+         * Removes a listener registered with {@link #addEnvironmentListener}.
+         *
+         * @param l the {@link EnvironmentListener} to remove.
+         */
+        public void removeEnvironmentListener(EnvironmentListener l) {
+                this.listeners.remove(l);
+        }
+
+        /**
+         * Selects how collisions are looked up. Both modes return exactly the same collisions;
+         * {@link CollisionMode#GRID} only tests the collidables near the trajectory.
+         *
+         * @param collisionMode the {@link CollisionMode} to use.
+         */
+        public void setCollisionMode(CollisionMode collisionMode) {
+                if (collisionMode == this.mode) {
+                        return;
+                }
+                this.mode = collisionMode;
+                if (this.grid != null) {
+                        this.grid.clear();
+                        this.grid = null;
+                }
+                if (collisionMode == CollisionMode.GRID) {
+                        this.grid = new CollisionGrid(GRID_CELL_SIZE);
+                        for (int i = 0; i < this.staticHandles.size(); i++) {
+                                this.grid.add(this.staticHandles.get(i));
+                        }
+                }
+        }
+
+        /**
+         * Returns the way collisions are currently looked up.
+         *
+         * @return the current {@link CollisionMode}.
+         */
+        public CollisionMode getCollisionMode() {
+                return this.mode;
+        }
+
+        /**
+         * Gives this environment the collision settings of another one: the lookup mode, continuous
+         * collision, the distance field, fixed point and the time step. The collidables, the listeners and
+         * the {@link ShadowVerifier} are not copied, so a copy of a game can be played with the same code
+         * paths without touching the original.
+         *
+         * @param other the {@link GameEnvironment} to copy the settings of.
+         */
+        public void copySettingsFrom(GameEnvironment other) {
+                setFixedPoint(false);
+                setCollisionMode(other.mode);
+                setContinuousCollision(other.continuousCollision);
+                setDistanceField(other.distanceField != null);
+                setFixedPoint(other.fixedPoint);
+                setTimeStep(other.timeStep);
+        }
+
+        /**
+         * Selects whether balls use continuous collision detection: sweeping their whole radius against
+         * the collidables, and resolving several bounces within one frame, instead of treating the ball
+         * as a point moving along its trajectory.
+         *
+         * @param enabled true to use continuous collision detection.
+         * @throws IllegalStateException if it is enabled while the environment is in fixed point.
+         */
+        public void setContinuousCollision(boolean enabled) {
+                if (enabled && this.fixedPoint) {
+                        throw new IllegalStateException("continuous collision does not work in fixed point");
+                }
+                this.continuousCollision = enabled;
+        }
+
+        /**
+         * Returns true if balls use continuous collision detection.
+         *
+         * @return whether continuous collision detection is enabled.
+         */
+        public boolean isContinuousCollision() {
+                return this.continuousCollision;
+        }
+
+        /**
+         * Selects whether the environment keeps a distance field over its static collidables.
+         * With the field, balls that are far
+         * from all geometry skip the exact collision query (see {@link #isFarFromGeometry}).
+         *
+         * @param enabled true to keep a distance field.
+         * @throws IllegalStateException if it is enabled while the environment is in fixed point.
+         */
+        public void setDistanceField(boolean enabled) {
+                if (enabled && this.fixedPoint) {
+                        throw new IllegalStateException("the distance field does not work in fixed point");
+                }
+                if (!enabled) {
+                        this.distanceField = null;
+                        return;
+                }
+                if (this.distanceField != null) {
+                        return;
+                }
+                this.distanceField = new DistanceField(DISTANCE_CELL_SIZE);
+                for (int i = 0; i < this.staticHandles.size(); i++) {
+                        this.distanceField.add(this.staticHandles.get(i), this.staticHandles);
+                }
+        }
+
+        /**
+         * Returns true if the environment keeps a distance field.
+         *
+         * @return whether the distance field is enabled.
+         */
+        public boolean isDistanceFieldEnabled() {
+                return this.distanceField != null;
+        }
+
+        /**
+         * Returns true if every collidable is known to be further than the given distance from the given
+         * point, so nothing can be hit by an object that stays within that distance of it. The answer is
+         * conservative: {@code false} only means the exact query is needed. Without a distance field the
+         * answer is always {@code false}.
+         *
+         * @param x        the x value of the point.
+         * @param y        the y value of the point.
+         * @param distance the distance that has to be free of collidables.
+         * @return whether no collidable is within the distance of the point.
+         */
+        public boolean isFarFromGeometry(double x, double y, double distance) {
+                if (this.distanceField == null || this.distanceField.distanceAt(x, y) <= distance) {
+                        return false;
+                }
+                for (int i = 0; i < this.dynamicHandles.size(); i++) {
+                        Collidable c = this.dynamicHandles.get(i).collidable();
+                        MovingCollidable moving = (MovingCollidable) c;
+                        Rectangle rect = c.getCollisionRectangle();
+                        double minX = rect.getUpperLeft().getX();
+                        double minY = rect.getUpperLeft().getY();
+                        double gapX = Math.max(0, Math.max(minX - x, x - (minX + rect.getWidth())));
+                        double gapY = Math.max(0, Math.max(minY - y, y - (minY + rect.getHeight())));
+                        // the collidable may move towards the point during the step
+                        double reach = distance + Math.abs(moving.getDeltaX()) + Math.abs(moving.getDeltaY());
+                        if (gapX * gapX + gapY * gapY <= reach * reach) {
+                                return false;
+                        }
+                }
+                return true;
+        }
+
+        /**
+         * Selects whether balls move in fixed point: positions, velocities and the intersection math are
+         * kept in scaled {@code long} values (see {@link FixedPoint}), so a simulation gives bit-identical
+         * results on every run and thread. Points are moved in fixed point only: it cannot be combined with
+         * continuous collision, the distance field or an {@link ImpactScheduler}, which work in double.
+         *
+         * @param enabled true to use fixed-point physics.
+         * @throws IllegalStateException if it is enabled together with continuous collision, the distance
+         *                               field or an {@link ImpactScheduler} listening to the environment.
+         */
+        public void setFixedPoint(boolean enabled) {
+                if (enabled && (this.continuousCollision || this.distanceField != null)) {
+                        throw new IllegalStateException("fixed point does not work with continuous collision"
+                                + " or the distance field");
+                }
+                for (int i = 0; enabled && i < this.listeners.size(); i++) {
+                        if (this.listeners.get(i) instanceof ImpactScheduler) {
+                                throw new IllegalStateException(
+                                        "fixed point does not work with an impact scheduler");
+                        }
+                }
+                this.fixedPoint = enabled;
+        }
+
+        /**
+         * Returns true if balls move in fixed point.
+         *
+         * @return whether fixed-point physics is enabled.
+         */
+        public boolean isFixedPoint() {
+                return this.fixedPoint;
+        }
+
+        /**
+         * Sets how much time one physics tick covers, in frames of the original 60 Hz loop, which is the
+         * unit of all velocities. Everything that moves (balls, the paddle, a {@link BallSystem}, the
+         * entities of an {@link Ecs.World}) moves by its velocity times the time step every tick, so the
+         * game keeps its speed at any tick rate.
+         *
+         * @param step the time step, 1 at 60 ticks per second.
+         */
+        public void setTimeStep(double step) {
+                if (!(step > 0)) {
+                        throw new IllegalArgumentException("the time step must be positive");
+                }
+                this.timeStep = step;
+        }
+
+        /**
+         * Returns how much time one physics tick covers, in frames of the original 60 Hz loop.
+         *
+         * @return the time step.
+         */
+        public double getTimeStep() {
+                return this.timeStep;
+        }
+
+        /**
+         * Sets a {@link ShadowVerifier} that answers a sample of the point queries again with the original
+         * linear code and records every disagreement, or removes it.
+         *
+         * @param verifier the {@link ShadowVerifier}, or {@code null} to stop verifying.
+         */
+        public void setShadowVerifier(ShadowVerifier verifier) {
+                this.shadowVerifier = verifier;
+        }
+
+        /**
+         * Returns the {@link ShadowVerifier} of the environment.
+         *
+         * @return the {@link ShadowVerifier}, or {@code null} if queries are not verified.
+         */
+        public ShadowVerifier getShadowVerifier() {
+                return this.shadowVerifier;
+        }
+
+        /**
+         * Retrieves the collidable objects in the environment: the static ones, then the dynamic ones.
+         * The list is a read-only view that follows the environment; removing a collidable moves the last
+         * one of its set into its place.
          *
          * @return a {@link List} of {@link Collidable} objects.
          */
         public List<Collidable> getCollidables() {
-                return collidables;
+                return this.collidableView;
         }
 
         /**
@@ -149,20 +577,412 @@ public class GameEnvironment {
          * or {@code null} if no collision occurs.
          */
         public CollisionInfo getClosestCollision(Line trajectory) {
-        CollisionInfo collision = null;
-        double closest = Double.MAX_VALUE;
+        CollisionInfo collision = getClosestCollision(trajectory, 0);
+        if (this.shadowVerifier != null && this.shadowVerifier.sample()) {
+                this.shadowVerifier.verifyQuery(trajectory, collision == null ? null : collision.collisionObject(),
+                        collision == null ? null : collision.collisionPoint(), this.collidableView);
+        }
+        return collision;
+        }
+
+        /**
+         * Hands a bounce to the {@link ShadowVerifier}, if one is set, so the new velocity can be compared
+         * with the one the original code gives.
+         *
+         * @param collision the collision of a point query.
+         * @param before    the velocity before the bounce.
+         * @param after     the velocity after the bounce.
+         */
+        void checkBounce(CollisionInfo collision, Velocity before, Velocity after) {
+        if (this.shadowVerifier != null) {
+                this.shadowVerifier.verifyBounce(collision, before, after);
+        }
+        }
+
+        /**
+         * Determines the closest collision of a circle of the given radius whose center moves along
+         * the given trajectory. Moving collidables (see {@link MovingCollidable}) are swept in their own
+         * frame of reference, so their motion during the frame is taken into account.
+         *
+         * @param trajectory a {@link Line} representing the trajectory of the center of the circle.
+         * @param radius     the radius of the circle, 0 for a point.
+         * @return a {@link CollisionInfo} object whose collision point is the point of contact on the
+         * collidable, or {@code null} if no collision occurs.
+         */
+        public CollisionInfo getClosestCollision(Line trajectory, double radius) {
+        return closestCollision(trajectory, radius, true);
+        }
+
+        /**
+         * Determines the closest collision of a circle moving along the given trajectory, treating every
+         * collidable as standing still where it is now. This is used for predictions that span many
+         * frames, which are corrected through {@link EnvironmentListener#collidableMoved} instead.
+         *
+         * @param trajectory a {@link Line} representing the trajectory of the center of the circle.
+         * @param radius     the radius of the circle, 0 for a point.
+         * @return a {@link CollisionInfo} object, or {@code null} if no collision occurs.
+         */
+        CollisionInfo predictCollision(Line trajectory, double radius) {
+        return closestCollision(trajectory, radius, false);
+        }
+
+        /**
+         * Determines the closest collision of a circle moving along the given trajectory.
+         *
+         * @param trajectory a {@link Line} representing the trajectory of the center of the circle.
+         * @param radius     the radius of the circle, 0 for a point.
+         * @param relative   true to sweep moving collidables in their own frame of reference.
+         * @return a {@link CollisionInfo} object, or {@code null} if no collision occurs.
+         */
+        private CollisionInfo closestCollision(Line trajectory, double radius, boolean relative) {
+        double x = trajectory.start().getX();
+        double y = trajectory.start().getY();
+        double dx = trajectory.end().getX() - x;
+        double dy = trajectory.end().getY() - y;
+        Collidable collidable = this.mode == CollisionMode.GRID
+                ? closestInGrid(x, y, dx, dy, radius, relative, this.scratch)
+                : closestInList(x, y, dx, dy, radius, relative, this.scratch);
+        if (collidable == null) {
+                return null;
+        }
+        double t = this.closestHit.getT();
+        Point contact = new Point(x + t * dx - this.closestHit.getNormalX() * radius,
+                y + t * dy - this.closestHit.getNormalY() * radius);
+        return new CollisionInfo(contact, collidable, this.closestHit);
+        }
+
+        /**
+         * Determines the closest collision of a point moving from (x, y) to (x + dx, y + dy), like
+         * {@link #getClosestCollision(Line)} but without allocating: the time of impact and the hit sides
+         * are written to the given {@link RayHit}.
+         *
+         * @param x   the x value of the start of the trajectory.
+         * @param y   the y value of the start of the trajectory.
+         * @param dx  the change in x along the trajectory.
+         * @param dy  the change in y along the trajectory.
+         * @param out the {@link RayHit} the result is written to.
+         * @return the {@link Collidable} that is hit, or {@code null} if no collision occurs.
+         */
+        public Collidable getClosestCollision(double x, double y, double dx, double dy, RayHit out) {
+        Collidable collidable = getClosestCollision(x, y, dx, dy, 0, out);
+        if (this.shadowVerifier != null && this.shadowVerifier.sample()) {
+                double t = out.getT();
+                this.shadowVerifier.verifyQuery(new Line(x, y, x + dx, y + dy), collidable,
+                        collidable == null ? null : new Point(x + t * dx, y + t * dy), this.collidableView);
+        }
+        return collidable;
+        }
+
+        /**
+         * Determines the closest collision of a circle of the given radius whose center moves from (x, y)
+         * to (x + dx, y + dy), like {@link #getClosestCollision(Line, double)} but without allocating: the
+         * time of impact, the hit sides and the normal are written to the given {@link RayHit}.
+         *
+         * @param x      the x value of the start of the trajectory of the center.
+         * @param y      the y value of the start of the trajectory of the center.
+         * @param dx     the change in x along the trajectory.
+         * @param dy     the change in y along the trajectory.
+         * @param radius the radius of the circle, 0 for a point.
+         * @param out    the {@link RayHit} the result is written to.
+         * @return the {@link Collidable} that is hit, or {@code null} if no collision occurs.
+         */
+        public Collidable getClosestCollision(double x, double y, double dx, double dy, double radius,
+                                              RayHit out) {
+        return getClosestCollision(x, y, dx, dy, radius, out, this.scratch);
+        }
 
-        for (Collidable c : collidables) {
-        Point intersection = trajectory.closestIntersectionToStartOfLine(c.getCollisionRectangle());
-                if (intersection != null) {
-                      double distance = trajectory.start().distance(intersection);
-                      if (distance < closest) {
-                              closest = distance;
-                              collision = new CollisionInfo(intersection, c);
-                      }
+        /**
+         * Determines the closest collision of a circle like
+         * {@link #getClosestCollision(double, double, double, double, double, RayHit)}, with the working state
+         * of the query kept in the given scratch instead of the environment. As long as nothing changes the
+         * environment, any number of threads can query it this way at once, each with a scratch of its own.
+         *
+         * @param x       the x value of the start of the trajectory of the center.
+         * @param y       the y value of the start of the trajectory of the center.
+         * @param dx      the change in x along the trajectory.
+         * @param dy      the change in y along the trajectory.
+         * @param radius  the radius of the circle, 0 for a point.
+         * @param out     the {@link RayHit} the result is written to.
+         * @param scratch the {@link QueryScratch} of the query.
+         * @return the {@link Collidable} that is hit, or {@code null} if no collision occurs.
+         */
+        Collidable getClosestCollision(double x, double y, double dx, double dy, double radius, RayHit out,
+                                       QueryScratch scratch) {
+        Collidable collidable = this.mode == CollisionMode.GRID
+                ? closestInGrid(x, y, dx, dy, radius, true, scratch)
+                : closestInList(x, y, dx, dy, radius, true, scratch);
+        if (collidable != null) {
+                out.set(scratch.closestHit());
+        }
+        return collidable;
+        }
+
+        /**
+         * Returns true if a {@link CompoundCollidable} is registered. The parts of a compound can change
+         * without the environment being told, and its queries may use state of its own.
+         *
+         * @return whether the environment holds a compound collidable.
+         */
+        boolean hasCompoundCollidables() {
+                return !this.compoundCollidables.isEmpty();
+        }
+
+        /**
+         * Determines the closest collision of a point moving from (x, y) to (x + dx, y + dy), with all
+         * the values in fixed point (see {@link FixedPoint}). Collision rectangles are rounded to fixed point
+         * too, and collisions at the same distance are resolved in registration order, so the result only
+         * depends on the input values.
+         *
+         * @param x   the x value of the start of the trajectory.
+         * @param y   the y value of the start of the trajectory.
+         * @param dx  the change in x along the trajectory.
+         * @param dy  the change in y along the trajectory.
+         * @param out the {@link RayHit} the time of impact (a fixed-point value, converted exactly to double)
+         *            and the hit sides are written to.
+         * @return the {@link Collidable} that is hit, or {@code null} if no collision occurs.
+         */
+        public Collidable getClosestCollision(long x, long y, long dx, long dy, RayHit out) {
+        Collidable closest = null;
+        out.set(Double.MAX_VALUE, 0);
+        if (this.mode == CollisionMode.GRID) {
+                this.grid.collectAlong(FixedPoint.toDouble(x), FixedPoint.toDouble(y),
+                        FixedPoint.toDouble(x + dx), FixedPoint.toDouble(y + dy), this.candidates);
+        } else {
+                this.addCandidates(this.staticHandles);
+        }
+        this.addCandidates(this.dynamicHandles);
+        CollidableHandle closestHandle = null;
+        this.scratch.beginQuery(this.staticHandles.size());
+        for (int i = 0; i < this.candidates.size(); i++) {
+                CollidableHandle handle = this.candidates.get(i);
+                if (!this.scratch.markTested(handle)) {
+                        continue;
+                }
+                Collidable hit = intersectFixed(handle, x, y, dx, dy);
+                if (hit == null) {
+                        continue;
+                }
+                double t = this.hit.getT();
+                if (t < out.getT() || (t == out.getT() && handle.order() < closestHandle.order())) {
+                        out.set(this.hit);
+                        closest = hit;
+                        closestHandle = handle;
                 }
         }
-        return collision;
+        this.candidates.clear();
+        return closest;
         }
-}
 
+        /**
+         * Intersects a point moving from (x, y) to (x + dx, y + dy), in fixed point, with a single
+         * collidable, leaving the result in {@code hit}. A static collidable is tested against the bounds
+         * its handle keeps rounded to fixed point, a moving one against its rectangle as it is now.
+         *
+         * @param handle the {@link CollidableHandle} of the collidable to test.
+         * @param x      the x value of the start of the trajectory.
+         * @param y      the y value of the start of the trajectory.
+         * @param dx     the change in x along the trajectory.
+         * @param dy     the change in y along the trajectory.
+         * @return the collidable that is hit (a part of the collidable if it is a {@link CompoundCollidable}),
+         * or {@code null} if it is not hit.
+         */
+        private Collidable intersectFixed(CollidableHandle handle, long x, long y, long dx, long dy) {
+        Collidable c = handle.collidable();
+        if (!handle.isDynamic() && !(c instanceof CompoundCollidable)) {
+                return FixedPoint.intersect(x, y, dx, dy, handle.fixedMinX(), handle.fixedMinY(),
+                        handle.fixedMaxX(), handle.fixedMaxY(), this.hit) ? c : null;
+        }
+        if (c instanceof CompoundCollidable) {
+                // parts are found in double precision, the time of impact is rounded back to fixed point
+                Collidable part = ((CompoundCollidable) c).closestCollision(FixedPoint.toDouble(x),
+                        FixedPoint.toDouble(y), FixedPoint.toDouble(dx), FixedPoint.toDouble(dy), 0, this.hit);
+                if (part != null) {
+                        long t = FixedPoint.fromDouble(this.hit.getT());
+                        this.hit.set(FixedPoint.toDouble(t), this.hit.getSides());
+                }
+                return part;
+        }
+        Rectangle rect = c.getCollisionRectangle();
+        long minX = FixedPoint.fromDouble(rect.getUpperLeft().getX());
+        long minY = FixedPoint.fromDouble(rect.getUpperLeft().getY());
+        long maxX = FixedPoint.fromDouble(rect.getUpperLeft().getX() + rect.getWidth());
+        long maxY = FixedPoint.fromDouble(rect.getUpperLeft().getY() + rect.getHeight());
+        return FixedPoint.intersect(x, y, dx, dy, minX, minY, maxX, maxY, this.hit) ? c : null;
+        }
+
+        /**
+         * Determines the closest collision of every trajectory of the batch at once, treating each as a
+         * point moving along it. The results are exactly those of {@link #getClosestCollision(Line)}, but
+         * the collision rectangles are read from flat arrays that are kept up to date as collidables are
+         * added, removed and moved (see {@link BoundsTable}), instead of through every collidable for every
+         * query.
+         *
+         * @param batch the {@link CollisionBatch} holding the trajectories; the results are stored in it.
+         */
+        public void getClosestCollisions(CollisionBatch batch) {
+        this.boundsTable.query(batch, this.dynamicHandles);
+        }
+
+        /**
+         * Finds the closest collidable hit by a circle moving from (x, y) to (x + dx, y + dy),
+         * testing every collidable in the environment.
+         *
+         * @param x      the x value of the start of the trajectory.
+         * @param y      the y value of the start of the trajectory.
+         * @param dx     the change in x along the trajectory.
+         * @param dy     the change in y along the trajectory.
+         * @param radius the radius of the circle, 0 for a point.
+         * @param relative true to sweep moving collidables in their own frame of reference.
+         * @param scratch  the {@link QueryScratch} of the query.
+         * @return the closest {@link Collidable} hit (whose hit is left in the closest hit of the scratch),
+         * or {@code null} if no collision occurs.
+         */
+        private Collidable closestInList(double x, double y, double dx, double dy, double radius,
+                                         boolean relative, QueryScratch scratch) {
+        addCandidates(this.staticHandles, scratch.candidates());
+        addCandidates(this.dynamicHandles, scratch.candidates());
+        return closestCandidate(x, y, dx, dy, radius, relative, scratch);
+        }
+
+        /**
+         * Finds the closest collidable hit by a circle moving from (x, y) to (x + dx, y + dy), testing
+         * only the static collidables registered in the grid cells the trajectory passes through, and the
+         * dynamic collidables. Collisions at the same distance are resolved in
+         * registration order, so the result is the same as the linear scan's.
+         *
+         * @param x      the x value of the start of the trajectory.
+         * @param y      the y value of the start of the trajectory.
+         * @param dx     the change in x along the trajectory.
+         * @param dy     the change in y along the trajectory.
+         * @param radius the radius of the circle, 0 for a point.
+         * @param relative true to sweep moving collidables in their own frame of reference.
+         * @param scratch  the {@link QueryScratch} of the query.
+         * @return the closest {@link Collidable} hit (whose hit is left in the closest hit of the scratch),
+         * or {@code null} if no collision occurs.
+         */
+        private Collidable closestInGrid(double x, double y, double dx, double dy, double radius,
+                                         boolean relative, QueryScratch scratch) {
+        if (radius > 0) {
+                this.grid.collect(Math.min(x, x + dx) - radius, Math.min(y, y + dy) - radius,
+                        Math.max(x, x + dx) + radius, Math.max(y, y + dy) + radius, scratch.candidates());
+        } else {
+                this.grid.collectAlong(x, y, x + dx, y + dy, scratch.candidates());
+        }
+        addCandidates(this.dynamicHandles, scratch.candidates());
+        return closestCandidate(x, y, dx, dy, radius, relative, scratch);
+        }
+
+        /**
+         * Appends the given handles to {@code candidates}, without the copy {@link List#addAll} makes.
+         *
+         * @param set the handles to append.
+         */
+        private void addCandidates(List<CollidableHandle> set) {
+        addCandidates(set, this.candidates);
+        }
+
+        /**
+         * Appends the given handles to a candidate list, without the copy {@link List#addAll} makes.
+         *
+         * @param set the handles to append.
+         * @param out the candidate list.
+         */
+        private static void addCandidates(List<CollidableHandle> set, List<CollidableHandle> out) {
+        for (int i = 0; i < set.size(); i++) {
+                out.add(set.get(i));
+        }
+        }
+
+        /**
+         * Finds the closest of the collidables in {@code candidates} hit by a circle moving from (x, y) to
+         * (x + dx, y + dy), and empties the candidates. A candidate collected from several grid cells is
+         * tested once, and collisions at the same distance are resolved in registration order.
+         *
+         * @param x        the x value of the start of the trajectory.
+         * @param y        the y value of the start of the trajectory.
+         * @param dx       the change in x along the trajectory.
+         * @param dy       the change in y along the trajectory.
+         * @param radius   the radius of the circle, 0 for a point.
+         * @param relative true to sweep moving collidables in their own frame of reference.
+         * @param scratch  the {@link QueryScratch} of the query.
+         * @return the closest {@link Collidable} hit (whose hit is left in the closest hit of the scratch),
+         * or {@code null} if no collision occurs.
+         */
+        private Collidable closestCandidate(double x, double y, double dx, double dy, double radius,
+                                            boolean relative, QueryScratch scratch) {
+        Collidable closest = null;
+        CollidableHandle closestHandle = null;
+        scratch.closestHit().set(Double.MAX_VALUE, 0);
+        scratch.beginQuery(this.staticHandles.size());
+        for (int i = 0; i < scratch.candidates().size(); i++) {
+                CollidableHandle handle = scratch.candidates().get(i);
+                if (!scratch.markTested(handle)) {
+                        continue;
+                }
+                Collidable hit = intersect(handle.collidable(), x, y, dx, dy, radius, relative, scratch.hit());
+                if (hit == null) {
+                        continue;
+                }
+                double t = scratch.hit().getT();
+                if (t < scratch.closestHit().getT()
+                        || (t == scratch.closestHit().getT() && handle.order() < closestHandle.order())) {
+                        scratch.closestHit().set(scratch.hit());
+                        closest = hit;
+                        closestHandle = handle;
+                }
+        }
+        scratch.candidates().clear();
+        return closest;
+        }
+
+        /**
+         * Intersects a circle moving from (x, y) to (x + dx, y + dy) with a single collidable.
+         *
+         * @param c      the {@link Collidable} to test.
+         * @param x      the x value of the start of the trajectory.
+         * @param y      the y value of the start of the trajectory.
+         * @param dx     the change in x along the trajectory.
+         * @param dy     the change in y along the trajectory.
+         * @param radius the radius of the circle, 0 for a point.
+         * @param relative true to sweep a moving collidable in its own frame of reference.
+         * @param out    the {@link RayHit} the result is written to.
+         * @return the collidable that is hit (a part of {@code c} if it is a {@link CompoundCollidable}),
+         * or {@code null} if it is not hit.
+         */
+        private Collidable intersect(Collidable c, double x, double y, double dx, double dy, double radius,
+                                     boolean relative, RayHit out) {
+        if (c instanceof CompoundCollidable) {
+                return ((CompoundCollidable) c).closestCollision(x, y, dx, dy, radius, out);
+        }
+        if (relative && radius > 0 && c instanceof MovingCollidable) {
+                // sweep in the collidable's frame of reference
+                dx -= ((MovingCollidable) c).getDeltaX();
+                dy -= ((MovingCollidable) c).getDeltaY();
+        }
+        Rectangle rect = c.getCollisionRectangle();
+        double minX = rect.getUpperLeft().getX();
+        double minY = rect.getUpperLeft().getY();
+        if (SlabTest.sweepCircle(x, y, dx, dy, radius, minX, minY,
+                minX + rect.getWidth(), minY + rect.getHeight(), out)) {
+                return c;
+        }
+        return null;
+        }
+
+        /**
+         * A read-only view of the collidables of the environment: the static set followed by the dynamic set.
+         */
+        private class CollidableView extends AbstractList<Collidable> {
+                @Override
+                public Collidable get(int index) {
+                        int statics = staticHandles.size();
+                        return index < statics ? staticHandles.get(index).collidable()
+                                : dynamicHandles.get(index - statics).collidable();
+                }
+
+                @Override
+                public int size() {
+                        return staticHandles.size() + dynamicHandles.size();
+                }
+        }
+}
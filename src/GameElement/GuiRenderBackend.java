@@ -0,0 +1,36 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import biuoop.DrawSurface;
+import biuoop.GUI;
+
+/**
+ * The GuiRenderBackend class draws the frames of a game in a {@link GUI} window.
+ */
+public class GuiRenderBackend implements RenderBackend {
+    private final GUI gui;
+
+    /**
+     * Constructs a GuiRenderBackend that draws in the given window.
+     *
+     * @param gui the {@link GUI}.
+     */
+    public GuiRenderBackend(GUI gui) {
+        this.gui = gui;
+    }
+
+    @Override
+    public DrawSurface getDrawSurface() {
+        return this.gui.getDrawSurface();
+    }
+
+    @Override
+    public void show(DrawSurface d) {
+        this.gui.show(d);
+    }
+
+    @Override
+    public void close() {
+        this.gui.close();
+    }
+}
@@ -0,0 +1,164 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import GameObjects.CollisionInfo;
+
+/**
+ * The ImpactEvent class is an entry in the queue of an {@link ImpactScheduler}: the predicted time
+ * at which a ball hits a collidable, and the straight path the ball follows until then.
+ */
+class ImpactEvent implements Comparable<ImpactEvent> {
+    private final Ball ball;
+    private final double time;
+    private final long sequence;
+    private final double startTime;
+    private final double startX;
+    private final double startY;
+    private final double dx;
+    private final double dy;
+    private final CollisionInfo collision;
+    private boolean cancelled;
+    // the last query of the scheduler's index that looked at the event
+    private long query;
+
+    /**
+     * Constructs a new ImpactEvent.
+     *
+     * @param ball      the ball the event belongs to.
+     * @param time      the time of the impact, in frames.
+     * @param sequence  a number increasing with every event, used to order events at the same time.
+     * @param startTime the time the prediction was made at.
+     * @param startX    the x value of the center of the ball at {@code startTime}.
+     * @param startY    the y value of the center of the ball at {@code startTime}.
+     * @param dx        the change in x of the ball per frame.
+     * @param dy        the change in y of the ball per frame.
+     * @param collision the predicted collision, or {@code null} if nothing is hit before {@code time}.
+     */
+    ImpactEvent(Ball ball, double time, long sequence, double startTime, double startX, double startY,
+                double dx, double dy, CollisionInfo collision) {
+        this.ball = ball;
+        this.time = time;
+        this.sequence = sequence;
+        this.startTime = startTime;
+        this.startX = startX;
+        this.startY = startY;
+        this.dx = dx;
+        this.dy = dy;
+        this.collision = collision;
+    }
+
+    /**
+     * Orders events by time, and events at the same time by the order they were created in.
+     *
+     * @param other the event to compare to.
+     * @return a negative number, zero or a positive number as this event comes before, with or after other.
+     */
+    @Override
+    public int compareTo(ImpactEvent other) {
+        int byTime = Double.compare(this.time, other.time);
+        return byTime != 0 ? byTime : Long.compare(this.sequence, other.sequence);
+    }
+
+    /**
+     * Returns the ball the event belongs to.
+     *
+     * @return the {@link Ball}.
+     */
+    Ball ball() {
+        return this.ball;
+    }
+
+    /**
+     * Returns the time of the impact.
+     *
+     * @return the time of the impact, in frames.
+     */
+    double time() {
+        return this.time;
+    }
+
+    /**
+     * Returns the time the prediction was made at.
+     *
+     * @return the start time of the path, in frames.
+     */
+    double startTime() {
+        return this.startTime;
+    }
+
+    /**
+     * Returns the x value of the center of the ball when the prediction was made.
+     *
+     * @return the x value of the start of the path.
+     */
+    double startX() {
+        return this.startX;
+    }
+
+    /**
+     * Returns the y value of the center of the ball when the prediction was made.
+     *
+     * @return the y value of the start of the path.
+     */
+    double startY() {
+        return this.startY;
+    }
+
+    /**
+     * Returns the change in x of the ball per frame along the path.
+     *
+     * @return the x component of the velocity.
+     */
+    double dx() {
+        return this.dx;
+    }
+
+    /**
+     * Returns the change in y of the ball per frame along the path.
+     *
+     * @return the y component of the velocity.
+     */
+    double dy() {
+        return this.dy;
+    }
+
+    /**
+     * Returns the predicted collision.
+     *
+     * @return the {@link CollisionInfo}, or {@code null} if the event only marks the end of the prediction.
+     */
+    CollisionInfo collision() {
+        return this.collision;
+    }
+
+    /**
+     * Marks the event as no longer valid. Cancelled events are skipped when they reach the head of the queue.
+     */
+    void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Marks the event as seen by a query of the scheduler's index, which finds an event once in every
+     * cell it is registered in.
+     *
+     * @param id the number of the query.
+     * @return true if the query had not seen the event yet.
+     */
+    boolean visit(long id) {
+        if (this.query == id) {
+            return false;
+        }
+        this.query = id;
+        return true;
+    }
+
+    /**
+     * Returns true if the event was cancelled.
+     *
+     * @return whether the event was cancelled.
+     */
+    boolean isCancelled() {
+        return this.cancelled;
+    }
+}
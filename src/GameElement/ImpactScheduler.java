@@ -0,0 +1,439 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import GameObjects.Collidable;
+import GameObjects.CollisionInfo;
+import GameObjects.Sprite;
+import Geometry.Line;
+import Geometry.Rectangle;
+import Geometry.RayHit;
+import Geometry.SlabTest;
+import Listeners.EnvironmentListener;
+import biuoop.DrawSurface;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The ImpactScheduler class moves balls with event-driven physics instead of stepping each of them
+ * every frame.
+ * <p>
+ * For every ball it predicts, once, the time of its next impact, and keeps these predictions in a
+ * priority queue. Between impacts a ball moves analytically: its position is extrapolated from the
+ * point and time of its last change. A prediction is only made again when the ball hits something,
+ * when its velocity or position is set from outside, or when a collidable along its predicted path is
+ * added, removed or moved in the {@link GameEnvironment}. The cost of a frame therefore depends on the
+ * number of impacts in it, not on the number of balls.
+ * </p>
+ * <p>
+ * To find the predictions a change touches without looking at every ball, each prediction is indexed
+ * twice: under the collidable it ends on, and in the cells of a uniform grid that its path crosses. A
+ * collidable that is added or moved only tests the predictions in the cells under its rectangle, so a
+ * paddle moving every tick costs as much as the balls near it. Entries of events that were cancelled or
+ * fired are dropped lazily, when a list they are in grows.
+ * </p>
+ * <p>
+ * Time is measured in frames: every call to {@link #timePassed()} advances the clock by one frame.
+ * Collidables are treated as standing still between the notifications of the environment, so a
+ * collidable that changes its rectangle in place must report it through
+ * {@link GameEnvironment#updateCollidable(Collidable)}.
+ * </p>
+ */
+public class ImpactScheduler implements Sprite, EnvironmentListener {
+    // how many frames ahead a single prediction looks
+    private static final double HORIZON = 120;
+    // how far a ball is pushed off a surface it bounced off
+    private static final double SKIN = 0.01;
+    // the most impacts resolved per ball within one frame, so a wedged ball cannot stall the game
+    private static final int MAX_EVENTS_PER_BALL = 8;
+    // the width and height of a cell of the index of the predicted paths
+    private static final double CELL_SIZE = 40;
+    // an index list is first cleaned of dead events when it reaches this size
+    private static final int PURGE_SIZE = 8;
+
+    private final GameEnvironment environment;
+    private final PriorityQueue<ImpactEvent> queue;
+    private final Map<Ball, ImpactEvent> pending;
+    private final List<ImpactEvent> affected;
+    private final RayHit hit;
+    private final Map<Collidable, List<ImpactEvent>> targets;
+    private final List<List<ImpactEvent>> cells;
+    private final int cols;
+    private final int rows;
+    private double now;
+    private long nextSequence;
+    private long queries;
+
+    /**
+     * Constructs an ImpactScheduler with no balls, for the given environment.
+     * It still has to be registered as a listener of the environment and as a sprite of the game.
+     *
+     * @param environment the {@link GameEnvironment} the balls move in.
+     * @throws IllegalStateException if the environment is in fixed point, which impacts are not
+     *                               predicted in.
+     */
+    public ImpactScheduler(GameEnvironment environment) {
+        if (environment.isFixedPoint()) {
+            throw new IllegalStateException("impacts are not predicted in fixed point");
+        }
+        this.environment = environment;
+        this.queue = new PriorityQueue<>();
+        this.pending = new IdentityHashMap<>();
+        this.affected = new ArrayList<>();
+        this.hit = new RayHit();
+        this.targets = new IdentityHashMap<>();
+        this.cols = (int) Math.ceil(environment.getGuiWidth() / CELL_SIZE);
+        this.rows = (int) Math.ceil(environment.getGuiHeight() / CELL_SIZE);
+        this.cells = new ArrayList<>(this.cols * this.rows);
+        for (int i = 0; i < this.cols * this.rows; i++) {
+            this.cells.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Returns the current time of the scheduler.
+     *
+     * @return the time, in frames.
+     */
+    public double now() {
+        return this.now;
+    }
+
+    /**
+     * Starts moving the given ball with event-driven physics.
+     *
+     * @param ball the {@link Ball} to add.
+     */
+    public void add(Ball ball) {
+        if (this.pending.containsKey(ball)) {
+            return;
+        }
+        ball.attach(this);
+        this.pending.put(ball, null);
+        reschedule(ball);
+    }
+
+    /**
+     * Stops moving the given ball. The ball keeps the position it has now.
+     *
+     * @param ball the {@link Ball} to remove.
+     */
+    public void remove(Ball ball) {
+        if (!this.pending.containsKey(ball)) {
+            return;
+        }
+        ImpactEvent event = this.pending.remove(ball);
+        if (event != null) {
+            event.cancel();
+        }
+        ball.detach();
+    }
+
+    /**
+     * Returns the number of balls moved by the scheduler.
+     *
+     * @return the number of balls.
+     */
+    public int size() {
+        return this.pending.size();
+    }
+
+    /**
+     * Predicts the next impact of the given ball again, from its position now.
+     * Does nothing if the ball is not moved by this scheduler.
+     *
+     * @param ball the {@link Ball} whose path changed.
+     */
+    void reschedule(Ball ball) {
+        if (!this.pending.containsKey(ball)) {
+            return;
+        }
+        ImpactEvent old = this.pending.get(ball);
+        if (old != null) {
+            old.cancel();
+        }
+        ImpactEvent event = predict(ball);
+        this.pending.put(ball, event);
+        this.queue.add(event);
+        index(event);
+    }
+
+    /**
+     * Advances the clock by one frame, resolving every impact that happens within it in time order.
+     * When there are too many impacts to resolve in one frame, the clock stops at the first impact left
+     * over instead, so no ball is moved past a collidable it did not bounce off yet.
+     */
+    @Override
+    public void timePassed() {
+        double end = this.now + this.environment.getTimeStep();
+        int budget = MAX_EVENTS_PER_BALL * this.pending.size();
+        while (!this.queue.isEmpty() && this.queue.peek().time() <= end) {
+            ImpactEvent event = this.queue.poll();
+            if (event.isCancelled()) {
+                continue;
+            }
+            if (budget-- <= 0) {
+                // too many impacts in one frame, the clock waits at this one until the next frame
+                this.queue.add(event);
+                this.now = Math.max(this.now, event.time());
+                return;
+            }
+            this.now = Math.max(this.now, event.time());
+            fire(event);
+        }
+        this.now = end;
+    }
+
+    /**
+     * The scheduler has nothing to draw, the balls draw themselves at their extrapolated positions.
+     *
+     * @param d the {@link DrawSurface}.
+     */
+    @Override
+    public void drawOn(DrawSurface d) {
+    }
+
+    /**
+     * Predictions through the new collidable's rectangle are made again.
+     *
+     * @param c the collidable that was added.
+     */
+    @Override
+    public void collidableAdded(Collidable c) {
+        collectCrossing(c);
+        rescheduleAffected();
+    }
+
+    /**
+     * Predictions that end on the removed collidable are made again.
+     *
+     * @param c the collidable that was removed.
+     */
+    @Override
+    public void collidableRemoved(Collidable c) {
+        collectTargeting(c);
+        this.targets.remove(c);
+        rescheduleAffected();
+    }
+
+    /**
+     * Predictions that end on the moved collidable, or pass through its new rectangle, are made again.
+     *
+     * @param c the collidable that moved.
+     */
+    @Override
+    public void collidableMoved(Collidable c) {
+        collectTargeting(c);
+        collectCrossing(c);
+        rescheduleAffected();
+    }
+
+    /**
+     * Resolves a single event: moves the ball to the point of impact, lets the collidable it hit change
+     * its velocity, and predicts its next impact.
+     *
+     * @param event the {@link ImpactEvent} at the head of the queue.
+     */
+    private void fire(ImpactEvent event) {
+        Ball ball = event.ball();
+        // the event is used up, its entries in the index are dead now
+        event.cancel();
+        this.pending.put(ball, null);
+        CollisionInfo collision = event.collision();
+        if (collision == null || !this.environment.contains(collision.collisionObject())) {
+            // the end of the prediction, or the target is already gone
+            reschedule(ball);
+            return;
+        }
+        ball.rebase(this.now);
+        ball.nudge(collision.normalX() * SKIN, collision.normalY() * SKIN);
+        // setting the velocity predicts the next impact, unless the hit removed the ball
+        ball.setVelocity(collision.collisionObject().hit(ball, collision, ball.getVelocity()));
+        if (this.pending.containsKey(ball) && this.pending.get(ball) == null) {
+            reschedule(ball);
+        }
+    }
+
+    /**
+     * Predicts the next impact of a ball from its position now, up to {@value #HORIZON} frames ahead.
+     *
+     * @param ball the {@link Ball}.
+     * @return the predicted {@link ImpactEvent}.
+     */
+    private ImpactEvent predict(Ball ball) {
+        double x = ball.exactX();
+        double y = ball.exactY();
+        // a ball whose velocity was never set stands still
+        double dx = ball.getVelocity() == null ? 0 : ball.getVelocity().getDx();
+        double dy = ball.getVelocity() == null ? 0 : ball.getVelocity().getDy();
+        Line path = new Line(x, y, x + dx * HORIZON, y + dy * HORIZON);
+        CollisionInfo collision = this.environment.predictCollision(path, radiusOf(ball));
+        double time = this.now + (collision == null ? HORIZON : collision.timeOfImpact() * HORIZON);
+        return new ImpactEvent(ball, time, this.nextSequence++, this.now, x, y, dx, dy, collision);
+    }
+
+    /**
+     * Indexes a new prediction under the collidable it ends on, and in every cell of the grid its path
+     * passes within the ball's radius of. The path is cut into pieces no longer than a cell, and the cells
+     * under the box of each piece are taken.
+     *
+     * @param event the new {@link ImpactEvent}.
+     */
+    private void index(ImpactEvent event) {
+        if (event.collision() != null) {
+            List<ImpactEvent> list = this.targets.get(event.collision().collisionObject());
+            if (list == null) {
+                list = new ArrayList<>();
+                this.targets.put(event.collision().collisionObject(), list);
+            }
+            addLive(list, event);
+        }
+        double length = event.time() - event.startTime();
+        double moveX = event.dx() * length;
+        double moveY = event.dy() * length;
+        double radius = radiusOf(event.ball());
+        int pieces = Math.max(1, (int) Math.ceil(Math.max(Math.abs(moveX), Math.abs(moveY)) / CELL_SIZE));
+        for (int p = 0; p < pieces; p++) {
+            double x0 = event.startX() + moveX * p / pieces;
+            double y0 = event.startY() + moveY * p / pieces;
+            double x1 = event.startX() + moveX * (p + 1) / pieces;
+            double y1 = event.startY() + moveY * (p + 1) / pieces;
+            int minCol = col(Math.min(x0, x1) - radius);
+            int maxCol = col(Math.max(x0, x1) + radius);
+            int minRow = row(Math.min(y0, y1) - radius);
+            int maxRow = row(Math.max(y0, y1) + radius);
+            for (int r = minRow; r <= maxRow; r++) {
+                for (int c = minCol; c <= maxCol; c++) {
+                    List<ImpactEvent> cell = this.cells.get(r * this.cols + c);
+                    // consecutive pieces share cells, the event is only added to a cell once
+                    if (cell.isEmpty() || cell.get(cell.size() - 1) != event) {
+                        addLive(cell, event);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds an event to a list of the index. When the list reaches a power of two, from
+     * {@value #PURGE_SIZE} on, the dead events are dropped from it first, so lists that keep growing
+     * are cleaned at an amortized constant cost per event.
+     *
+     * @param list  the list.
+     * @param event the {@link ImpactEvent} to add.
+     */
+    private static void addLive(List<ImpactEvent> list, ImpactEvent event) {
+        int size = list.size();
+        if (size >= PURGE_SIZE && (size & (size - 1)) == 0) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                ImpactEvent e = list.get(i);
+                if (!e.isCancelled()) {
+                    list.set(kept++, e);
+                }
+            }
+            list.subList(kept, size).clear();
+        }
+        list.add(event);
+    }
+
+    /**
+     * Returns the column of the index grid of an x value, clamped into the grid.
+     *
+     * @param x the x value.
+     * @return the column.
+     */
+    private int col(double x) {
+        return Math.max(0, Math.min(this.cols - 1, (int) Math.floor(x / CELL_SIZE)));
+    }
+
+    /**
+     * Returns the row of the index grid of a y value, clamped into the grid.
+     *
+     * @param y the y value.
+     * @return the row.
+     */
+    private int row(double y) {
+        return Math.max(0, Math.min(this.rows - 1, (int) Math.floor(y / CELL_SIZE)));
+    }
+
+    /**
+     * Collects the live predictions whose impact is with the given collidable.
+     *
+     * @param c the collidable.
+     */
+    private void collectTargeting(Collidable c) {
+        List<ImpactEvent> list = this.targets.get(c);
+        if (list == null) {
+            return;
+        }
+        for (int i = 0; i < list.size(); i++) {
+            if (!list.get(i).isCancelled()) {
+                this.affected.add(list.get(i));
+            }
+        }
+        // every live one is predicted again, and indexed again if it still ends on c
+        list.clear();
+    }
+
+    /**
+     * Collects the live predictions whose remaining path touches the rectangle of the given collidable,
+     * looking only at the cells of the index under the rectangle.
+     *
+     * @param c the collidable.
+     */
+    private void collectCrossing(Collidable c) {
+        Rectangle rect = c.getCollisionRectangle();
+        double minX = rect.getUpperLeft().getX();
+        double minY = rect.getUpperLeft().getY();
+        double maxX = minX + rect.getWidth();
+        double maxY = minY + rect.getHeight();
+        long query = ++this.queries;
+        for (int r = row(minY); r <= row(maxY); r++) {
+            for (int col = col(minX); col <= col(maxX); col++) {
+                List<ImpactEvent> cell = this.cells.get(r * this.cols + col);
+                for (int i = 0; i < cell.size(); i++) {
+                    ImpactEvent event = cell.get(i);
+                    if (event.isCancelled() || !event.visit(query)) {
+                        continue;
+                    }
+                    double elapsed = this.now - event.startTime();
+                    double left = event.time() - this.now;
+                    double x = event.startX() + event.dx() * elapsed;
+                    double y = event.startY() + event.dy() * elapsed;
+                    if (SlabTest.sweepCircle(x, y, event.dx() * left, event.dy() * left, radiusOf(event.ball()),
+                            minX, minY, maxX, maxY, this.hit)) {
+                        this.affected.add(event);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Predicts the next impact of the ball of every collected prediction again. A prediction collected
+     * twice is only redone once, since redoing it cancels it.
+     */
+    private void rescheduleAffected() {
+        for (int i = 0; i < this.affected.size(); i++) {
+            ImpactEvent event = this.affected.get(i);
+            if (!event.isCancelled()) {
+                reschedule(event.ball());
+            }
+        }
+        this.affected.clear();
+    }
+
+    /**
+     * Returns the radius a ball is swept with: its size with continuous collision detection,
+     * and 0 (a point) otherwise.
+     *
+     * @param ball the {@link Ball}.
+     * @return the radius used for its predictions.
+     */
+    private double radiusOf(Ball ball) {
+        return this.environment.isContinuousCollision() ? ball.getSize() : 0;
+    }
+}
@@ -0,0 +1,167 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import biuoop.KeyboardSensor;
+
+/**
+ * The InputSampler class reads the keys of an {@link InputSource} once per physics tick into an
+ * immutable {@link InputSnapshot}, and measures how long a key change takes to reach the screen.
+ * <p>
+ * {@link #sample()} reads every key it tracks once, so a tick sees one consistent state of the keyboard
+ * however many times it asks. When a key was pressed or released since the last sample, the change is
+ * timestamped and a new snapshot is published through a volatile field; otherwise the last snapshot is
+ * kept, so sampling does not allocate. {@link #presented(long)} is called when a frame is shown, on
+ * whichever thread shows it, and the first frame drawn after the tick of a change records the time from
+ * the sample to the screen. That is the lag the game adds: the time the key was held before the sample
+ * can't be seen through a polled keyboard.
+ * </p>
+ */
+public class InputSampler implements InputSource {
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final InputSource source;
+    private final String[] keys;
+    private volatile InputSnapshot snapshot;
+    private long tick;
+    // the latency statistics are only touched by the thread that shows the frames
+    private InputSnapshot lastPresented;
+    private long latencySamples;
+    private double meanLatency;
+    private long worstLatency;
+
+    /**
+     * Constructs an InputSampler of the keys the {@link Paddle} uses.
+     *
+     * @param source the {@link InputSource} to sample.
+     */
+    public InputSampler(InputSource source) {
+        this(source, KeyboardSensor.LEFT_KEY, KeyboardSensor.RIGHT_KEY, KeyboardSensor.ENTER_KEY);
+    }
+
+    /**
+     * Constructs an InputSampler of the given keys.
+     *
+     * @param source the {@link InputSource} to sample.
+     * @param keys   the names of the keys to sample.
+     */
+    public InputSampler(InputSource source, String... keys) {
+        if (source == null || keys.length == 0) {
+            throw new IllegalArgumentException("an input sampler needs a source and at least one key");
+        }
+        this.source = source;
+        this.keys = keys.clone();
+        this.snapshot = new InputSnapshot(this.keys, new boolean[this.keys.length], 0, System.nanoTime());
+        this.lastPresented = this.snapshot;
+    }
+
+    /**
+     * Reads the keys of the source once, and publishes a new snapshot if one of them changed.
+     *
+     * @return the {@link InputSnapshot} of this tick.
+     */
+    public InputSnapshot sample() {
+        InputSnapshot current = this.snapshot;
+        boolean[] pressed = null;
+        for (int i = 0; i < this.keys.length; i++) {
+            boolean down = this.source.isPressed(this.keys[i]);
+            if (pressed == null && down != current.isPressed(i)) {
+                // only a change copies the keys read so far into a new snapshot
+                pressed = new boolean[this.keys.length];
+                for (int j = 0; j < i; j++) {
+                    pressed[j] = current.isPressed(j);
+                }
+            }
+            if (pressed != null) {
+                pressed[i] = down;
+            }
+        }
+        if (pressed != null) {
+            this.snapshot = new InputSnapshot(this.keys, pressed, this.tick, System.nanoTime());
+        }
+        return this.snapshot;
+    }
+
+    /**
+     * Returns the last sampled snapshot. It may be called on any thread.
+     *
+     * @return the {@link InputSnapshot}.
+     */
+    public InputSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * Records that a frame was shown. If it is the first frame that shows the last key change, the time
+     * from sampling the change until now is recorded as a latency.
+     *
+     * @param frameTick the number of ticks that were run before the frame was drawn.
+     */
+    public void presented(long frameTick) {
+        InputSnapshot current = this.snapshot;
+        if (current == this.lastPresented || current.getTick() >= frameTick) {
+            return;
+        }
+        this.lastPresented = current;
+        long latency = System.nanoTime() - current.getChangedAt();
+        this.latencySamples++;
+        this.meanLatency += (latency - this.meanLatency) / this.latencySamples;
+        this.worstLatency = Math.max(this.worstLatency, latency);
+    }
+
+    /**
+     * Returns the number of key changes whose latency was measured.
+     *
+     * @return the number of measured changes.
+     */
+    public long getLatencySamples() {
+        return this.latencySamples;
+    }
+
+    /**
+     * Returns the mean time from sampling a key change until the first frame showing it.
+     *
+     * @return the mean latency, in nanoseconds.
+     */
+    public double getMeanLatencyNanos() {
+        return this.meanLatency;
+    }
+
+    /**
+     * Returns the longest time from sampling a key change until the first frame showing it.
+     *
+     * @return the worst latency, in nanoseconds.
+     */
+    public long getWorstLatencyNanos() {
+        return this.worstLatency;
+    }
+
+    /**
+     * Returns a one-line summary of the measured input latency.
+     *
+     * @return the summary.
+     */
+    public String latencyReport() {
+        return String.format("%d key changes, input to present mean %.3f ms, worst %.3f ms", this.latencySamples,
+                this.meanLatency / NANOS_PER_MILLI, this.worstLatency / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Returns whether the given key was pressed in the last sample.
+     *
+     * @param key the name of the key.
+     * @return whether the key is pressed.
+     */
+    @Override
+    public boolean isPressed(String key) {
+        return this.snapshot.isPressed(key);
+    }
+
+    /**
+     * Moves the sampler, and its source, to the next tick.
+     */
+    @Override
+    public void advance() {
+        this.source.advance();
+        this.tick++;
+    }
+}
@@ -0,0 +1,73 @@
+// Ori Kenigsbuch
+package GameElement;
+
+/**
+ * The InputSnapshot class is the state of the keys at one physics tick, sampled by an
+ * {@link InputSampler}. It is immutable, so it can be read on any thread, and a new one is only made
+ * when a key is pressed or released.
+ */
+public final class InputSnapshot {
+    private final String[] keys;
+    private final boolean[] pressed;
+    private final long tick;
+    private final long changedAt;
+
+    /**
+     * Constructs an InputSnapshot. The arrays are owned by the snapshot and must not be changed later.
+     *
+     * @param keys      the names of the keys, shared by all the snapshots of a sampler.
+     * @param pressed   which of the keys are pressed.
+     * @param tick      the tick the keys were sampled in.
+     * @param changedAt when the change this snapshot was made for was sampled, from {@link System#nanoTime()}.
+     */
+    InputSnapshot(String[] keys, boolean[] pressed, long tick, long changedAt) {
+        this.keys = keys;
+        this.pressed = pressed;
+        this.tick = tick;
+        this.changedAt = changedAt;
+    }
+
+    /**
+     * Returns true if the given key was pressed when the snapshot was sampled.
+     *
+     * @param key the name of the key, like {@link biuoop.KeyboardSensor#LEFT_KEY}.
+     * @return whether the key is pressed.
+     * @throws IllegalArgumentException if the key is not sampled.
+     */
+    public boolean isPressed(String key) {
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i].equals(key)) {
+                return this.pressed[i];
+            }
+        }
+        throw new IllegalArgumentException("the key " + key + " is not sampled");
+    }
+
+    /**
+     * Returns true if the key at the given index of the sampler's keys was pressed.
+     *
+     * @param index the index of the key.
+     * @return whether the key is pressed.
+     */
+    boolean isPressed(int index) {
+        return this.pressed[index];
+    }
+
+    /**
+     * Returns the tick the snapshot was sampled in, the tick a key was last pressed or released in.
+     *
+     * @return the tick.
+     */
+    public long getTick() {
+        return this.tick;
+    }
+
+    /**
+     * Returns when the key change the snapshot was made for was sampled.
+     *
+     * @return the time, from {@link System#nanoTime()}.
+     */
+    public long getChangedAt() {
+        return this.changedAt;
+    }
+}
@@ -0,0 +1,22 @@
+// Ori Kenigsbuch
+package GameElement;
+
+/**
+ * The InputSource interface is where the {@link Paddle} reads the keys from: the keyboard of a window
+ * ({@link KeyboardInput}), or a script ({@link ScriptedInput}) when the game is simulated headless. Keys
+ * are named like the constants of {@link biuoop.KeyboardSensor}.
+ */
+public interface InputSource {
+    /**
+     * Returns true if the given key is pressed.
+     *
+     * @param key the name of the key.
+     * @return whether the key is pressed.
+     */
+    boolean isPressed(String key);
+
+    /**
+     * Moves the input to the next physics tick. The game calls it at the end of every tick.
+     */
+    void advance();
+}
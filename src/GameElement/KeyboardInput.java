@@ -0,0 +1,30 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import biuoop.KeyboardSensor;
+
+/**
+ * The KeyboardInput class reads the keys pressed on the keyboard of a window.
+ */
+public class KeyboardInput implements InputSource {
+    private final KeyboardSensor keyboard;
+
+    /**
+     * Constructs a KeyboardInput that reads the given sensor.
+     *
+     * @param keyboard the {@link KeyboardSensor}.
+     */
+    public KeyboardInput(KeyboardSensor keyboard) {
+        this.keyboard = keyboard;
+    }
+
+    @Override
+    public boolean isPressed(String key) {
+        return this.keyboard.isPressed(key);
+    }
+
+    @Override
+    public void advance() {
+        // the keyboard is read live
+    }
+}
@@ -0,0 +1,36 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import biuoop.DrawSurface;
+
+/**
+ * The NullRenderBackend class draws nothing, for headless games: since it has no surface, the game does
+ * not call {@link GameObjects.Sprite#drawOn} at all.
+ */
+public class NullRenderBackend implements RenderBackend {
+    private boolean closed;
+
+    @Override
+    public DrawSurface getDrawSurface() {
+        return null;
+    }
+
+    @Override
+    public void show(DrawSurface d) {
+        // nothing is shown
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+    }
+
+    /**
+     * Returns true once the backend was closed.
+     *
+     * @return whether the backend is closed.
+     */
+    public boolean isClosed() {
+        return this.closed;
+    }
+}
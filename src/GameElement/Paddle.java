@@ -2,9 +2,11 @@
 package GameElement;
 
 import GameObjects.Collidable;
+import GameObjects.CollisionInfo;
+import GameObjects.Hitter;
+import GameObjects.MovingCollidable;
 import GameObjects.Sprite;
-import Geometry.Line;
-import Geometry.Point;
+import Geometry.RayHit;
 import Geometry.Rectangle;
 
 import biuoop.DrawSurface;
@@ -19,12 +21,20 @@ import biuoop.KeyboardSensor;
  * The paddle is represented as a {@link Block} object, and its behavior is defined by the
  * movement, drawing, and collision methods.
  */
-public class Paddle implements Sprite, Collidable {
-    private KeyboardSensor keyboard;
+public class Paddle implements Sprite, MovingCollidable {
+    // how far the paddle moves in one frame of the original 60 Hz loop
+    private static final double SPEED = 5;
+
+    private InputSampler input;
     private Block b;
     private final Rectangle shape;
-    private GUI gui;
+    private RenderBackend renderBackend;
     private GameEnvironment environment;
+    // the game the paddle is drawn in, null until it is added to one
+    private Game game;
+    private double deltaX;
+    // the x value before the last tick, drawn frames are interpolated from it
+    private double previousX;
 
     /**
      * Constructs a new {@code GameElement.Paddle} object with the specified block, GUI, and game environment.
@@ -34,63 +44,104 @@ public class Paddle implements Sprite, Collidable {
      * @param environment the {@link GameEnvironment} containing the game world
      */
     public Paddle(Block b, GUI gui, GameEnvironment environment) {
+        this(b, new KeyboardInput(gui.getKeyboardSensor()), new GuiRenderBackend(gui), environment);
+    }
+
+    /**
+     * Constructs a new {@code GameElement.Paddle} object that reads its keys from the given input, for
+     * games that are not played in a window.
+     *
+     * @param b             the {@link Block} representing the paddle's shape
+     * @param input         the {@link InputSource} the keys are read from, sampled once per tick through an
+     *                      {@link InputSampler}
+     * @param renderBackend the {@link RenderBackend} closed when the player quits
+     * @param environment   the {@link GameEnvironment} containing the game world
+     */
+    public Paddle(Block b, InputSource input, RenderBackend renderBackend, GameEnvironment environment) {
         this.b = b;
         this.shape = b.getCollisionRectangle();
-        this.gui = gui;
-        this.keyboard = gui.getKeyboardSensor();
+        this.input = input instanceof InputSampler ? (InputSampler) input : new InputSampler(input);
+        this.renderBackend = renderBackend;
         this.environment = environment;
     }
 
     /**
-     * Moves the paddle to the left by 5 units, ensuring it does not move out of bounds.
+     * Moves the paddle to the left by 5 units per frame, ensuring it does not move out of bounds.
      */
     public void moveLeft() {
-        Point topLeft;
-        double guiW = this.gui.getDrawSurface().getWidth();
+        double x = this.shape.getUpperLeft().getX();
+        double y = this.shape.getUpperLeft().getY();
 
-        if (getCollisionRectangle().getUpperLeft().getX() > 0) {
-            topLeft = new Point(getCollisionRectangle().getUpperLeft().getX() - 5,
-                    getCollisionRectangle().getUpperLeft().getY());
+        double speed = SPEED * this.environment.getTimeStep();
+        if (x > 0) {
+            this.shape.setUpperLeft(x - speed, y);
+            this.deltaX -= speed;
         } else {
-            topLeft = new Point(guiW - this.environment.getBoundsWidth() - this.shape.getWidth(),
-                    getCollisionRectangle().getUpperLeft().getY());
+            this.shape.setUpperLeft(this.environment.getGuiWidth() - this.environment.getBoundsWidth()
+                    - this.shape.getWidth(), y);
         }
-        this.shape.setUpperLeft(topLeft);
+        this.environment.updateCollidable(this);
     }
 
 
     /**
-     * Moves the paddle to the right by 5 units, ensuring it does not move out of bounds.
+     * Moves the paddle to the right by 5 units per frame, ensuring it does not move out of bounds.
      */
     public void moveRight() {
-        Point topLeft;
-        double guiW = this.gui.getDrawSurface().getWidth();
+        double x = this.shape.getUpperLeft().getX();
+        double y = this.shape.getUpperLeft().getY();
 
-        if (this.getCollisionRectangle().getUpperLeft().getX() + this.shape.getWidth() < guiW) {
-            topLeft = new Point(this.getCollisionRectangle().getUpperLeft().getX() + 5,
-                    this.getCollisionRectangle().getUpperLeft().getY());
+        double speed = SPEED * this.environment.getTimeStep();
+        if (x + this.shape.getWidth() < this.environment.getGuiWidth()) {
+            this.shape.setUpperLeft(x + speed, y);
+            this.deltaX += speed;
         } else {
-            topLeft = new Point(0, this.getCollisionRectangle().getUpperLeft().getY());
+            this.shape.setUpperLeft(0, y);
         }
-        this.shape.setUpperLeft(topLeft);
+        this.environment.updateCollidable(this);
     }
 
     /**
      * Updates the paddle's state based on keyboard input.
-     * Moves the paddle left or right if the corresponding keys are pressed.
+     * Moves the paddle left or right if the corresponding keys are pressed, in the keys sampled once
+     * for this tick.
      */
     public void timePassed() {
-        if (this.keyboard.isPressed(KeyboardSensor.LEFT_KEY)) {
+        this.previousX = this.shape.getUpperLeft().getX();
+        this.deltaX = 0;
+        InputSnapshot keys = this.input.sample();
+        if (keys.isPressed(KeyboardSensor.LEFT_KEY)) {
             moveLeft();
         }
-        if (this.keyboard.isPressed(KeyboardSensor.RIGHT_KEY)) {
+        if (keys.isPressed(KeyboardSensor.RIGHT_KEY)) {
             moveRight();
         }
-        if (this.keyboard.isPressed(KeyboardSensor.ENTER_KEY)) {
-            this.gui.close();
+        if (keys.isPressed(KeyboardSensor.ENTER_KEY)) {
+            this.renderBackend.close();
         }
     }
 
+    /**
+     * Returns how far the paddle moved along the x-axis during the last frame.
+     * Wrapping around to the other side of the screen is not counted as a move.
+     *
+     * @return the change in x of the paddle in the last frame.
+     */
+    @Override
+    public double getDeltaX() {
+        return this.deltaX;
+    }
+
+    /**
+     * The paddle only moves horizontally.
+     *
+     * @return 0.
+     */
+    @Override
+    public double getDeltaY() {
+        return 0;
+    }
+
     /**
      * Draws the paddle on the given {@link DrawSurface}.
      * The paddle is drawn as a filled rectangle with a black border.
@@ -100,10 +151,13 @@ public class Paddle implements Sprite, Collidable {
     public void drawOn(DrawSurface d) {
         d.setColor(b.getColor());
         Rectangle rec = this.shape;
-        d.fillRectangle((int) rec.getUpperLeft().getX(), (int) rec.getUpperLeft().getY(),
-                (int) rec.getWidth(), (int) rec.getHeight());
-        d.drawRectangle((int) rec.getUpperLeft().getX(), (int) rec.getUpperLeft().getY(),
-                (int) rec.getWidth(), (int) rec.getHeight());
+        double x = rec.getUpperLeft().getX();
+        if (this.deltaX != 0 && this.game != null) {
+            // between the last two ticks, unless the paddle wrapped around the screen
+            x -= (x - this.previousX) * (1 - this.game.getRenderAlpha());
+        }
+        d.fillRectangle((int) x, (int) rec.getUpperLeft().getY(), (int) rec.getWidth(), (int) rec.getHeight());
+        d.drawRectangle((int) x, (int) rec.getUpperLeft().getY(), (int) rec.getWidth(), (int) rec.getHeight());
     }
 
     /**
@@ -171,57 +225,69 @@ public class Paddle implements Sprite, Collidable {
 
     /**
      * Handles a collision with the paddle, updating the velocity accordingly.
+     * A hit on the top of the paddle sends the ball off at an angle that depends
+     * on which fifth of the paddle was hit.
      *
-     * @param collisionPoint   The point of collision.
+     * @param collision        The collision, holding the collision point and the side that was hit.
      * @param currentVelocity  The current velocity of the colliding object.
      * @param hitter the ball that hit the paddle.
      * @return The new velocity after the collision.
      */
-    public Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
+    @Override
+    public Velocity hit(Hitter hitter, CollisionInfo collision, Velocity currentVelocity) {
         double x = this.shape.getUpperLeft().getX();
-        double y = this.shape.getUpperLeft().getY();
         double width = this.shape.getWidth();
-        double height = this.shape.getHeight();
         double dx = currentVelocity.getDx();
         double dy = currentVelocity.getDy();
 
-        Line up = new Line(x, y, x + width, y);
-        Line down = new Line(x, y + height, x + width, y + height);
-        Line left = new Line(x, y, x, y - height);
-        Line right = new Line(x + width, y, x + width, y + height);
-
         double fifthWidth = width / 5;
-        int region = (int) ((collisionPoint.getX() - x) / fifthWidth) + 1;
+        int region = (int) ((collision.collisionX() - x) / fifthWidth) + 1;
         double speed = Math.sqrt(dx * dx + (dy * dy));
 
-        if (up.isOnLine(collisionPoint)) {
+        if ((collision.hitSides() & RayHit.TOP) != 0) {
             switch (region) {
                 case 1:
-                    return Velocity.fromAngleAndSpeed(300, speed);
+                    return bounce(300, speed);
 
                 case 2:
-                    return Velocity.fromAngleAndSpeed(330, speed);
+                    return bounce(330, speed);
 
                 case 3:
                     return new Velocity(dx, -dy);
 
                 case 4:
-                    return Velocity.fromAngleAndSpeed(30, speed);
+                    return bounce(30, speed);
 
                 case 5:
-                    return Velocity.fromAngleAndSpeed(60, speed);
+                    return bounce(60, speed);
                 default:
                     return currentVelocity;
             }
         }
         return currentVelocity;
     }
+    /**
+     * Returns the velocity a ball bounces off the top of the paddle with. In fixed point the angle is
+     * turned into a velocity with {@link StrictMath}, so replays give the same bits everywhere.
+     *
+     * @param angle the angle of the new velocity, in degrees.
+     * @param speed the speed of the ball.
+     * @return the new {@link Velocity}.
+     */
+    private Velocity bounce(double angle, double speed) {
+        if (this.environment != null && this.environment.isFixedPoint()) {
+            return Velocity.fromAngleAndSpeedStrict(angle, speed);
+        }
+        return Velocity.fromAngleAndSpeed(angle, speed);
+    }
+
         /**
          * Adds the paddle to the given game. It is added as both a collidable and a sprite.
          *
          * @param g the {@link Game} to add the paddle to
          */
     public void addToGame(Game g) {
+        this.game = g;
         g.addCollidable(this);
         g.addSprite(this);
     }
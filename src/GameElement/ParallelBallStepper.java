@@ -0,0 +1,297 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import GameObjects.Collidable;
+import GameObjects.MovingCollidable;
+import GameObjects.Sprite;
+import Geometry.Rectangle;
+import Listeners.EnvironmentListener;
+import biuoop.DrawSurface;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The ParallelBallStepper class steps the balls of a game on a {@link ForkJoinPool}, with the same result
+ * as stepping them one by one on the game thread.
+ * <p>
+ * A frame has two phases. In the plan phase the balls are split across the pool, and each makes the first
+ * collision query of its step (see {@link Ball#plan(StepPlan)}) while nothing changes the environment,
+ * every query with a {@link QueryScratch} of its own. Without a pool the balls are planned on the game
+ * thread, and the queries of the balls that move as points are answered together, by one batched query
+ * over the flat bounds of the environment (see {@link GameEnvironment#getClosestCollisions}). In the
+ * commit phase the balls are stepped on the
+ * game thread in the order they were added, each using its planned answer, so hits and their listeners
+ * ({@link Listeners.BlockRemover}, {@link Listeners.BallRemover}, the score {@link Counter}) run in the same
+ * order as in a serial frame. When a hit adds, removes or moves a collidable, the stepper is told as an
+ * {@link EnvironmentListener}, and every later ball whose plan could depend on the change (the collidable
+ * it found was removed or moved, or something appeared in the box its step sweeps) makes its query again.
+ * </p>
+ * <p>
+ * The balls are stepped where the stepper is in the sprites of the game, one after the other, instead of
+ * at their own places. Balls moved by an {@link ImpactScheduler} are left to it. Environments holding a
+ * {@link GameObjects.CompoundCollidable}, whose parts change without notice, are stepped serially.
+ * </p>
+ */
+public class ParallelBallStepper implements Sprite, EnvironmentListener {
+    // the most balls planned by one task of the pool
+    private static final int BALLS_PER_TASK = 64;
+
+    private final GameEnvironment environment;
+    private final ForkJoinPool pool;
+    private final List<Ball> balls;
+    private final CollisionBatch queries;
+    private Ball[] batch;
+    private StepPlan[] plans;
+    private int batchSize;
+    // the collidables changed during the commit, and the boxes of the ones that were added or moved
+    private Collidable[] changed;
+    private double[] boxes;
+    private int changeCount;
+    private boolean everythingChanged;
+    private boolean committing;
+
+    /**
+     * Constructs a ParallelBallStepper with no balls. It has to be added to the game as a sprite, and as
+     * a listener of the environment.
+     *
+     * @param environment the {@link GameEnvironment} the balls move in.
+     * @param pool        the {@link ForkJoinPool} the balls are planned on, or {@code null} to plan them
+     *                    on the game thread with one batched query.
+     */
+    public ParallelBallStepper(GameEnvironment environment, ForkJoinPool pool) {
+        this.environment = environment;
+        this.pool = pool;
+        this.balls = new ArrayList<>();
+        this.queries = pool == null ? new CollisionBatch(BALLS_PER_TASK) : null;
+        this.batch = new Ball[0];
+        this.plans = new StepPlan[0];
+        this.changed = new Collidable[4];
+        this.boxes = new double[16];
+    }
+
+    /**
+     * Hands a ball over to the stepper.
+     *
+     * @param b the {@link Ball}.
+     */
+    public void add(Ball b) {
+        if (b.stepper() == this) {
+            return;
+        }
+        this.balls.add(b);
+        b.attach(this);
+    }
+
+    /**
+     * Takes a ball back from the stepper.
+     *
+     * @param b the {@link Ball}.
+     */
+    public void remove(Ball b) {
+        if (b.stepper() != this) {
+            return;
+        }
+        this.balls.remove(b);
+        b.attach((ParallelBallStepper) null);
+    }
+
+    /**
+     * Returns the number of balls the stepper moves.
+     *
+     * @return the number of balls.
+     */
+    public int size() {
+        return this.balls.size();
+    }
+
+    /**
+     * Plans every ball on the pool, then steps them in order.
+     */
+    @Override
+    public void timePassed() {
+        // like the sprites of a frame, balls added during the frame are stepped from the next one
+        this.batchSize = this.balls.size();
+        if (this.batch.length < this.batchSize) {
+            this.batch = Arrays.copyOf(this.batch, Math.max(this.batchSize, this.batch.length * 2));
+            int old = this.plans.length;
+            this.plans = Arrays.copyOf(this.plans, this.batch.length);
+            for (int i = old; i < this.plans.length; i++) {
+                this.plans[i] = new StepPlan();
+            }
+        }
+        for (int i = 0; i < this.batchSize; i++) {
+            this.batch[i] = this.balls.get(i);
+        }
+        boolean planned = !this.environment.hasCompoundCollidables();
+        if (planned) {
+            if (this.pool == null) {
+                planBatched();
+            } else if (this.batchSize > BALLS_PER_TASK) {
+                this.pool.invoke(new PlanTask(0, this.batchSize));
+            } else {
+                planRange(0, this.batchSize);
+            }
+        }
+        this.changeCount = 0;
+        this.everythingChanged = false;
+        this.committing = true;
+        try {
+            for (int i = 0; i < this.batchSize; i++) {
+                Ball ball = this.batch[i];
+                if (ball.stepper() != this || ball.isScheduled()) {
+                    continue;
+                }
+                ball.step(planned && isValid(this.plans[i]) ? this.plans[i] : null);
+            }
+        } finally {
+            this.committing = false;
+            Arrays.fill(this.batch, 0, this.batchSize, null);
+            Arrays.fill(this.changed, 0, this.changeCount, null);
+        }
+    }
+
+    /**
+     * Plans the balls of a range of the batch.
+     *
+     * @param from the first index.
+     * @param to   the index after the last.
+     */
+    private void planRange(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!this.batch[i].isScheduled()) {
+                this.batch[i].plan(this.plans[i]);
+            }
+        }
+    }
+
+    /**
+     * Plans the whole batch on the game thread, answering the point queries with one batched query.
+     */
+    private void planBatched() {
+        this.queries.clear();
+        for (int i = 0; i < this.batchSize; i++) {
+            if (!this.batch[i].isScheduled()) {
+                this.batch[i].plan(this.plans[i], this.queries);
+            }
+        }
+        this.environment.getClosestCollisions(this.queries);
+        for (int i = 0; i < this.batchSize; i++) {
+            this.plans[i].resolve(this.queries);
+        }
+    }
+
+    /**
+     * Returns true if a plan still holds after the changes made so far in the commit.
+     *
+     * @param plan the {@link StepPlan}.
+     * @return whether the plan can be used.
+     */
+    private boolean isValid(StepPlan plan) {
+        if (this.everythingChanged) {
+            return false;
+        }
+        for (int i = 0; i < this.changeCount; i++) {
+            if (this.changed[i] == plan.object()) {
+                return false;
+            }
+            double[] b = this.boxes;
+            if (b[i * 4] <= b[i * 4 + 2] && plan.overlaps(b[i * 4], b[i * 4 + 1], b[i * 4 + 2], b[i * 4 + 3])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records a change to the environment during the commit.
+     *
+     * @param c       the collidable that changed.
+     * @param withBox true if the collidable is now in the environment at its rectangle.
+     */
+    private void record(Collidable c, boolean withBox) {
+        if (!this.committing) {
+            return;
+        }
+        if (c instanceof MovingCollidable) {
+            // a moving collidable is swept in its own frame, its reach is not just its box
+            this.everythingChanged = true;
+            return;
+        }
+        if (this.changeCount == this.changed.length) {
+            this.changed = Arrays.copyOf(this.changed, this.changeCount * 2);
+            this.boxes = Arrays.copyOf(this.boxes, this.changeCount * 8);
+        }
+        int at = this.changeCount * 4;
+        if (withBox) {
+            Rectangle rect = c.getCollisionRectangle();
+            this.boxes[at] = rect.getUpperLeft().getX();
+            this.boxes[at + 1] = rect.getUpperLeft().getY();
+            this.boxes[at + 2] = rect.getUpperLeft().getX() + rect.getWidth();
+            this.boxes[at + 3] = rect.getUpperLeft().getY() + rect.getHeight();
+        } else {
+            // an empty box, a removed collidable only matters to the plans that found it
+            this.boxes[at] = 1;
+            this.boxes[at + 2] = 0;
+        }
+        this.changed[this.changeCount++] = c;
+    }
+
+    @Override
+    public void collidableAdded(Collidable c) {
+        record(c, true);
+    }
+
+    @Override
+    public void collidableRemoved(Collidable c) {
+        record(c, false);
+    }
+
+    @Override
+    public void collidableMoved(Collidable c) {
+        record(c, true);
+    }
+
+    /**
+     * The stepper has nothing to draw, the balls draw themselves.
+     *
+     * @param d the {@link DrawSurface}.
+     */
+    @Override
+    public void drawOn(DrawSurface d) {
+        // nothing to draw
+    }
+
+    /**
+     * Plans a range of the batch, splitting it in halves until a range is small enough for one task.
+     */
+    private final class PlanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        /**
+         * Constructs a task for a range of the batch.
+         *
+         * @param from the first index.
+         * @param to   the index after the last.
+         */
+        PlanTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= BALLS_PER_TASK) {
+                planRange(this.from, this.to);
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new PlanTask(this.from, middle), new PlanTask(middle, this.to));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import Geometry.RayHit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The QueryScratch class holds the working state of one collision query of a {@link GameEnvironment}:
+ * the candidate list and the hits being compared, and which static handles the query has already tested. The environment answers its own queries with a scratch
+ * of its own; a thread that queries the environment concurrently with others passes a scratch of its own
+ * (see {@link GameEnvironment#getClosestCollision(double, double, double, double, double, RayHit,
+ * QueryScratch)}).
+ */
+class QueryScratch {
+    private final List<CollidableHandle> candidates;
+    private final RayHit hit;
+    private final RayHit closestHit;
+    // the query each static handle was last tested in, by its slot in the static set
+    private int[] tested;
+    private int query;
+
+    /**
+     * Constructs an empty QueryScratch.
+     */
+    QueryScratch() {
+        this.candidates = new ArrayList<>();
+        this.hit = new RayHit();
+        this.closestHit = new RayHit();
+        this.tested = new int[0];
+    }
+
+    /**
+     * Starts a new query, after which every handle is untested again.
+     *
+     * @param staticHandles the number of static handles in the environment.
+     */
+    void beginQuery(int staticHandles) {
+        if (this.tested.length < staticHandles) {
+            this.tested = new int[Math.max(staticHandles, this.tested.length * 2)];
+        }
+        this.query++;
+        if (this.query == 0) {
+            // the counter wrapped around, forget every old query
+            Arrays.fill(this.tested, 0);
+            this.query = 1;
+        }
+    }
+
+    /**
+     * Marks the given candidate as tested in the current query. A static handle registered in several
+     * grid cells is collected once per cell, and only has to be tested the first time; the dynamic handles
+     * are collected once.
+     *
+     * @param handle the candidate {@link CollidableHandle}.
+     * @return true if the handle was not tested yet in this query.
+     */
+    boolean markTested(CollidableHandle handle) {
+        if (handle.isDynamic()) {
+            return true;
+        }
+        int slot = handle.slot();
+        if (this.tested[slot] == this.query) {
+            return false;
+        }
+        this.tested[slot] = this.query;
+        return true;
+    }
+
+    /**
+     * Returns the list of candidate handles of the query.
+     *
+     * @return the candidates.
+     */
+    List<CollidableHandle> candidates() {
+        return this.candidates;
+    }
+
+    /**
+     * Returns the hit of the collidable being tested.
+     *
+     * @return the {@link RayHit}.
+     */
+    RayHit hit() {
+        return this.hit;
+    }
+
+    /**
+     * Returns the closest hit found so far.
+     *
+     * @return the {@link RayHit}.
+     */
+    RayHit closestHit() {
+        return this.closestHit;
+    }
+}
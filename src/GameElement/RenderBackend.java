@@ -0,0 +1,30 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import biuoop.DrawSurface;
+
+/**
+ * The RenderBackend interface is where a {@link Game} draws its frames: a window
+ * ({@link GuiRenderBackend}), or nothing at all ({@link NullRenderBackend}) when the game is simulated
+ * headless.
+ */
+public interface RenderBackend {
+    /**
+     * Returns a surface to draw the next frame on.
+     *
+     * @return the {@link DrawSurface}, or {@code null} if frames are not drawn.
+     */
+    DrawSurface getDrawSurface();
+
+    /**
+     * Shows a drawn frame.
+     *
+     * @param d the {@link DrawSurface} returned by {@link #getDrawSurface()}.
+     */
+    void show(DrawSurface d);
+
+    /**
+     * Closes the backend, when the game is over or the player quits.
+     */
+    void close();
+}
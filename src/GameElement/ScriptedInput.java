@@ -0,0 +1,66 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ScriptedInput class plays back key presses given by tick number, so a headless game gets the same
+ * input on every run. The first tick of the game reads tick 0, and every {@link #advance()} moves the
+ * input one tick forward.
+ */
+public class ScriptedInput implements InputSource {
+    private final List<String> keys;
+    private final List<long[]> ranges;
+    private long tick;
+
+    /**
+     * Constructs a ScriptedInput with no key presses.
+     */
+    public ScriptedInput() {
+        this.keys = new ArrayList<>();
+        this.ranges = new ArrayList<>();
+    }
+
+    /**
+     * Holds a key down from one tick until another.
+     *
+     * @param key      the name of the key, like {@link biuoop.KeyboardSensor#LEFT_KEY}.
+     * @param fromTick the first tick the key is pressed in.
+     * @param toTick   the tick the key is released in.
+     * @return this input, for chaining.
+     */
+    public ScriptedInput press(String key, long fromTick, long toTick) {
+        if (toTick < fromTick) {
+            throw new IllegalArgumentException("a key can't be released before it is pressed");
+        }
+        this.keys.add(key);
+        this.ranges.add(new long[] {fromTick, toTick});
+        return this;
+    }
+
+    /**
+     * Returns the current tick.
+     *
+     * @return the number of ticks the input was advanced.
+     */
+    public long getTick() {
+        return this.tick;
+    }
+
+    @Override
+    public boolean isPressed(String key) {
+        for (int i = 0; i < this.keys.size(); i++) {
+            long[] range = this.ranges.get(i);
+            if (this.tick >= range[0] && this.tick < range[1] && this.keys.get(i).equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void advance() {
+        this.tick++;
+    }
+}
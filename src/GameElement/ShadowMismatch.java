@@ -0,0 +1,202 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import GameObjects.Collidable;
+import Geometry.Point;
+
+/**
+ * The ShadowMismatch class records a query on which the optimized collision path and the original linear
+ * {@link Geometry.Line}/{@link Geometry.Rectangle} code disagreed (see {@link ShadowVerifier}), together
+ * with the full inputs of the query so it can be replayed.
+ */
+public class ShadowMismatch {
+    /**
+     * What the two paths disagreed on.
+     */
+    public enum Kind {
+        /**
+         * A different collidable was hit, or only one of the paths found a collision.
+         */
+        COLLIDABLE,
+        /**
+         * The same collidable was hit at a different point.
+         */
+        POINT,
+        /**
+         * The velocity after the bounce differs from the one the original code gives.
+         */
+        VELOCITY
+    }
+
+    private final Kind kind;
+    private final double x1;
+    private final double y1;
+    private final double x2;
+    private final double y2;
+    private final Collidable expectedCollidable;
+    private final Point expectedPoint;
+    private final Collidable actualCollidable;
+    private final Point actualPoint;
+    private final Velocity velocityBefore;
+    private final Velocity expectedVelocity;
+    private final Velocity actualVelocity;
+
+    /**
+     * Constructs a new ShadowMismatch.
+     *
+     * @param kind               what the two paths disagreed on.
+     * @param x1                 the x value of the start of the queried trajectory.
+     * @param y1                 the y value of the start of the queried trajectory.
+     * @param x2                 the x value of the end of the queried trajectory.
+     * @param y2                 the y value of the end of the queried trajectory.
+     * @param expectedCollidable the collidable the original code hits, or {@code null}.
+     * @param expectedPoint      the collision point of the original code, or {@code null}.
+     * @param actualCollidable   the collidable the optimized path hits, or {@code null}.
+     * @param actualPoint        the collision point of the optimized path, or {@code null}.
+     * @param velocityBefore     the velocity before the bounce, or {@code null} for a query mismatch.
+     * @param expectedVelocity   the velocity the original code gives, or {@code null} for a query mismatch.
+     * @param actualVelocity     the velocity after the bounce, or {@code null} for a query mismatch.
+     */
+    ShadowMismatch(Kind kind, double x1, double y1, double x2, double y2,
+                   Collidable expectedCollidable, Point expectedPoint, Collidable actualCollidable,
+                   Point actualPoint, Velocity velocityBefore, Velocity expectedVelocity, Velocity actualVelocity) {
+        this.kind = kind;
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+        this.expectedCollidable = expectedCollidable;
+        this.expectedPoint = expectedPoint;
+        this.actualCollidable = actualCollidable;
+        this.actualPoint = actualPoint;
+        this.velocityBefore = velocityBefore;
+        this.expectedVelocity = expectedVelocity;
+        this.actualVelocity = actualVelocity;
+    }
+
+    /**
+     * Returns what the two paths disagreed on.
+     *
+     * @return the {@link Kind} of the mismatch.
+     */
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Returns the queried trajectory.
+     *
+     * @return the trajectory as an array {x1, y1, x2, y2}.
+     */
+    public double[] getTrajectory() {
+        return new double[] {this.x1, this.y1, this.x2, this.y2};
+    }
+
+    /**
+     * Returns the collidable the original code hits.
+     *
+     * @return the {@link Collidable}, or {@code null} if it finds no collision.
+     */
+    public Collidable getExpectedCollidable() {
+        return this.expectedCollidable;
+    }
+
+    /**
+     * Returns the collision point of the original code.
+     *
+     * @return the {@link Point}, or {@code null} if it finds no collision.
+     */
+    public Point getExpectedPoint() {
+        return this.expectedPoint;
+    }
+
+    /**
+     * Returns the collidable the optimized path hits.
+     *
+     * @return the {@link Collidable}, or {@code null} if it finds no collision.
+     */
+    public Collidable getActualCollidable() {
+        return this.actualCollidable;
+    }
+
+    /**
+     * Returns the collision point of the optimized path.
+     *
+     * @return the {@link Point}, or {@code null} if it finds no collision.
+     */
+    public Point getActualPoint() {
+        return this.actualPoint;
+    }
+
+    /**
+     * Returns the velocity of the ball before the bounce.
+     *
+     * @return the {@link Velocity}, or {@code null} for a query mismatch.
+     */
+    public Velocity getVelocityBefore() {
+        return this.velocityBefore;
+    }
+
+    /**
+     * Returns the velocity the original code gives after the bounce.
+     *
+     * @return the {@link Velocity}, or {@code null} for a query mismatch.
+     */
+    public Velocity getExpectedVelocity() {
+        return this.expectedVelocity;
+    }
+
+    /**
+     * Returns the velocity the ball got after the bounce.
+     *
+     * @return the {@link Velocity}, or {@code null} for a query mismatch.
+     */
+    public Velocity getActualVelocity() {
+        return this.actualVelocity;
+    }
+
+    /**
+     * Describes the mismatch and its query on one line, for logs.
+     *
+     * @return a description of the mismatch.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(this.kind).append(" trajectory (").append(this.x1).append(", ").append(this.y1)
+                .append(") -> (").append(this.x2).append(", ").append(this.y2).append(')')
+                .append(" expected ").append(describe(this.expectedCollidable, this.expectedPoint))
+                .append(" actual ").append(describe(this.actualCollidable, this.actualPoint));
+        if (this.velocityBefore != null) {
+            text.append(" velocity ").append(describe(this.velocityBefore))
+                    .append(" expected ").append(describe(this.expectedVelocity))
+                    .append(" actual ").append(describe(this.actualVelocity));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Describes a collision.
+     *
+     * @param c     the collidable that is hit, or {@code null}.
+     * @param point the collision point, or {@code null}.
+     * @return a short description.
+     */
+    private static String describe(Collidable c, Point point) {
+        if (c == null) {
+            return "none";
+        }
+        return c.getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(c))
+                + " at (" + point.getX() + ", " + point.getY() + ")";
+    }
+
+    /**
+     * Describes a velocity.
+     *
+     * @param v the velocity.
+     * @return a short description.
+     */
+    private static String describe(Velocity v) {
+        return "(" + v.getDx() + ", " + v.getDy() + ")";
+    }
+}
@@ -0,0 +1,259 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import GameObjects.Collidable;
+import GameObjects.CollisionInfo;
+import GameObjects.CompoundCollidable;
+import GameObjects.MovingCollidable;
+import Geometry.Line;
+import Geometry.Point;
+import Geometry.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The ShadowVerifier class checks the optimized collision path of a {@link GameEnvironment} against the
+ * original linear code while the game runs.
+ * <p>
+ * A configurable fraction of the point queries ({@link GameEnvironment#getClosestCollision(Line)}) is
+ * answered a second time the original way: every collidable's rectangle is intersected with
+ * {@link Line#closestIntersectionToStartOfLine(Rectangle)} and the closest point wins. When the ball then
+ * bounces off a {@link Block}, the new velocity is compared with the one the original edge test
+ * ({@link Line#isOnLine(Point)} on each side of the block) gives. Every disagreement is recorded as a
+ * {@link ShadowMismatch} with the full query inputs, so a fast path can be enabled for players and the
+ * sampling turned off once the mismatch rate stays at zero.
+ * </p>
+ * <p>
+ * Two different collidables hit at the same point are a tie, not a mismatch. Queries that hit a part of
+ * a {@link CompoundCollidable} are not verified, since the original code has no notion of parts. Only the
+ * swept-circle queries sweep a {@link MovingCollidable} in its own frame of reference, so the point queries
+ * handed over here are verified against moving collidables like against any other. Bounces off anything
+ * but a block are not checked.
+ * </p>
+ */
+public class ShadowVerifier {
+    // how far apart two collision points may be and still count as the same point
+    private static final double POINT_TOLERANCE = 1e-6;
+    // how far apart two velocity components may be and still count as the same
+    private static final double VELOCITY_TOLERANCE = 1e-9;
+    // the most mismatches kept, later ones are only counted
+    private static final int MAX_RECORDED = 1000;
+
+    private final double sampleRate;
+    private final Random random;
+    private final List<ShadowMismatch> mismatches;
+    private long sampled;
+    private long mismatchCount;
+    private Collidable pendingObject;
+    private Point pendingPoint;
+    private Line pendingTrajectory;
+
+    /**
+     * Constructs a ShadowVerifier that checks the given fraction of queries.
+     *
+     * @param sampleRate the fraction of queries to verify, from 0 (none) to 1 (all).
+     * @param seed       the seed of the random choice of queries, so runs can be repeated.
+     */
+    public ShadowVerifier(double sampleRate, long seed) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sample rate must be between 0 and 1");
+        }
+        this.sampleRate = sampleRate;
+        this.random = new Random(seed);
+        this.mismatches = new ArrayList<>();
+    }
+
+    /**
+     * Returns the number of queries that were verified.
+     *
+     * @return the number of sampled queries.
+     */
+    public long getSampledQueries() {
+        return this.sampled;
+    }
+
+    /**
+     * Returns the number of mismatches found, including the ones that were not recorded.
+     *
+     * @return the number of mismatches.
+     */
+    public long getMismatchCount() {
+        return this.mismatchCount;
+    }
+
+    /**
+     * Returns the fraction of verified queries that had a mismatch.
+     *
+     * @return the mismatch rate, 0 if nothing was verified yet.
+     */
+    public double getMismatchRate() {
+        return this.sampled == 0 ? 0 : (double) this.mismatchCount / this.sampled;
+    }
+
+    /**
+     * Returns the recorded mismatches, oldest first (at most {@value #MAX_RECORDED}).
+     *
+     * @return a read-only {@link List} of {@link ShadowMismatch}es.
+     */
+    public List<ShadowMismatch> getMismatches() {
+        return Collections.unmodifiableList(this.mismatches);
+    }
+
+    /**
+     * Forgets all the statistics and recorded mismatches.
+     */
+    public void clear() {
+        this.mismatches.clear();
+        this.sampled = 0;
+        this.mismatchCount = 0;
+        this.pendingObject = null;
+    }
+
+    /**
+     * Decides, at random, whether the next query should be verified.
+     *
+     * @return true if the query is sampled.
+     */
+    boolean sample() {
+        // a bounce can only be checked right after its own query
+        this.pendingObject = null;
+        return this.sampleRate > 0 && this.random.nextDouble() < this.sampleRate;
+    }
+
+    /**
+     * Answers a query the original way and compares the answer with the optimized one.
+     *
+     * @param trajectory       the queried trajectory.
+     * @param actualCollidable the collidable the optimized path hits, or {@code null}.
+     * @param actualPoint      the collision point of the optimized path, or {@code null}.
+     * @param collidables      the collidables of the environment.
+     */
+    void verifyQuery(Line trajectory, Collidable actualCollidable, Point actualPoint, List<Collidable> collidables) {
+        if (actualCollidable != null && !collidables.contains(actualCollidable)) {
+            // a part of a compound collidable
+            return;
+        }
+        Collidable expected = null;
+        Point expectedPoint = null;
+        double closest = Double.MAX_VALUE;
+        for (int i = 0; i < collidables.size(); i++) {
+            Collidable c = collidables.get(i);
+            if (c instanceof CompoundCollidable) {
+                continue;
+            }
+            Point intersection = trajectory.closestIntersectionToStartOfLine(c.getCollisionRectangle());
+            if (intersection != null) {
+                double distance = trajectory.start().distance(intersection);
+                if (distance < closest) {
+                    closest = distance;
+                    expected = c;
+                    expectedPoint = intersection;
+                }
+            }
+        }
+        this.sampled++;
+        if (expected == null && actualCollidable == null) {
+            return;
+        }
+        boolean samePoint = expected != null && actualCollidable != null
+                && expectedPoint.distance(actualPoint) <= POINT_TOLERANCE;
+        if (expected != actualCollidable && !samePoint) {
+            record(ShadowMismatch.Kind.COLLIDABLE, trajectory, expected, expectedPoint, actualCollidable,
+                    actualPoint, null, null, null);
+            return;
+        }
+        if (!samePoint) {
+            record(ShadowMismatch.Kind.POINT, trajectory, expected, expectedPoint, actualCollidable,
+                    actualPoint, null, null, null);
+            return;
+        }
+        // remember the answer so the bounce that follows it can be checked too
+        this.pendingObject = actualCollidable;
+        this.pendingPoint = expectedPoint;
+        this.pendingTrajectory = trajectory;
+    }
+
+    /**
+     * Compares the velocity a ball got from a bounce with the one the original code gives, if the
+     * bounce follows the last verified query and the collidable is a {@link Block}.
+     *
+     * @param collision the collision the ball bounced on.
+     * @param before    the velocity of the ball before the bounce.
+     * @param after     the velocity of the ball after the bounce.
+     */
+    void verifyBounce(CollisionInfo collision, Velocity before, Velocity after) {
+        if (collision.collisionObject() != this.pendingObject) {
+            return;
+        }
+        this.pendingObject = null;
+        if (!(collision.collisionObject() instanceof Block)) {
+            return;
+        }
+        Velocity expected = originalBounce(collision.collisionObject().getCollisionRectangle(),
+                this.pendingPoint, before);
+        if (Math.abs(expected.getDx() - after.getDx()) > VELOCITY_TOLERANCE
+                || Math.abs(expected.getDy() - after.getDy()) > VELOCITY_TOLERANCE) {
+            // the query itself was counted already, so the mismatch is added to its sample
+            record(ShadowMismatch.Kind.VELOCITY, this.pendingTrajectory, collision.collisionObject(),
+                    this.pendingPoint, collision.collisionObject(), collision.collisionPoint(), before, expected,
+                    after);
+        }
+    }
+
+    /**
+     * The velocity after hitting a block as the original code worked it out: flipped vertically for
+     * each horizontal edge the collision point lies on, and horizontally for each vertical edge.
+     *
+     * @param rect     the rectangle of the block.
+     * @param point    the collision point.
+     * @param velocity the velocity before the bounce.
+     * @return the velocity after the bounce.
+     */
+    private static Velocity originalBounce(Rectangle rect, Point point, Velocity velocity) {
+        double x = rect.getUpperLeft().getX();
+        double y = rect.getUpperLeft().getY();
+        double width = rect.getWidth();
+        double height = rect.getHeight();
+        double dx = velocity.getDx();
+        double dy = velocity.getDy();
+        if (new Line(x, y, x + width, y).isOnLine(point)) {
+            dy *= -1;
+        }
+        if (new Line(x, y + height, x + width, y + height).isOnLine(point)) {
+            dy *= -1;
+        }
+        if (new Line(x + width, y, x + width, y + height).isOnLine(point)) {
+            dx *= -1;
+        }
+        if (new Line(x, y, x, y + height).isOnLine(point)) {
+            dx *= -1;
+        }
+        return new Velocity(dx, dy);
+    }
+
+    /**
+     * Counts a mismatch, and records it if there is still room.
+     *
+     * @param kind               what the paths disagreed on.
+     * @param trajectory         the queried trajectory.
+     * @param expectedCollidable the collidable of the original code.
+     * @param expectedPoint      the collision point of the original code.
+     * @param actualCollidable   the collidable of the optimized path.
+     * @param actualPoint        the collision point of the optimized path.
+     * @param before             the velocity before the bounce.
+     * @param expectedVelocity   the velocity of the original code.
+     * @param actualVelocity     the velocity after the bounce.
+     */
+    private void record(ShadowMismatch.Kind kind, Line trajectory, Collidable expectedCollidable,
+                        Point expectedPoint, Collidable actualCollidable, Point actualPoint, Velocity before,
+                        Velocity expectedVelocity, Velocity actualVelocity) {
+        this.mismatchCount++;
+        if (this.mismatches.size() < MAX_RECORDED) {
+            this.mismatches.add(new ShadowMismatch(kind, trajectory.start().getX(), trajectory.start().getY(),
+                    trajectory.end().getX(), trajectory.end().getY(), expectedCollidable, expectedPoint,
+                    actualCollidable, actualPoint, before, expectedVelocity, actualVelocity));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import biuoop.DrawSurface;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The SnapshotRenderer class is the render thread of a pipelined {@link Game}: it draws the newest
+ * {@link FrameSnapshot} the simulation thread published, while the simulation thread steps the next one.
+ * <p>
+ * The snapshots are handed over through a {@link TripleBuffer}, so the two threads never wait for each
+ * other: a frame takes about as long as the slower of simulating and drawing it, instead of both. When
+ * there is no new snapshot the thread parks until {@link #signal()} wakes it, and when drawing is slower
+ * than the simulation the frames in between are skipped. All the calls on the {@link RenderBackend} are
+ * made on this thread while it runs.
+ * </p>
+ */
+public class SnapshotRenderer implements Runnable {
+    private final TripleBuffer<FrameSnapshot> snapshots;
+    private final RenderBackend renderBackend;
+    private final InputSampler input;
+    private volatile boolean running;
+    private Thread thread;
+    private long framesDrawn;
+
+    /**
+     * Constructs a SnapshotRenderer.
+     *
+     * @param snapshots     the buffer the snapshots are published to.
+     * @param renderBackend the {@link RenderBackend} the snapshots are drawn on.
+     * @param input         the {@link InputSampler} told when a frame is shown, or {@code null}.
+     */
+    public SnapshotRenderer(TripleBuffer<FrameSnapshot> snapshots, RenderBackend renderBackend,
+                            InputSampler input) {
+        this.snapshots = snapshots;
+        this.renderBackend = renderBackend;
+        this.input = input;
+    }
+
+    /**
+     * Starts the render thread.
+     */
+    public void start() {
+        if (this.thread != null) {
+            throw new IllegalStateException("the renderer was already started");
+        }
+        this.running = true;
+        this.thread = new Thread(this, "render");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Wakes the render thread after a snapshot was published.
+     */
+    public void signal() {
+        LockSupport.unpark(this.thread);
+    }
+
+    /**
+     * Stops the render thread and waits for it to draw its last frame.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public void stop() throws InterruptedException {
+        if (this.thread == null) {
+            return;
+        }
+        this.running = false;
+        LockSupport.unpark(this.thread);
+        this.thread.join();
+        this.thread = null;
+    }
+
+    /**
+     * Returns the number of frames drawn. It is up to date once the renderer is stopped.
+     *
+     * @return the number of frames drawn.
+     */
+    public long getFramesDrawn() {
+        return this.framesDrawn;
+    }
+
+    /**
+     * Draws the newest snapshot whenever one is published, until the renderer is stopped.
+     */
+    @Override
+    public void run() {
+        while (this.running) {
+            if (!this.snapshots.acquire()) {
+                // the permit of a signal that came before this park is kept, so no snapshot is missed
+                LockSupport.park(this);
+                continue;
+            }
+            DrawSurface d = this.renderBackend.getDrawSurface();
+            if (d != null) {
+                FrameSnapshot frame = this.snapshots.readable();
+                frame.replay(d);
+                this.renderBackend.show(d);
+                this.framesDrawn++;
+                if (this.input != null) {
+                    this.input.presented(frame.getTick());
+                }
+            }
+        }
+    }
+}
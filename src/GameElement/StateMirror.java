@@ -0,0 +1,402 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import GameObjects.Sprite;
+import Geometry.Point;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * The StateMirror class copies the state of a running {@link Game} into a memory-mapped file once per
+ * tick, so external tools (a replay viewer, a heatmap analyzer) can watch the game from another process
+ * without instrumenting it.
+ * <p>
+ * The file has a fixed little-endian layout: a header of {@value #HEADER_SIZE} bytes (see the
+ * {@code *_OFFSET} constants), then {@code maxBalls} records of four doubles (x, y, dx, dy), then a bitmap
+ * of {@code maxBlocks} bits, one long per 64 blocks, where a set bit means the block is still in the game.
+ * The blocks are numbered in the order they were in the environment when the mirror was created, and the
+ * balls are the {@link Ball} sprites of the game in sprite order, up to {@code maxBalls}.
+ * </p>
+ * <p>
+ * Readers get consistent frames through a sequence lock: the sequence number at {@link #SEQUENCE_OFFSET}
+ * is odd while a frame is being written, and goes up by two for every frame. A reader reads the number,
+ * then the frame, then the number again, and keeps the frame if both reads are the same even number (see
+ * {@link Reader}). The writer never waits and never allocates, so the mirror adds no GC pressure to the
+ * game, and a reader in native code can map the file and read it in place.
+ * </p>
+ */
+public class StateMirror {
+    /**
+     * The magic number at the start of the file, "ARKM".
+     */
+    public static final int MAGIC = 0x41524B4D;
+    /**
+     * The version of the layout.
+     */
+    public static final int LAYOUT_VERSION = 1;
+    /**
+     * The offset of the magic number, an int.
+     */
+    public static final int MAGIC_OFFSET = 0;
+    /**
+     * The offset of the layout version, an int.
+     */
+    public static final int VERSION_OFFSET = 4;
+    /**
+     * The offset of the sequence number of the lock, a long.
+     */
+    public static final int SEQUENCE_OFFSET = 8;
+    /**
+     * The offset of the number of the tick, a long.
+     */
+    public static final int TICK_OFFSET = 16;
+    /**
+     * The offset of the number of ball records, an int.
+     */
+    public static final int MAX_BALLS_OFFSET = 24;
+    /**
+     * The offset of the number of blocks in the bitmap, an int.
+     */
+    public static final int MAX_BLOCKS_OFFSET = 28;
+    /**
+     * The offset of the number of balls in the frame, an int.
+     */
+    public static final int BALL_COUNT_OFFSET = 32;
+    /**
+     * The offset of the score, an int.
+     */
+    public static final int SCORE_OFFSET = 36;
+    /**
+     * The offset of the x value of the upper-left corner of the paddle, a double.
+     */
+    public static final int PADDLE_X_OFFSET = 40;
+    /**
+     * The offset of the y value of the upper-left corner of the paddle, a double.
+     */
+    public static final int PADDLE_Y_OFFSET = 48;
+    /**
+     * The offset of the number of balls left, an int.
+     */
+    public static final int BALLS_LEFT_OFFSET = 56;
+    /**
+     * The offset of the number of blocks left, an int.
+     */
+    public static final int BLOCKS_LEFT_OFFSET = 60;
+    /**
+     * The size of the header, where the ball records start.
+     */
+    public static final int HEADER_SIZE = 64;
+    /**
+     * The size of a ball record.
+     */
+    public static final int BALL_SIZE = 32;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private final MappedByteBuffer buffer;
+    private final int maxBalls;
+    private final Block[] blocks;
+    private final int bitmapOffset;
+    private final List<Sprite> sprites;
+    private final GameEnvironment environment;
+    private final Counter score;
+    private final Counter ballsLeft;
+    private final Counter blocksLeft;
+    private long sequence;
+    private long tick;
+
+    /**
+     * Creates the mirror file, or overwrites it, and writes the header.
+     *
+     * @param file        the file to map.
+     * @param maxBalls    the number of ball records, later balls are not mirrored.
+     * @param blocks      the blocks of the bitmap.
+     * @param sprites     the sprites of the game, searched for balls and the paddle.
+     * @param environment the environment of the game, which holds the blocks still in the game.
+     * @param score       the score.
+     * @param ballsLeft   the counter of balls left.
+     * @param blocksLeft  the counter of blocks left.
+     * @throws IOException if the file cannot be created or mapped.
+     */
+    StateMirror(Path file, int maxBalls, List<Block> blocks, List<Sprite> sprites, GameEnvironment environment,
+                Counter score, Counter ballsLeft, Counter blocksLeft) throws IOException {
+        if (maxBalls < 0) {
+            throw new IllegalArgumentException("the number of balls can't be negative");
+        }
+        this.maxBalls = maxBalls;
+        this.blocks = blocks.toArray(new Block[0]);
+        this.bitmapOffset = HEADER_SIZE + maxBalls * BALL_SIZE;
+        int size = this.bitmapOffset + bitmapWords(this.blocks.length) * Long.BYTES;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // the mapping stays valid after the channel is closed
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.sprites = sprites;
+        this.environment = environment;
+        this.score = score;
+        this.ballsLeft = ballsLeft;
+        this.blocksLeft = blocksLeft;
+        this.buffer.putInt(VERSION_OFFSET, LAYOUT_VERSION);
+        this.buffer.putInt(MAX_BALLS_OFFSET, maxBalls);
+        this.buffer.putInt(MAX_BLOCKS_OFFSET, this.blocks.length);
+        // the magic number last, so a reader that sees it sees the rest of the header
+        VarHandle.storeStoreFence();
+        this.buffer.putInt(MAGIC_OFFSET, MAGIC);
+    }
+
+    /**
+     * Returns the number of longs of a bitmap of the given number of blocks.
+     *
+     * @param blockCount the number of blocks.
+     * @return the number of longs.
+     */
+    private static int bitmapWords(int blockCount) {
+        return (blockCount + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    /**
+     * Returns the number of frames written.
+     *
+     * @return the number of the last tick.
+     */
+    public long getTick() {
+        return this.tick;
+    }
+
+    /**
+     * Writes the current state of the game as a new frame.
+     */
+    public void publish() {
+        ByteBuffer b = this.buffer;
+        // odd while writing, the fence keeps the frame from being written before the odd number
+        LONGS.setOpaque(b, SEQUENCE_OFFSET, ++this.sequence);
+        VarHandle.storeStoreFence();
+        this.tick++;
+        b.putLong(TICK_OFFSET, this.tick);
+        int balls = 0;
+        for (int i = 0; i < this.sprites.size(); i++) {
+            Sprite s = this.sprites.get(i);
+            if (s instanceof Ball && balls < this.maxBalls) {
+                Ball ball = (Ball) s;
+                Velocity v = ball.getVelocity();
+                int at = HEADER_SIZE + balls * BALL_SIZE;
+                b.putDouble(at, ball.exactX());
+                b.putDouble(at + 8, ball.exactY());
+                b.putDouble(at + 16, v == null ? 0 : v.getDx());
+                b.putDouble(at + 24, v == null ? 0 : v.getDy());
+                balls++;
+            } else if (s instanceof Paddle) {
+                Point upperLeft = ((Paddle) s).getCollisionRectangle().getUpperLeft();
+                b.putDouble(PADDLE_X_OFFSET, upperLeft.getX());
+                b.putDouble(PADDLE_Y_OFFSET, upperLeft.getY());
+            }
+        }
+        b.putInt(BALL_COUNT_OFFSET, balls);
+        b.putInt(SCORE_OFFSET, this.score.getValue());
+        b.putInt(BALLS_LEFT_OFFSET, this.ballsLeft.getValue());
+        b.putInt(BLOCKS_LEFT_OFFSET, this.blocksLeft.getValue());
+        for (int word = 0; word < bitmapWords(this.blocks.length); word++) {
+            long bits = 0;
+            int end = Math.min(this.blocks.length, (word + 1) * Long.SIZE);
+            for (int i = word * Long.SIZE; i < end; i++) {
+                if (this.environment.contains(this.blocks[i])) {
+                    bits |= 1L << (i - word * Long.SIZE);
+                }
+            }
+            b.putLong(this.bitmapOffset + word * Long.BYTES, bits);
+        }
+        // even again, the release makes the whole frame visible with it
+        LONGS.setRelease(b, SEQUENCE_OFFSET, ++this.sequence);
+    }
+
+    /**
+     * A consistent copy of one frame of a mirror, filled by a {@link Reader}.
+     */
+    public static final class Frame {
+        private long tick;
+        private int ballCount;
+        private double[] balls = new double[0];
+        private double paddleX;
+        private double paddleY;
+        private int score;
+        private int ballsLeft;
+        private int blocksLeft;
+        private int blockCount;
+        private long[] liveBlocks = new long[0];
+
+        /**
+         * Returns the number of the tick of the frame, 0 before the first frame.
+         *
+         * @return the tick.
+         */
+        public long getTick() {
+            return this.tick;
+        }
+
+        /**
+         * Returns the number of balls in the frame.
+         *
+         * @return the number of balls.
+         */
+        public int getBallCount() {
+            return this.ballCount;
+        }
+
+        /**
+         * Returns a value of a ball: 0 for x, 1 for y, 2 for dx and 3 for dy.
+         *
+         * @param ball  the index of the ball.
+         * @param field the value.
+         * @return the value.
+         */
+        public double getBall(int ball, int field) {
+            return this.balls[ball * 4 + field];
+        }
+
+        /**
+         * Returns the x value of the upper-left corner of the paddle.
+         *
+         * @return the x value.
+         */
+        public double getPaddleX() {
+            return this.paddleX;
+        }
+
+        /**
+         * Returns the y value of the upper-left corner of the paddle.
+         *
+         * @return the y value.
+         */
+        public double getPaddleY() {
+            return this.paddleY;
+        }
+
+        /**
+         * Returns the score.
+         *
+         * @return the score.
+         */
+        public int getScore() {
+            return this.score;
+        }
+
+        /**
+         * Returns the number of balls left.
+         *
+         * @return the number of balls left.
+         */
+        public int getBallsLeft() {
+            return this.ballsLeft;
+        }
+
+        /**
+         * Returns the number of blocks left.
+         *
+         * @return the number of blocks left.
+         */
+        public int getBlocksLeft() {
+            return this.blocksLeft;
+        }
+
+        /**
+         * Returns the number of blocks of the bitmap.
+         *
+         * @return the number of blocks.
+         */
+        public int getBlockCount() {
+            return this.blockCount;
+        }
+
+        /**
+         * Returns true if the block of the given number was still in the game.
+         *
+         * @param block the number of the block.
+         * @return whether the block is live.
+         */
+        public boolean isBlockLive(int block) {
+            return (this.liveBlocks[block / Long.SIZE] & (1L << (block % Long.SIZE))) != 0;
+        }
+    }
+
+    /**
+     * Reads the frames of a mirror file, usually from another process.
+     */
+    public static final class Reader {
+        private final MappedByteBuffer buffer;
+        private final int maxBalls;
+        private final int maxBlocks;
+
+        /**
+         * Maps a mirror file for reading.
+         *
+         * @param file the mirror file.
+         * @throws IOException if the file cannot be mapped, or is not a mirror file of this layout.
+         */
+        public Reader(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (this.buffer.capacity() < HEADER_SIZE || this.buffer.getInt(MAGIC_OFFSET) != MAGIC
+                    || this.buffer.getInt(VERSION_OFFSET) != LAYOUT_VERSION) {
+                throw new IOException("not a state mirror file of layout " + LAYOUT_VERSION + ": " + file);
+            }
+            this.maxBalls = this.buffer.getInt(MAX_BALLS_OFFSET);
+            this.maxBlocks = this.buffer.getInt(MAX_BLOCKS_OFFSET);
+        }
+
+        /**
+         * Copies the latest complete frame, trying again while the writer is in the middle of a frame.
+         *
+         * @param frame the frame to fill, reused between calls.
+         * @return the number of the tick that was read.
+         */
+        public long read(Frame frame) {
+            ByteBuffer b = this.buffer;
+            if (frame.balls.length < this.maxBalls * 4) {
+                frame.balls = new double[this.maxBalls * 4];
+            }
+            if (frame.liveBlocks.length < bitmapWords(this.maxBlocks)) {
+                frame.liveBlocks = new long[bitmapWords(this.maxBlocks)];
+            }
+            int bitmapOffset = HEADER_SIZE + this.maxBalls * BALL_SIZE;
+            while (true) {
+                long before = (long) LONGS.getAcquire(b, SEQUENCE_OFFSET);
+                if ((before & 1) != 0) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                frame.tick = b.getLong(TICK_OFFSET);
+                frame.ballCount = Math.min(Math.max(b.getInt(BALL_COUNT_OFFSET), 0), this.maxBalls);
+                for (int i = 0; i < frame.ballCount * 4; i++) {
+                    frame.balls[i] = b.getDouble(HEADER_SIZE + i * Double.BYTES);
+                }
+                frame.paddleX = b.getDouble(PADDLE_X_OFFSET);
+                frame.paddleY = b.getDouble(PADDLE_Y_OFFSET);
+                frame.score = b.getInt(SCORE_OFFSET);
+                frame.ballsLeft = b.getInt(BALLS_LEFT_OFFSET);
+                frame.blocksLeft = b.getInt(BLOCKS_LEFT_OFFSET);
+                frame.blockCount = this.maxBlocks;
+                for (int i = 0; i < bitmapWords(this.maxBlocks); i++) {
+                    frame.liveBlocks[i] = b.getLong(bitmapOffset + i * Long.BYTES);
+                }
+                // the copy has to be done before the sequence number is read again
+                VarHandle.loadLoadFence();
+                if ((long) LONGS.getOpaque(b, SEQUENCE_OFFSET) == before) {
+                    return frame.tick;
+                }
+            }
+        }
+    }
+}
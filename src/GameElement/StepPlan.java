@@ -0,0 +1,155 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import GameObjects.Collidable;
+import Geometry.RayHit;
+
+/**
+ * The StepPlan class is the first collision query of a ball's next step, made ahead of the step by
+ * {@link Ball#plan(StepPlan)}, possibly on another thread. Along with the answer it keeps the box the
+ * answer depends on: as long as nothing is added or moves into the box and the collidable it found is not
+ * removed or moved, the step can use the answer instead of asking the environment again.
+ */
+class StepPlan {
+    /**
+     * The ball has to be stepped without a plan.
+     */
+    static final int SERIAL = 0;
+    /**
+     * All geometry is further than the step, the ball moves without a query.
+     */
+    static final int FAR = 1;
+    /**
+     * The query was made, its answer is {@link #object()} and {@link #hit()}.
+     */
+    static final int QUERIED = 2;
+
+    private final QueryScratch scratch;
+    private final RayHit hit;
+    private int kind;
+    private int batchIndex;
+    private Collidable object;
+    private double minX;
+    private double minY;
+    private double maxX;
+    private double maxY;
+
+    /**
+     * Constructs an empty StepPlan, with a query scratch of its own.
+     */
+    StepPlan() {
+        this.scratch = new QueryScratch();
+        this.hit = new RayHit();
+    }
+
+    /**
+     * Records that the ball has to be stepped without a plan.
+     */
+    void serial() {
+        this.kind = SERIAL;
+        this.batchIndex = -1;
+        this.object = null;
+    }
+
+    /**
+     * Records the answer of the query, and the box it depends on.
+     *
+     * @param planKind {@link #FAR} or {@link #QUERIED}.
+     * @param found    the collidable that is hit, or {@code null}.
+     * @param x1       the left edge of the box.
+     * @param y1       the top edge of the box.
+     * @param x2       the right edge of the box.
+     * @param y2       the bottom edge of the box.
+     */
+    void set(int planKind, Collidable found, double x1, double y1, double x2, double y2) {
+        this.kind = planKind;
+        this.batchIndex = -1;
+        this.object = found;
+        this.minX = x1;
+        this.minY = y1;
+        this.maxX = x2;
+        this.maxY = y2;
+    }
+
+    /**
+     * Records that the query was added to a {@link CollisionBatch} instead of being made, and the box
+     * its answer depends on. The answer is filled in by {@link #resolve(CollisionBatch)} once the batch
+     * is queried.
+     *
+     * @param index the index of the trajectory in the batch.
+     * @param x1    the left edge of the box.
+     * @param y1    the top edge of the box.
+     * @param x2    the right edge of the box.
+     * @param y2    the bottom edge of the box.
+     */
+    void batched(int index, double x1, double y1, double x2, double y2) {
+        set(QUERIED, null, x1, y1, x2, y2);
+        this.batchIndex = index;
+    }
+
+    /**
+     * Takes the answer of a batched query from the batch it was added to, once the batch is queried.
+     * A plan whose query was made on its own is left as it is.
+     *
+     * @param batch the {@link CollisionBatch} the query was added to.
+     */
+    void resolve(CollisionBatch batch) {
+        if (this.batchIndex < 0) {
+            return;
+        }
+        this.object = batch.hitObject(this.batchIndex);
+        if (this.object != null) {
+            this.hit.set(batch.timeOfImpact(this.batchIndex), batch.hitSides(this.batchIndex));
+        }
+        this.batchIndex = -1;
+    }
+
+    /**
+     * Returns what the plan holds.
+     *
+     * @return {@link #SERIAL}, {@link #FAR} or {@link #QUERIED}.
+     */
+    int kind() {
+        return this.kind;
+    }
+
+    /**
+     * Returns the collidable the query found.
+     *
+     * @return the {@link Collidable}, or {@code null}.
+     */
+    Collidable object() {
+        return this.object;
+    }
+
+    /**
+     * Returns the hit the query found.
+     *
+     * @return the {@link RayHit}.
+     */
+    RayHit hit() {
+        return this.hit;
+    }
+
+    /**
+     * Returns the scratch the query is made with.
+     *
+     * @return the {@link QueryScratch}.
+     */
+    QueryScratch scratch() {
+        return this.scratch;
+    }
+
+    /**
+     * Returns true if the box of the plan overlaps the given box.
+     *
+     * @param x1 the left edge of the box.
+     * @param y1 the top edge of the box.
+     * @param x2 the right edge of the box.
+     * @param y2 the bottom edge of the box.
+     * @return whether the boxes overlap.
+     */
+    boolean overlaps(double x1, double y1, double x2, double y2) {
+        return x1 <= this.maxX && x2 >= this.minX && y1 <= this.maxY && y2 >= this.minY;
+    }
+}
@@ -0,0 +1,66 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import Geometry.Rectangle;
+
+/**
+ * The TileBlock class is the {@link Block} a {@link TileMap} reports when one of its tiles is hit.
+ * It behaves like any other block, except that removing it from the game clears its tile in the map.
+ */
+class TileBlock extends Block {
+    private final TileMap map;
+    private final int row;
+    private final int col;
+
+    /**
+     * Constructs a TileBlock for the given tile.
+     *
+     * @param map       the {@link TileMap} the tile belongs to.
+     * @param row       the row of the tile.
+     * @param col       the column of the tile.
+     * @param rectangle the rectangle of the tile.
+     * @param archetype the archetype of the tile's type.
+     */
+    TileBlock(TileMap map, int row, int col, Rectangle rectangle, BlockArchetype archetype) {
+        super(rectangle, archetype);
+        this.map = map;
+        this.row = row;
+        this.col = col;
+    }
+
+    /**
+     * Returns the map the tile belongs to.
+     *
+     * @return the {@link TileMap}.
+     */
+    TileMap map() {
+        return this.map;
+    }
+
+    /**
+     * Returns true if the tile of this block is still in its map.
+     *
+     * @return whether the tile was not cleared.
+     */
+    boolean isLive() {
+        return this.map.hasTile(this.row, this.col);
+    }
+
+    /**
+     * Removes the tile from its map. The map itself stays in the game.
+     *
+     * @param game the game to remove the block from.
+     */
+    @Override
+    public void removeFromGame(Game game) {
+        this.map.clearTile(this.row, this.col);
+    }
+
+    /**
+     * Does nothing: a tile is owned by its {@link TileMap}, which is added to the game as a whole (see
+     * {@link TileMap#addToGame()}), so the block of a tile is never added on its own.
+     */
+    @Override
+    public void addToGame() {
+    }
+}
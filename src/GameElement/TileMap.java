@@ -0,0 +1,470 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import GameObjects.Collidable;
+import GameObjects.CollisionInfo;
+import GameObjects.CompoundCollidable;
+import GameObjects.Hitter;
+import GameObjects.Sprite;
+import Geometry.Point;
+import Geometry.RayHit;
+import Geometry.Rectangle;
+import Geometry.SlabTest;
+import Listeners.HitListener;
+import Listeners.HitNotifier;
+import biuoop.DrawSurface;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The TileMap class stores a regular lattice of blocks as one 2D array of tile ids, and is registered in
+ * the {@link GameEnvironment} as a single collidable.
+ * <p>
+ * A trajectory query steps cell by cell along the ray (a DDA walk), so its cost depends on the number of
+ * cells the ray crosses and not on the number of tiles. The tile that is hit is reported as a
+ * {@link Block}, so the usual {@link Block#hit} behavior and the registered {@link HitListener}s
+ * (for example {@link Listeners.BlockRemover} and {@link Listeners.ScoreTrackingListener}) keep working.
+ * Removing that block from the game only clears its entry in the array.
+ * </p>
+ * <p>
+ * The tiles of a kind share one {@link BlockArchetype}, which is only rebuilt when a listener is added
+ * or removed. The block of a tile is made the first time the tile is reported and then kept until the
+ * tile is cleared, so queries do not allocate, and a tile is always reported as the same object, which
+ * the {@link ImpactScheduler} and the {@link ParallelBallStepper} rely on when they hold on to a hit.
+ * </p>
+ */
+public class TileMap implements CompoundCollidable, Sprite, HitNotifier {
+    private static final int EMPTY = 0;
+
+    private final double x;
+    private final double y;
+    private final double tileWidth;
+    private final double tileHeight;
+    private final int rows;
+    private final int cols;
+    private final int[][] tiles;
+    private final List<Color> colors;
+    private final List<BlockArchetype> archetypes;
+    private final List<HitListener> hitListeners;
+    private final AtomicReferenceArray<TileBlock> blocks;
+    private final Rectangle bounds;
+    private final Game game;
+    private int liveTiles;
+
+    /**
+     * Constructs an empty TileMap.
+     *
+     * @param upperLeft  the upper-left corner of the map.
+     * @param rows       the number of rows of tiles.
+     * @param cols       the number of columns of tiles.
+     * @param tileWidth  the width of a single tile.
+     * @param tileHeight the height of a single tile.
+     * @param game       the game the map belongs to.
+     */
+    public TileMap(Point upperLeft, int rows, int cols, double tileWidth, double tileHeight, Game game) {
+        this.x = upperLeft.getX();
+        this.y = upperLeft.getY();
+        this.rows = rows;
+        this.cols = cols;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.tiles = new int[rows][cols];
+        this.colors = new ArrayList<>();
+        this.archetypes = new ArrayList<>();
+        this.hitListeners = new ArrayList<>();
+        // queries run on several threads when balls are stepped in parallel, blocks are made atomically
+        this.blocks = new AtomicReferenceArray<>(rows * cols);
+        this.bounds = new Rectangle(upperLeft, cols * tileWidth, rows * tileHeight);
+        this.game = game;
+    }
+
+    /**
+     * Registers a new kind of tile with the given color.
+     *
+     * @param color the color of the tiles of this kind.
+     * @return the id of the new kind of tile, to be used with {@link #setTile}.
+     */
+    public int addTileType(Color color) {
+        this.colors.add(color);
+        this.archetypes.add(archetypeOf(color));
+        return this.colors.size();
+    }
+
+    /**
+     * Builds the archetype of a kind of tile, with the listeners of the map.
+     *
+     * @param color the color of the tiles of the kind.
+     * @return the {@link BlockArchetype}.
+     */
+    private BlockArchetype archetypeOf(Color color) {
+        return new BlockArchetype(color, BlockArchetype.DEFAULT_SCORE, this.game,
+                this.hitListeners.toArray(new HitListener[0]));
+    }
+
+    /**
+     * Builds the archetypes of every kind of tile again after the listeners changed, and gives the blocks
+     * already made their kind's new archetype.
+     */
+    private void rebuildArchetypes() {
+        for (int i = 0; i < this.colors.size(); i++) {
+            this.archetypes.set(i, archetypeOf(this.colors.get(i)));
+        }
+        for (int i = 0; i < this.blocks.length(); i++) {
+            TileBlock block = this.blocks.get(i);
+            if (block != null) {
+                block.setArchetype(this.archetypes.get(this.tiles[i / this.cols][i % this.cols] - 1));
+            }
+        }
+    }
+
+    /**
+     * Places a tile of the given kind in the given cell.
+     *
+     * @param row the row of the cell.
+     * @param col the column of the cell.
+     * @param id  the id of the kind of tile, as returned by {@link #addTileType}.
+     */
+    public void setTile(int row, int col, int id) {
+        if (id < 1 || id > this.colors.size()) {
+            throw new IllegalArgumentException("unknown tile id " + id);
+        }
+        if (this.tiles[row][col] == EMPTY) {
+            this.liveTiles++;
+        }
+        this.tiles[row][col] = id;
+        TileBlock block = this.blocks.get(row * this.cols + col);
+        if (block != null) {
+            block.setArchetype(this.archetypes.get(id - 1));
+        }
+    }
+
+    /**
+     * Removes the tile in the given cell, if there is one.
+     *
+     * @param row the row of the cell.
+     * @param col the column of the cell.
+     */
+    public void clearTile(int row, int col) {
+        if (this.tiles[row][col] != EMPTY) {
+            this.tiles[row][col] = EMPTY;
+            this.liveTiles--;
+            this.blocks.set(row * this.cols + col, null);
+        }
+    }
+
+    /**
+     * Returns true if there is a tile in the given cell.
+     *
+     * @param row the row of the cell.
+     * @param col the column of the cell.
+     * @return whether the cell holds a tile.
+     */
+    public boolean hasTile(int row, int col) {
+        return this.tiles[row][col] != EMPTY;
+    }
+
+    /**
+     * Returns the number of tiles that are still on the map.
+     *
+     * @return the number of live tiles.
+     */
+    public int getLiveTiles() {
+        return this.liveTiles;
+    }
+
+    /**
+     * Returns the rectangle bounding the whole map.
+     *
+     * @return the bounding {@link Rectangle}.
+     */
+    @Override
+    public Rectangle getCollisionRectangle() {
+        return this.bounds;
+    }
+
+    /**
+     * Finds the closest tile hit by the given trajectory, walking the cells the trajectory crosses in order.
+     *
+     * A circle with a radius is instead tested against every tile in the box its sweep covers.
+     *
+     * @param x1     the x value of the start of the trajectory.
+     * @param y1     the y value of the start of the trajectory.
+     * @param dx     the change in x along the trajectory.
+     * @param dy     the change in y along the trajectory.
+     * @param radius the radius of the moving circle, 0 for a point.
+     * @param out    the {@link RayHit} the parametric distance, hit sides and normal are written to.
+     * @return the {@link Block} of the hit tile, or {@code null} if no tile is hit.
+     */
+    @Override
+    public Collidable closestCollision(double x1, double y1, double dx, double dy, double radius, RayHit out) {
+        if (radius > 0) {
+            return sweepCircle(x1, y1, dx, dy, radius, out);
+        }
+        // clip the trajectory to the map bounds
+        double tEnter = 0;
+        double tExit = 1;
+        double maxX = this.x + this.cols * this.tileWidth;
+        double maxY = this.y + this.rows * this.tileHeight;
+        if (dx == 0) {
+            if (x1 < this.x || x1 > maxX) {
+                return null;
+            }
+        } else {
+            double t0 = (this.x - x1) / dx;
+            double t1 = (maxX - x1) / dx;
+            tEnter = Math.max(tEnter, Math.min(t0, t1));
+            tExit = Math.min(tExit, Math.max(t0, t1));
+        }
+        if (dy == 0) {
+            if (y1 < this.y || y1 > maxY) {
+                return null;
+            }
+        } else {
+            double t0 = (this.y - y1) / dy;
+            double t1 = (maxY - y1) / dy;
+            tEnter = Math.max(tEnter, Math.min(t0, t1));
+            tExit = Math.min(tExit, Math.max(t0, t1));
+        }
+        if (tEnter > tExit) {
+            return null;
+        }
+
+        int col = clamp((int) Math.floor((x1 + tEnter * dx - this.x) / this.tileWidth), this.cols);
+        int row = clamp((int) Math.floor((y1 + tEnter * dy - this.y) / this.tileHeight), this.rows);
+        int stepC = dx > 0 ? 1 : (dx < 0 ? -1 : 0);
+        int stepR = dy > 0 ? 1 : (dy < 0 ? -1 : 0);
+        double nextX = stepC == 0 ? Double.POSITIVE_INFINITY
+                : (this.x + (col + (stepC > 0 ? 1 : 0)) * this.tileWidth - x1) / dx;
+        double nextY = stepR == 0 ? Double.POSITIVE_INFINITY
+                : (this.y + (row + (stepR > 0 ? 1 : 0)) * this.tileHeight - y1) / dy;
+        double deltaX = stepC == 0 ? Double.POSITIVE_INFINITY : this.tileWidth / Math.abs(dx);
+        double deltaY = stepR == 0 ? Double.POSITIVE_INFINITY : this.tileHeight / Math.abs(dy);
+
+        while (true) {
+            if (hitsTile(row, col, x1, y1, dx, dy, out)) {
+                return tileBlock(row, col);
+            }
+            double next = Math.min(nextX, nextY);
+            if (next > tExit) {
+                return null;
+            }
+            if (nextX < nextY) {
+                col += stepC;
+                nextX += deltaX;
+            } else if (nextY < nextX) {
+                row += stepR;
+                nextY += deltaY;
+            } else {
+                // the trajectory passes exactly through a corner, both neighbours may be hit first
+                boolean first = hitsTile(row, col + stepC, x1, y1, dx, dy, out);
+                double firstT = out.getT();
+                int firstSides = out.getSides();
+                if (hitsTile(row + stepR, col, x1, y1, dx, dy, out) && (!first || out.getT() < firstT)) {
+                    return tileBlock(row + stepR, col);
+                }
+                if (first) {
+                    out.set(firstT, firstSides);
+                    return tileBlock(row, col + stepC);
+                }
+                col += stepC;
+                row += stepR;
+                nextX += deltaX;
+                nextY += deltaY;
+            }
+            if (col < 0 || row < 0 || col >= this.cols || row >= this.rows) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Finds the first tile touched by a circle moving from (x1, y1) by (dx, dy), testing every
+     * live tile in the box covered by the sweep.
+     *
+     * @param x1     the x value of the start of the sweep.
+     * @param y1     the y value of the start of the sweep.
+     * @param dx     the change in x along the sweep.
+     * @param dy     the change in y along the sweep.
+     * @param radius the radius of the circle.
+     * @param out    the {@link RayHit} the result is written to.
+     * @return the {@link Block} of the first tile touched, or {@code null} if none is.
+     */
+    private Collidable sweepCircle(double x1, double y1, double dx, double dy, double radius, RayHit out) {
+        int minCol = Math.max(0, (int) Math.floor((Math.min(x1, x1 + dx) - radius - this.x) / this.tileWidth));
+        int maxCol = Math.min(this.cols - 1,
+                (int) Math.floor((Math.max(x1, x1 + dx) + radius - this.x) / this.tileWidth));
+        int minRow = Math.max(0, (int) Math.floor((Math.min(y1, y1 + dy) - radius - this.y) / this.tileHeight));
+        int maxRow = Math.min(this.rows - 1,
+                (int) Math.floor((Math.max(y1, y1 + dy) + radius - this.y) / this.tileHeight));
+        int hitRow = -1;
+        int hitCol = -1;
+        double hitT = Double.MAX_VALUE;
+        int hitSides = 0;
+        double hitNormalX = 0;
+        double hitNormalY = 0;
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                if (this.tiles[row][col] == EMPTY) {
+                    continue;
+                }
+                double tileX = this.x + col * this.tileWidth;
+                double tileY = this.y + row * this.tileHeight;
+                if (SlabTest.sweepCircle(x1, y1, dx, dy, radius, tileX, tileY,
+                        tileX + this.tileWidth, tileY + this.tileHeight, out) && out.getT() < hitT) {
+                    hitRow = row;
+                    hitCol = col;
+                    hitT = out.getT();
+                    hitSides = out.getSides();
+                    hitNormalX = out.getNormalX();
+                    hitNormalY = out.getNormalY();
+                }
+            }
+        }
+        if (hitRow < 0) {
+            return null;
+        }
+        out.set(hitT, hitSides, hitNormalX, hitNormalY);
+        return tileBlock(hitRow, hitCol);
+    }
+
+    /**
+     * Intersects the trajectory with a single tile.
+     *
+     * @param row the row of the tile.
+     * @param col the column of the tile.
+     * @param x1  the x value of the start of the trajectory.
+     * @param y1  the y value of the start of the trajectory.
+     * @param dx  the change in x along the trajectory.
+     * @param dy  the change in y along the trajectory.
+     * @param out the {@link RayHit} the result is written to.
+     * @return true if the cell holds a tile and the trajectory hits it.
+     */
+    private boolean hitsTile(int row, int col, double x1, double y1, double dx, double dy, RayHit out) {
+        if (row < 0 || col < 0 || row >= this.rows || col >= this.cols || this.tiles[row][col] == EMPTY) {
+            return false;
+        }
+        double tileX = this.x + col * this.tileWidth;
+        double tileY = this.y + row * this.tileHeight;
+        return SlabTest.intersect(x1, y1, dx, dy, tileX, tileY, tileX + this.tileWidth, tileY + this.tileHeight, out);
+    }
+
+    /**
+     * Returns the block representing the given tile, making it the first time the tile is asked for.
+     * If two threads make it at once, both get the one that was stored first.
+     *
+     * @param row the row of the tile.
+     * @param col the column of the tile.
+     * @return the {@link TileBlock} of the tile.
+     */
+    private TileBlock tileBlock(int row, int col) {
+        int index = row * this.cols + col;
+        TileBlock block = this.blocks.get(index);
+        if (block == null) {
+            Rectangle rect = new Rectangle(new Point(this.x + col * this.tileWidth, this.y + row * this.tileHeight),
+                    this.tileWidth, this.tileHeight);
+            TileBlock made = new TileBlock(this, row, col, rect, this.archetypes.get(this.tiles[row][col] - 1));
+            block = this.blocks.compareAndExchange(index, null, made);
+            if (block == null) {
+                block = made;
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Clamps a cell index into the range [0, size).
+     *
+     * @param value the index.
+     * @param size  the number of cells.
+     * @return the clamped index.
+     */
+    private static int clamp(int value, int size) {
+        return Math.max(0, Math.min(size - 1, value));
+    }
+
+    /**
+     * Returns true if the given collidable is the block of a tile of this map that was not cleared.
+     *
+     * @param part a collidable returned by {@link #closestCollision}.
+     * @return whether the tile still exists.
+     */
+    @Override
+    public boolean containsPart(Collidable part) {
+        return part instanceof TileBlock && ((TileBlock) part).map() == this && ((TileBlock) part).isLive();
+    }
+
+    /**
+     * The map itself is never hit, only its tiles are (see {@link #closestCollision}).
+     *
+     * @param hitter          the ball that hit the map.
+     * @param collision       the collision.
+     * @param currentVelocity the velocity of the ball before the collision.
+     * @return the unchanged velocity.
+     */
+    @Override
+    public Velocity hit(Hitter hitter, CollisionInfo collision, Velocity currentVelocity) {
+        return currentVelocity;
+    }
+
+    /**
+     * Draws every live tile on the given {@link DrawSurface}, the same way a {@link Block} is drawn.
+     *
+     * @param d the {@link DrawSurface} on which the tiles are drawn.
+     */
+    @Override
+    public void drawOn(DrawSurface d) {
+        for (int row = 0; row < this.rows; row++) {
+            for (int col = 0; col < this.cols; col++) {
+                int id = this.tiles[row][col];
+                if (id == EMPTY) {
+                    continue;
+                }
+                int tileX = (int) (this.x + col * this.tileWidth);
+                int tileY = (int) (this.y + row * this.tileHeight);
+                d.setColor(this.colors.get(id - 1));
+                d.fillRectangle(tileX, tileY, (int) this.tileWidth, (int) this.tileHeight);
+                d.setColor(Color.black);
+                d.drawRectangle(tileX, tileY, (int) this.tileWidth, (int) this.tileHeight);
+            }
+        }
+    }
+
+    /**
+     * Notifies the map that time has passed. Tiles do not change over time.
+     */
+    @Override
+    public void timePassed() {
+    }
+
+    /**
+     * Add the map to the game as both a sprite and a collidable object.
+     */
+    public void addToGame() {
+        this.game.addCollidable(this);
+        this.game.addSprite(this);
+    }
+
+    /**
+     * Add hl as a listener to every tile of the map.
+     *
+     * @param hl the listener to be registered.
+     */
+    @Override
+    public void addHitListener(HitListener hl) {
+        this.hitListeners.add(hl);
+        rebuildArchetypes();
+    }
+
+    /**
+     * Remove hl from the listeners of the tiles of the map.
+     *
+     * @param hl the listener to be removed.
+     */
+    @Override
+    public void removeHitListener(HitListener hl) {
+        this.hitListeners.remove(hl);
+        rebuildArchetypes();
+    }
+}
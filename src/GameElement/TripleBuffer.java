@@ -0,0 +1,87 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The TripleBuffer class hands the newest of a stream of values from one writer thread to one reader
+ * thread, without locks and without copying.
+ * <p>
+ * It holds three values. The writer fills its own value and {@link #publish()}es it, which swaps it with
+ * the shared middle value; the reader {@link #acquire()}s by swapping its own value with the middle one
+ * when a newer one was published. Each swap is a single atomic exchange, so neither side ever waits for
+ * the other, the writer never touches the value the reader holds, and a slow reader only skips values.
+ * The three values are reused forever, nothing is allocated to hand one over.
+ * </p>
+ *
+ * @param <T> the type of the values.
+ */
+public class TripleBuffer<T> {
+    // the middle index is kept in the low bits, the bit above them marks a value the reader has not taken
+    private static final int INDEX = 3;
+    private static final int FRESH = 4;
+
+    private final Object[] values;
+    private final AtomicInteger middle;
+    private int back;
+    private int front;
+
+    /**
+     * Constructs a TripleBuffer of three distinct values.
+     *
+     * @param first  the value the writer fills first.
+     * @param second the value in the middle.
+     * @param third  the value the reader holds before anything is published.
+     */
+    public TripleBuffer(T first, T second, T third) {
+        if (first == second || second == third || first == third) {
+            throw new IllegalArgumentException("the three values must be distinct");
+        }
+        this.values = new Object[] {first, second, third};
+        this.back = 0;
+        this.middle = new AtomicInteger(1);
+        this.front = 2;
+    }
+
+    /**
+     * Returns the value the writer fills next. Only the writer thread may call it.
+     *
+     * @return the writer's value.
+     */
+    @SuppressWarnings("unchecked")
+    public T writable() {
+        return (T) this.values[this.back];
+    }
+
+    /**
+     * Publishes the writer's value, and gives the writer another one to fill. Only the writer thread may
+     * call it.
+     */
+    public void publish() {
+        this.back = this.middle.getAndSet(this.back | FRESH) & INDEX;
+    }
+
+    /**
+     * Takes the newest published value, if there is one the reader has not taken yet. Only the reader
+     * thread may call it.
+     *
+     * @return true if a new value was taken.
+     */
+    public boolean acquire() {
+        if ((this.middle.get() & FRESH) == 0) {
+            return false;
+        }
+        this.front = this.middle.getAndSet(this.front) & INDEX;
+        return true;
+    }
+
+    /**
+     * Returns the value the reader holds, the newest one it took. Only the reader thread may call it.
+     *
+     * @return the reader's value.
+     */
+    @SuppressWarnings("unchecked")
+    public T readable() {
+        return (T) this.values[this.front];
+    }
+}
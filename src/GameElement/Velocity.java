@@ -1,6 +1,7 @@
 // Ori Kenigsbuch
 package GameElement;
 import Geometry.Point;
+import Geometry.Vec2;
 import java.util.Random;
 
 /**
@@ -75,6 +76,22 @@ public class Velocity {
         return new Velocity(dx, dy);
     }
 
+    /**
+     * Creates a GameElement.Velocity object from a given angle and speed like
+     * {@link #fromAngleAndSpeed(double, double)}, with {@link StrictMath}, whose results are the same bits on
+     * every JVM and platform. The fixed-point mode (see {@link GameEnvironment#setFixedPoint}) uses it so a
+     * run can be replayed anywhere.
+     *
+     * @param angle The angle of the velocity vector in degrees.
+     * @param speed The magnitude of the velocity vector.
+     * @return A GameElement.Velocity object corresponding to the given angle and speed.
+     */
+    public static Velocity fromAngleAndSpeedStrict(double angle, double speed) {
+        double dx = StrictMath.sin(StrictMath.toRadians(angle)) * speed;
+        double dy = StrictMath.cos(StrictMath.toRadians(angle)) * -speed;
+        return new Velocity(dx, dy);
+    }
+
     /**
      * Generates a random velocity based on a given size.
      * The speed is lower for larger sizes to simulate slower movement.
@@ -152,5 +169,13 @@ public class Velocity {
         }
         return new Point(p.getX() + dx, p.getY() + dy);
     }
-}
 
+    /**
+     * Applies the velocity to a {@link Vec2} position in place, without allocating.
+     *
+     * @param p the position, which is moved by (dx, dy).
+     */
+    public void applyTo(Vec2 p) {
+        p.addTo(this.dx, this.dy);
+    }
+}
@@ -1,9 +1,7 @@
 // Ori Kenigsbuch
 package GameObjects;
 
-import GameElement.Ball;
 import GameElement.Velocity;
-import Geometry.Point;
 import Geometry.Rectangle;
 
 
@@ -29,13 +27,16 @@ public interface Collidable {
 //    GameElement.Block getCollisionBlock();
 
     /**
-     * Notifies the object of a collision at a specific point with a given velocity.
+     * Notifies the object of a collision described by the given {@link CollisionInfo}.
      * Calculates and returns the new velocity of the object after the collision.
+     * The collision info already holds the hit side and normal, so implementations
+     * do not need to work them out again from the collision point.
      *
-     * @param collisionPoint   the point at which the collision occurred.
+     * @param hitter           the ball that hit the object.
+     * @param collision        the collision, as found by the game environment.
      * @param currentVelocity  the velocity of the object before the collision.
      * @return the new velocity of the object after the collision.
      */
-    Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity);
+    Velocity hit(Hitter hitter, CollisionInfo collision, Velocity currentVelocity);
 
 }
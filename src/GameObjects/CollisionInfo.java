@@ -2,28 +2,97 @@
 package GameObjects;
 
 import Geometry.Point;
+import Geometry.RayHit;
 
 /**
  * The GameObjects.CollisionInfo class provides information about a collision event.
- * It contains the point at which the collision occurs and the collidable
- * object involved in the collision.
+ * It contains the point at which the collision occurs, the collidable
+ * object involved in the collision, the time of impact along the trajectory,
+ * and the side of the collidable that was hit together with its normal.
  */
 public class CollisionInfo {
 
+    // made from collisionX and collisionY when it is first asked for, if it was not given
     private Point collisionPoint;
+    private double collisionX;
+    private double collisionY;
     private Collidable collidable;
+    private double timeOfImpact;
+    private int hitSides;
+    private double normalX;
+    private double normalY;
 
     /**
-     * Constructs a GameObjects.CollisionInfo object with the specified collision point and collidable object.
+     * Constructs a GameObjects.CollisionInfo object with the specified collision point, collidable object,
+     * time of impact and hit sides. The hit normal is derived from the hit sides.
      *
      * @param collisionPoint the {@link Point} where the collision occurs.
      * @param collidable     the {@link Collidable} object involved in the collision.
+     * @param timeOfImpact   the parametric time of impact along the trajectory, between 0 (its start)
+     *                       and 1 (its end).
+     * @param hitSides       the sides of the collidable that were hit, a combination of {@link RayHit#TOP},
+     *                       {@link RayHit#BOTTOM}, {@link RayHit#LEFT} and {@link RayHit#RIGHT}.
      */
-    public CollisionInfo(Point collisionPoint, Collidable collidable) {
+    public CollisionInfo(Point collisionPoint, Collidable collidable, double timeOfImpact, int hitSides) {
         this.collisionPoint = collisionPoint;
+        this.collisionX = collisionPoint.getX();
+        this.collisionY = collisionPoint.getY();
         this.collidable = collidable;
+        this.timeOfImpact = timeOfImpact;
+        this.hitSides = hitSides;
+        double nx = ((hitSides & RayHit.RIGHT) != 0 ? 1 : 0) - ((hitSides & RayHit.LEFT) != 0 ? 1 : 0);
+        double ny = ((hitSides & RayHit.BOTTOM) != 0 ? 1 : 0) - ((hitSides & RayHit.TOP) != 0 ? 1 : 0);
+        double length = Math.sqrt(nx * nx + ny * ny);
+        if (length > 0) {
+            this.normalX = nx / length;
+            this.normalY = ny / length;
+        }
     }
 
+    /**
+     * Constructs a GameObjects.CollisionInfo object from the result of a ray or swept-circle test.
+     *
+     * @param collisionPoint the {@link Point} where the collision occurs.
+     * @param collidable     the {@link Collidable} object involved in the collision.
+     * @param hit            the {@link RayHit} holding the time of impact, hit sides and hit normal.
+     */
+    public CollisionInfo(Point collisionPoint, Collidable collidable, RayHit hit) {
+        this.collisionPoint = collisionPoint;
+        this.collisionX = collisionPoint.getX();
+        this.collisionY = collisionPoint.getY();
+        this.collidable = collidable;
+        this.timeOfImpact = hit.getT();
+        this.hitSides = hit.getSides();
+        this.normalX = hit.getNormalX();
+        this.normalY = hit.getNormalY();
+    }
+
+    /**
+     * Constructs an empty GameObjects.CollisionInfo, to be filled with {@link #set} by an object that reuses
+     * one for all of its collisions.
+     */
+    public CollisionInfo() {
+    }
+
+    /**
+     * Replaces the collision this object describes, without allocating. Only an object that owns this
+     * CollisionInfo may reuse it, and only once the collidable it was handed to has returned.
+     *
+     * @param x          the x value of the point where the collision occurs.
+     * @param y          the y value of the point where the collision occurs.
+     * @param collidable the {@link Collidable} object involved in the collision.
+     * @param hit        the {@link RayHit} holding the time of impact, hit sides and hit normal.
+     */
+    public void set(double x, double y, Collidable collidable, RayHit hit) {
+        this.collisionPoint = null;
+        this.collisionX = x;
+        this.collisionY = y;
+        this.collidable = collidable;
+        this.timeOfImpact = hit.getT();
+        this.hitSides = hit.getSides();
+        this.normalX = hit.getNormalX();
+        this.normalY = hit.getNormalY();
+    }
 
     /**
      * Retrieves the point at which the collision occurs.
@@ -31,7 +100,28 @@ public class CollisionInfo {
      * @return the {@link Point} of the collision.
      */
     public Point collisionPoint() {
-        return collisionPoint;
+        if (this.collisionPoint == null) {
+            this.collisionPoint = new Point(this.collisionX, this.collisionY);
+        }
+        return this.collisionPoint;
+    }
+
+    /**
+     * Retrieves the x value of the point at which the collision occurs, without making a {@link Point}.
+     *
+     * @return the x value of the collision point.
+     */
+    public double collisionX() {
+        return this.collisionX;
+    }
+
+    /**
+     * Retrieves the y value of the point at which the collision occurs, without making a {@link Point}.
+     *
+     * @return the y value of the collision point.
+     */
+    public double collisionY() {
+        return this.collisionY;
     }
 
     /**
@@ -43,4 +133,41 @@ public class CollisionInfo {
         return collidable;
     }
 
+    /**
+     * Retrieves the parametric time of impact along the trajectory, between 0 (its start) and 1 (its end).
+     *
+     * @return the time of impact.
+     */
+    public double timeOfImpact() {
+        return timeOfImpact;
+    }
+
+    /**
+     * Retrieves the sides of the collidable that were hit. Hitting a corner exactly reports both sides.
+     *
+     * @return a combination of {@link RayHit#TOP}, {@link RayHit#BOTTOM}, {@link RayHit#LEFT}
+     * and {@link RayHit#RIGHT}.
+     */
+    public int hitSides() {
+        return hitSides;
+    }
+
+    /**
+     * Retrieves the x component of the unit normal of the surface that was hit.
+     *
+     * @return the x component of the hit normal.
+     */
+    public double normalX() {
+        return normalX;
+    }
+
+    /**
+     * Retrieves the y component of the unit normal of the surface that was hit.
+     *
+     * @return the y component of the hit normal.
+     */
+    public double normalY() {
+        return normalY;
+    }
+
 }
@@ -0,0 +1,35 @@
+// Ori Kenigsbuch
+package GameObjects;
+
+import Geometry.RayHit;
+
+/**
+ * The GameObjects.CompoundCollidable interface represents a collidable that is made of many smaller
+ * collidable parts, such as a tile map. Its collision rectangle only bounds all the parts, so instead of
+ * intersecting the trajectory with that rectangle the environment asks the object itself for the
+ * closest collision.
+ */
+public interface CompoundCollidable extends Collidable {
+
+    /**
+     * Finds the closest collision of a circle moving from (x, y) to (x + dx, y + dy) with one of the parts
+     * of this object.
+     *
+     * @param x      the x value of the start of the trajectory.
+     * @param y      the y value of the start of the trajectory.
+     * @param dx     the change in x along the trajectory.
+     * @param dy     the change in y along the trajectory.
+     * @param radius the radius of the circle, 0 for a point.
+     * @param out    the {@link RayHit} the parametric distance, hit sides and normal are written to.
+     * @return the part that is hit, or {@code null} if the trajectory does not hit any part.
+     */
+    Collidable closestCollision(double x, double y, double dx, double dy, double radius, RayHit out);
+
+    /**
+     * Returns true if the given collidable is a part of this object that can still be hit.
+     *
+     * @param part a collidable returned by {@link #closestCollision}.
+     * @return whether the part still exists.
+     */
+    boolean containsPart(Collidable part);
+}
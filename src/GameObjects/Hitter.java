@@ -0,0 +1,34 @@
+// Ori Kenigsbuch
+package GameObjects;
+
+import GameElement.Game;
+import java.awt.Color;
+
+/**
+ * The GameObjects.Hitter interface represents a ball as collidables and hit listeners see it when it hits
+ * them: they can read and change its color, and remove it from the game. A {@link GameElement.Ball} is a
+ * hitter, and so is a ball of a {@link GameElement.BallSystem}, which is only a slot in its arrays.
+ */
+public interface Hitter {
+
+    /**
+     * Returns the color of the ball.
+     *
+     * @return the color.
+     */
+    Color getColor();
+
+    /**
+     * Changes the color of the ball.
+     *
+     * @param color the new color.
+     */
+    void setColor(Color color);
+
+    /**
+     * Removes the ball from the game.
+     *
+     * @param game the game to remove the ball from.
+     */
+    void removeFromGame(Game game);
+}
@@ -0,0 +1,24 @@
+// Ori Kenigsbuch
+package GameObjects;
+
+/**
+ * The GameObjects.MovingCollidable interface represents a collidable whose rectangle moves during the game,
+ * such as the paddle. Continuous collision detection sweeps balls against it in its own frame of reference,
+ * so a fast-moving collidable cannot jump over a ball within one frame.
+ */
+public interface MovingCollidable extends Collidable {
+
+    /**
+     * Returns how far the collidable moved along the x-axis during the last frame.
+     *
+     * @return the change in x of the collision rectangle per frame.
+     */
+    double getDeltaX();
+
+    /**
+     * Returns how far the collidable moved along the y-axis during the last frame.
+     *
+     * @return the change in y of the collision rectangle per frame.
+     */
+    double getDeltaY();
+}
@@ -16,12 +16,14 @@ import java.util.List;
  */
  public class SpriteCollection {
     private List<Sprite> spriteList; // List of sprites in the collection
+    private List<Sprite> spritesCopy; // reused every frame, sprites may remove themselves while notified
 
     /**
      * Constructs an empty {@code GameObjects.SpriteCollection}.
      */
     public SpriteCollection() {
         this.spriteList = new ArrayList<>();
+        this.spritesCopy = new ArrayList<>();
     }
 
     /**
@@ -40,10 +42,14 @@ import java.util.List;
      * their {@code timePassed} method.
      */
     public void notifyAllTimePassed() {
-        List<Sprite> spritesCopy = new ArrayList<>(spriteList);
-        for (Sprite sprite : spritesCopy) {
-            sprite.timePassed();
+        // copied with an index loop into a reused list, so a frame does not allocate
+        for (int i = 0; i < this.spriteList.size(); i++) {
+            this.spritesCopy.add(this.spriteList.get(i));
         }
+        for (int i = 0; i < this.spritesCopy.size(); i++) {
+            this.spritesCopy.get(i).timePassed();
+        }
+        this.spritesCopy.clear();
     }
 
     /**
@@ -52,8 +58,8 @@ import java.util.List;
      * @param d the {@code DrawSurface} on which the sprites will be drawn
      */
     public void drawAllOn(DrawSurface d) {
-        for (Sprite sprite : spriteList) {
-            sprite.drawOn(d);
+        for (int i = 0; i < this.spriteList.size(); i++) {
+            this.spriteList.get(i).drawOn(d);
         }
     }
 
@@ -230,9 +230,11 @@ public class Line {
         }
         double intersectionDistance = intersections.get(0).distance(this.start);
         Point closest = intersections.get(0);
-        for (Point point : intersections) {
-            if (point.distance(this.start) < intersectionDistance) {
-                intersectionDistance = point.distance(this.start);
+        for (int i = 1; i < intersections.size(); i++) {
+            Point point = intersections.get(i);
+            double distance = point.distance(this.start);
+            if (distance < intersectionDistance) {
+                intersectionDistance = distance;
                 closest = point;
             }
         }
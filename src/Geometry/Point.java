@@ -77,4 +77,15 @@ public class Point {
         return this.y;
     }
 
+    /**
+     * Moves the point in place. Only a {@link Rectangle} does this, to the corner it owns.
+     *
+     * @param newX the new x-coordinate.
+     * @param newY the new y-coordinate.
+     */
+    void set(double newX, double newY) {
+        this.x = newX;
+        this.y = newY;
+    }
+
 }
@@ -0,0 +1,125 @@
+// Ori Kenigsbuch
+package Geometry;
+
+/**
+ * The Geometry.RayHit class holds the result of a ray-versus-rectangle test: the parametric distance
+ * along the ray at which the rectangle's boundary is hit, which sides of the rectangle were hit,
+ * and the normal of the surface at the hit.
+ * <p>
+ * A RayHit is mutable so that one instance can be reused for every query, keeping the collision
+ * hot path free of heap allocations.
+ * </p>
+ */
+public class RayHit {
+    /**
+     * The top side of the rectangle (smallest y).
+     */
+    public static final int TOP = 1;
+    /**
+     * The bottom side of the rectangle (largest y).
+     */
+    public static final int BOTTOM = 2;
+    /**
+     * The left side of the rectangle (smallest x).
+     */
+    public static final int LEFT = 4;
+    /**
+     * The right side of the rectangle (largest x).
+     */
+    public static final int RIGHT = 8;
+
+    private double t;
+    private int sides;
+    private double normalX;
+    private double normalY;
+
+    /**
+     * Constructs an empty RayHit.
+     */
+    public RayHit() {
+        this.t = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Sets the result of a test. The normal is the unit normal of the hit sides.
+     *
+     * @param time     the parametric distance along the ray, between 0 (start) and 1 (end).
+     * @param hitSides the sides that were hit, a combination of {@link #TOP}, {@link #BOTTOM},
+     *                 {@link #LEFT} and {@link #RIGHT}.
+     */
+    public void set(double time, int hitSides) {
+        double nx = ((hitSides & RIGHT) != 0 ? 1 : 0) - ((hitSides & LEFT) != 0 ? 1 : 0);
+        double ny = ((hitSides & BOTTOM) != 0 ? 1 : 0) - ((hitSides & TOP) != 0 ? 1 : 0);
+        double length = Math.sqrt(nx * nx + ny * ny);
+        if (length > 0) {
+            nx /= length;
+            ny /= length;
+        }
+        set(time, hitSides, nx, ny);
+    }
+
+    /**
+     * Sets the result of a test with an explicit normal, for hits that are not on a flat side
+     * (such as a circle hitting a corner).
+     *
+     * @param time     the parametric distance along the ray, between 0 (start) and 1 (end).
+     * @param hitSides the sides that were hit.
+     * @param nx       the x component of the unit hit normal.
+     * @param ny       the y component of the unit hit normal.
+     */
+    public void set(double time, int hitSides, double nx, double ny) {
+        this.t = time;
+        this.sides = hitSides;
+        this.normalX = nx;
+        this.normalY = ny;
+    }
+
+    /**
+     * Copies the result of another test into this one.
+     *
+     * @param other the {@link RayHit} to copy.
+     */
+    public void set(RayHit other) {
+        this.t = other.t;
+        this.sides = other.sides;
+        this.normalX = other.normalX;
+        this.normalY = other.normalY;
+    }
+
+    /**
+     * Returns the parametric distance along the ray at which the rectangle is hit.
+     * 0 is the start of the ray and 1 its end.
+     *
+     * @return the parametric distance of the hit.
+     */
+    public double getT() {
+        return this.t;
+    }
+
+    /**
+     * Returns the sides of the rectangle that were hit. Hitting a corner exactly reports both sides.
+     *
+     * @return a combination of {@link #TOP}, {@link #BOTTOM}, {@link #LEFT} and {@link #RIGHT}.
+     */
+    public int getSides() {
+        return this.sides;
+    }
+
+    /**
+     * Returns the x component of the unit normal of the surface that was hit.
+     *
+     * @return the x component of the hit normal.
+     */
+    public double getNormalX() {
+        return this.normalX;
+    }
+
+    /**
+     * Returns the y component of the unit normal of the surface that was hit.
+     *
+     * @return the y component of the hit normal.
+     */
+    public double getNormalY() {
+        return this.normalY;
+    }
+}
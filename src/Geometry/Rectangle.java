@@ -16,6 +16,8 @@ import java.util.List;
     private Point upperLeft;
     private double width;
     private double height;
+    // true once the rectangle holds a corner of its own, which setUpperLeft(x, y) moves in place
+    private boolean ownsUpperLeft;
 
 
     /**
@@ -92,6 +94,25 @@ import java.util.List;
      */
     public void setUpperLeft(Point upperLeft) {
         this.upperLeft = upperLeft;
+        this.ownsUpperLeft = false;
+    }
+
+    /**
+     * Moves the upper-left corner of the rectangle to (x, y) without allocating, for rectangles that
+     * move every frame. The first call gives the rectangle a corner {@link Point} of its own, which later
+     * calls update in place, so the point returned by {@link #getUpperLeft()} follows the rectangle from
+     * then on.
+     *
+     * @param x the new x value of the upper-left corner
+     * @param y the new y value of the upper-left corner
+     */
+    public void setUpperLeft(double x, double y) {
+        if (this.ownsUpperLeft) {
+            this.upperLeft.set(x, y);
+            return;
+        }
+        this.upperLeft = new Point(x, y);
+        this.ownsUpperLeft = true;
     }
 
     /**
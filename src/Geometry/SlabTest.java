@@ -0,0 +1,430 @@
+// Ori Kenigsbuch
+package Geometry;
+
+/**
+ * The Geometry.SlabTest class intersects a ray segment with an axis-aligned rectangle using the slab method.
+ * <p>
+ * It works on primitive doubles only and writes its result into a caller-owned {@link RayHit}, so it
+ * never allocates. The result matches {@link Line#closestIntersectionToStartOfLine(Rectangle)}: the first
+ * point of the rectangle's boundary along the segment, which is the exit point when the segment starts
+ * inside the rectangle.
+ * </p>
+ * <p>
+ * A segment that starts exactly on the boundary is the one case where the slopes {@link Line} intersects
+ * with decide the result: the start point is only found when their rounding lands on the segment. That
+ * case is answered with the same arithmetic, so it matches the line intersection there too.
+ * </p>
+ */
+public final class SlabTest {
+
+    /**
+     * SlabTest only has static methods.
+     */
+    private SlabTest() {
+    }
+
+    /**
+     * Intersects the segment from (x, y) to (x + dx, y + dy) with the boundary of a rectangle.
+     *
+     * @param x    the x value of the start of the segment.
+     * @param y    the y value of the start of the segment.
+     * @param dx   the change in x along the segment.
+     * @param dy   the change in y along the segment.
+     * @param minX the left edge of the rectangle.
+     * @param minY the top edge of the rectangle.
+     * @param maxX the right edge of the rectangle.
+     * @param maxY the bottom edge of the rectangle.
+     * @param out  the {@link RayHit} the result is written to, only when there is a hit.
+     * @return {@code true} if the segment hits the boundary of the rectangle.
+     */
+    public static boolean intersect(double x, double y, double dx, double dy,
+                                    double minX, double minY, double maxX, double maxY, RayHit out) {
+        double tNear = Double.NEGATIVE_INFINITY;
+        double tFar = Double.POSITIVE_INFINITY;
+        int nearSides = 0;
+        int farSides = 0;
+
+        if (dx == 0 && dy == 0) {
+            return onBoundary(x, y, minX, minY, maxX, maxY, out);
+        }
+        if (dx == 0) {
+            if (x < minX || x > maxX) {
+                return false;
+            }
+        } else {
+            double tLeft = (minX - x) / dx;
+            double tRight = (maxX - x) / dx;
+            if (dx > 0) {
+                tNear = tLeft;
+                nearSides = RayHit.LEFT;
+                tFar = tRight;
+                farSides = RayHit.RIGHT;
+            } else {
+                tNear = tRight;
+                nearSides = RayHit.RIGHT;
+                tFar = tLeft;
+                farSides = RayHit.LEFT;
+            }
+        }
+
+        if (dy == 0) {
+            if (y < minY || y > maxY) {
+                return false;
+            }
+        } else {
+            double tTop = (minY - y) / dy;
+            double tBottom = (maxY - y) / dy;
+            double near = dy > 0 ? tTop : tBottom;
+            double far = dy > 0 ? tBottom : tTop;
+            int nearSide = dy > 0 ? RayHit.TOP : RayHit.BOTTOM;
+            int farSide = dy > 0 ? RayHit.BOTTOM : RayHit.TOP;
+            if (near > tNear) {
+                tNear = near;
+                nearSides = nearSide;
+            } else if (near == tNear) {
+                nearSides |= nearSide;
+            }
+            if (far < tFar) {
+                tFar = far;
+                farSides = farSide;
+            } else if (far == tFar) {
+                farSides |= farSide;
+            }
+        }
+
+        if (tNear > tFar) {
+            return false;
+        }
+        if (tNear == 0 || (tNear < 0 && tFar == 0)) {
+            // the segment starts on the boundary, moving into the rectangle or out of it
+            int sides = startSides(x, y, dx, dy, minX, minY, maxX, maxY);
+            if (sides != 0) {
+                out.set(0, sides);
+                return true;
+            }
+            if (tNear < 0 || tFar <= 0 || tFar > 1) {
+                return false;
+            }
+            out.set(tFar, farSides);
+            return true;
+        }
+        if (tNear >= 0) {
+            if (tNear > 1) {
+                return false;
+            }
+            out.set(tNear, nearSides);
+            return true;
+        }
+        // the segment starts inside the rectangle, the boundary is hit where it leaves
+        if (tFar < 0 || tFar > 1) {
+            return false;
+        }
+        out.set(tFar, farSides);
+        return true;
+    }
+
+    /**
+     * Finds the sides of the rectangle the start of a segment lies on, if {@link Line} would find the
+     * start point as an intersection of the segment with one of them.
+     *
+     * @param x    the x value of the start of the segment.
+     * @param y    the y value of the start of the segment.
+     * @param dx   the change in x along the segment.
+     * @param dy   the change in y along the segment.
+     * @param minX the left edge of the rectangle.
+     * @param minY the top edge of the rectangle.
+     * @param maxX the right edge of the rectangle.
+     * @param maxY the bottom edge of the rectangle.
+     * @return the sides the start lies on, or 0 if the line intersection does not find it.
+     */
+    private static int startSides(double x, double y, double dx, double dy,
+                                  double minX, double minY, double maxX, double maxY) {
+        double endX = x + dx;
+        double endY = y + dy;
+        int sides = (y == minY ? RayHit.TOP : 0) | (y == maxY ? RayHit.BOTTOM : 0)
+                | (x == minX ? RayHit.LEFT : 0) | (x == maxX ? RayHit.RIGHT : 0);
+        if (((sides & RayHit.TOP) != 0 && meet(minX, minY, maxX, minY, x, y, endX, endY))
+                || ((sides & RayHit.BOTTOM) != 0 && meet(minX, maxY, maxX, maxY, x, y, endX, endY))
+                || ((sides & RayHit.LEFT) != 0 && meet(minX, minY, minX, maxY, x, y, endX, endY))
+                || ((sides & RayHit.RIGHT) != 0 && meet(maxX, minY, maxX, maxY, x, y, endX, endY))) {
+            return sides;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns true if {@link Line#intersectionWith(Line)} finds an intersection of the line from
+     * (ax1, ay1) to (ax2, ay2) with the line from (bx1, by1) to (bx2, by2), computed the same way but
+     * without allocating.
+     *
+     * @param ax1 the x value of the start of the first line.
+     * @param ay1 the y value of the start of the first line.
+     * @param ax2 the x value of the end of the first line.
+     * @param ay2 the y value of the end of the first line.
+     * @param bx1 the x value of the start of the second line.
+     * @param by1 the y value of the start of the second line.
+     * @param bx2 the x value of the end of the second line.
+     * @param by2 the y value of the end of the second line.
+     * @return whether the lines intersect.
+     */
+    private static boolean meet(double ax1, double ay1, double ax2, double ay2,
+                                double bx1, double by1, double bx2, double by2) {
+        double px;
+        double py;
+        boolean aVertical = Point.equal(ax1, ax2);
+        boolean bVertical = Point.equal(bx1, bx2);
+        if (aVertical && bVertical) {
+            return false;
+        } else if (aVertical) {
+            px = ax1;
+            if (Point.equal(by1, by2)) {
+                py = by1;
+            } else {
+                double slope = (by1 - by2) / (bx1 - bx2);
+                py = by1 + slope * (px - bx1);
+            }
+        } else if (bVertical) {
+            px = bx1;
+            if (Point.equal(ay1, ay2)) {
+                py = ay1;
+            } else {
+                double slope = (ay1 - ay2) / (ax1 - ax2);
+                py = ay1 + slope * (px - ax1);
+            }
+        } else {
+            double slopeA = (ay1 - ay2) / (ax1 - ax2);
+            double interceptA = ay1 - slopeA * ax1;
+            double slopeB = (by1 - by2) / (bx1 - bx2);
+            double interceptB = by1 - slopeB * bx1;
+            if (Point.equal(slopeA, slopeB)) {
+                return false;
+            }
+            px = (interceptB - interceptA) / (slopeA - slopeB);
+            py = slopeA * px + interceptA;
+        }
+        return inBox(px, py, ax1, ay1, ax2, ay2) && inBox(px, py, bx1, by1, bx2, by2);
+    }
+
+    /**
+     * Returns true if a point is inside the bounding box of a line, like {@link Line#isOnLine(Point)}.
+     *
+     * @param px the x value of the point.
+     * @param py the y value of the point.
+     * @param x1 the x value of the start of the line.
+     * @param y1 the y value of the start of the line.
+     * @param x2 the x value of the end of the line.
+     * @param y2 the y value of the end of the line.
+     * @return whether the point is in the bounding box.
+     */
+    private static boolean inBox(double px, double py, double x1, double y1, double x2, double y2) {
+        return px >= Math.min(x1, x2) && px <= Math.max(x1, x2) && py >= Math.min(y1, y2) && py <= Math.max(y1, y2);
+    }
+
+    /**
+     * Sweeps a circle of radius r whose center moves from (x, y) to (x + dx, y + dy) against a rectangle,
+     * and finds the first time the circle touches it.
+     * <p>
+     * The test is done against the rectangle grown by r, with rounded corners: a slab test against the
+     * grown rectangle, followed by a ray-versus-circle test when the slab test enters through a corner.
+     * If the circle already overlaps the rectangle at the start, a hit at time 0 is reported only when
+     * the circle is moving further into it, so a ball that was pushed inside can still leave.
+     * </p>
+     *
+     * @param x    the x value of the center at the start of the sweep.
+     * @param y    the y value of the center at the start of the sweep.
+     * @param dx   the change in x of the center along the sweep.
+     * @param dy   the change in y of the center along the sweep.
+     * @param r    the radius of the circle.
+     * @param minX the left edge of the rectangle.
+     * @param minY the top edge of the rectangle.
+     * @param maxX the right edge of the rectangle.
+     * @param maxY the bottom edge of the rectangle.
+     * @param out  the {@link RayHit} the time of impact, sides and normal are written to, only when there is a hit.
+     * @return {@code true} if the circle touches the rectangle during the sweep.
+     */
+    public static boolean sweepCircle(double x, double y, double dx, double dy, double r,
+                                      double minX, double minY, double maxX, double maxY, RayHit out) {
+        if (r <= 0) {
+            return intersect(x, y, dx, dy, minX, minY, maxX, maxY, out);
+        }
+        // already overlapping
+        double ox = x - Math.max(minX, Math.min(maxX, x));
+        double oy = y - Math.max(minY, Math.min(maxY, y));
+        double distanceSquared = ox * ox + oy * oy;
+        if (distanceSquared < r * r) {
+            return overlap(x, y, dx, dy, ox, oy, distanceSquared, minX, minY, maxX, maxY, out);
+        }
+
+        double tNear = Double.NEGATIVE_INFINITY;
+        double tFar = Double.POSITIVE_INFINITY;
+        int nearSides = 0;
+        if (dx == 0) {
+            if (x < minX - r || x > maxX + r) {
+                return false;
+            }
+        } else {
+            double tLeft = (minX - r - x) / dx;
+            double tRight = (maxX + r - x) / dx;
+            tNear = Math.min(tLeft, tRight);
+            tFar = Math.max(tLeft, tRight);
+            nearSides = dx > 0 ? RayHit.LEFT : RayHit.RIGHT;
+        }
+        if (dy == 0) {
+            if (y < minY - r || y > maxY + r) {
+                return false;
+            }
+        } else {
+            double tTop = (minY - r - y) / dy;
+            double tBottom = (maxY + r - y) / dy;
+            double near = Math.min(tTop, tBottom);
+            int nearSide = dy > 0 ? RayHit.TOP : RayHit.BOTTOM;
+            if (near > tNear) {
+                tNear = near;
+                nearSides = nearSide;
+            } else if (near == tNear) {
+                nearSides |= nearSide;
+            }
+            tFar = Math.min(tFar, Math.max(tTop, tBottom));
+        }
+        if (tNear > tFar || tNear > 1 || tFar < 0) {
+            return false;
+        }
+
+        // the start may be inside the grown rectangle, in one of its corner squares
+        double tEntry = Math.max(tNear, 0);
+        double px = x + tEntry * dx;
+        double py = y + tEntry * dy;
+        boolean cornerX = px < minX || px > maxX;
+        boolean cornerY = py < minY || py > maxY;
+        if (cornerX && cornerY) {
+            double cx = px < minX ? minX : maxX;
+            double cy = py < minY ? minY : maxY;
+            return sweepCorner(x, y, dx, dy, r, cx, cy, out);
+        }
+        out.set(tEntry, nearSides);
+        return true;
+    }
+
+    /**
+     * Finds the first time a circle moving from (x, y) by (dx, dy) touches a rectangle corner.
+     *
+     * @param x   the x value of the center at the start of the sweep.
+     * @param y   the y value of the center at the start of the sweep.
+     * @param dx  the change in x of the center along the sweep.
+     * @param dy  the change in y of the center along the sweep.
+     * @param r   the radius of the circle.
+     * @param cx  the x value of the corner.
+     * @param cy  the y value of the corner.
+     * @param out the {@link RayHit} the result is written to, only when there is a hit.
+     * @return {@code true} if the circle touches the corner during the sweep.
+     */
+    private static boolean sweepCorner(double x, double y, double dx, double dy, double r,
+                                       double cx, double cy, RayHit out) {
+        double px = x - cx;
+        double py = y - cy;
+        double a = dx * dx + dy * dy;
+        double b = px * dx + py * dy;
+        double c = px * px + py * py - r * r;
+        double discriminant = b * b - a * c;
+        if (a == 0 || b >= 0 || discriminant < 0) {
+            return false;
+        }
+        double t = (-b - Math.sqrt(discriminant)) / a;
+        if (t < 0 || t > 1) {
+            return false;
+        }
+        double nx = (px + t * dx) / r;
+        double ny = (py + t * dy) / r;
+        out.set(t, sidesOf(nx, ny), nx, ny);
+        return true;
+    }
+
+    /**
+     * Handles a circle that already overlaps the rectangle at the start of the sweep.
+     *
+     * @param x               the x value of the center.
+     * @param y               the y value of the center.
+     * @param dx              the change in x of the center along the sweep.
+     * @param dy              the change in y of the center along the sweep.
+     * @param ox              the x offset of the center from the closest point of the rectangle.
+     * @param oy              the y offset of the center from the closest point of the rectangle.
+     * @param distanceSquared the squared distance of the center from the rectangle.
+     * @param minX            the left edge of the rectangle.
+     * @param minY            the top edge of the rectangle.
+     * @param maxX            the right edge of the rectangle.
+     * @param maxY            the bottom edge of the rectangle.
+     * @param out             the {@link RayHit} the result is written to, only when there is a hit.
+     * @return {@code true} if the circle is moving further into the rectangle.
+     */
+    private static boolean overlap(double x, double y, double dx, double dy, double ox, double oy,
+                                   double distanceSquared, double minX, double minY, double maxX, double maxY,
+                                   RayHit out) {
+        double nx;
+        double ny;
+        if (distanceSquared > 0) {
+            double distance = Math.sqrt(distanceSquared);
+            nx = ox / distance;
+            ny = oy / distance;
+        } else {
+            // the center is inside the rectangle, push it out through the closest side
+            double left = x - minX;
+            double right = maxX - x;
+            double top = y - minY;
+            double bottom = maxY - y;
+            double closest = Math.min(Math.min(left, right), Math.min(top, bottom));
+            nx = closest == left ? -1 : (closest == right ? 1 : 0);
+            ny = nx != 0 ? 0 : (closest == top ? -1 : 1);
+        }
+        if (dx * nx + dy * ny >= 0) {
+            return false;
+        }
+        out.set(0, sidesOf(nx, ny), nx, ny);
+        return true;
+    }
+
+    /**
+     * Returns the sides a normal points out of: the side its larger component points out of,
+     * or both sides when the components are equal.
+     *
+     * @param nx the x component of the normal.
+     * @param ny the y component of the normal.
+     * @return a combination of {@link RayHit#TOP}, {@link RayHit#BOTTOM}, {@link RayHit#LEFT}
+     * and {@link RayHit#RIGHT}.
+     */
+    private static int sidesOf(double nx, double ny) {
+        int sides = 0;
+        if (Math.abs(nx) >= Math.abs(ny)) {
+            sides |= nx < 0 ? RayHit.LEFT : RayHit.RIGHT;
+        }
+        if (Math.abs(ny) >= Math.abs(nx)) {
+            sides |= ny < 0 ? RayHit.TOP : RayHit.BOTTOM;
+        }
+        return sides;
+    }
+
+    /**
+     * Handles a segment of zero length, which only hits the rectangle if it lies on its boundary.
+     *
+     * @param x    the x value of the point.
+     * @param y    the y value of the point.
+     * @param minX the left edge of the rectangle.
+     * @param minY the top edge of the rectangle.
+     * @param maxX the right edge of the rectangle.
+     * @param maxY the bottom edge of the rectangle.
+     * @param out  the {@link RayHit} the result is written to, only when there is a hit.
+     * @return {@code true} if the point is on the boundary of the rectangle.
+     */
+    private static boolean onBoundary(double x, double y, double minX, double minY, double maxX, double maxY,
+                                      RayHit out) {
+        if (x < minX || x > maxX || y < minY || y > maxY) {
+            return false;
+        }
+        int sides = (y == minY ? RayHit.TOP : 0) | (y == maxY ? RayHit.BOTTOM : 0)
+                | (x == minX ? RayHit.LEFT : 0) | (x == maxX ? RayHit.RIGHT : 0);
+        if (sides == 0) {
+            return false;
+        }
+        out.set(0, sides);
+        return true;
+    }
+}
@@ -0,0 +1,109 @@
+// Ori Kenigsbuch
+package Geometry;
+
+/**
+ * The Geometry.Vec2 class is a mutable 2D vector, for positions and velocities that change every frame.
+ * <p>
+ * {@link Point} and {@code GameElement.Velocity} are immutable, so moving an object with them allocates a
+ * new object every step. A Vec2 is updated in place instead, which lets the per-frame code run without
+ * allocating. Code that does not need the speed can keep using the immutable types; {@link #toPoint()}
+ * converts when needed.
+ * </p>
+ */
+public class Vec2 {
+    private double x;
+    private double y;
+
+    /**
+     * Constructs a Vec2 with the given components.
+     *
+     * @param x the x component.
+     * @param y the y component.
+     */
+    public Vec2(double x, double y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Returns the x component.
+     *
+     * @return the x component.
+     */
+    public double getX() {
+        return this.x;
+    }
+
+    /**
+     * Returns the y component.
+     *
+     * @return the y component.
+     */
+    public double getY() {
+        return this.y;
+    }
+
+    /**
+     * Sets both components.
+     *
+     * @param newX the new x component.
+     * @param newY the new y component.
+     * @return this vector.
+     */
+    public Vec2 set(double newX, double newY) {
+        this.x = newX;
+        this.y = newY;
+        return this;
+    }
+
+    /**
+     * Adds the given amounts to the components, in place.
+     *
+     * @param dx the amount added to x.
+     * @param dy the amount added to y.
+     * @return this vector.
+     */
+    public Vec2 addTo(double dx, double dy) {
+        this.x += dx;
+        this.y += dy;
+        return this;
+    }
+
+    /**
+     * Reverses the x component, in place.
+     *
+     * @return this vector.
+     */
+    public Vec2 reflectX() {
+        this.x = -this.x;
+        return this;
+    }
+
+    /**
+     * Reverses the y component, in place.
+     *
+     * @return this vector.
+     */
+    public Vec2 reflectY() {
+        this.y = -this.y;
+        return this;
+    }
+
+    /**
+     * Returns the length of the vector.
+     *
+     * @return the length.
+     */
+    public double length() {
+        return Math.sqrt(this.x * this.x + this.y * this.y);
+    }
+
+    /**
+     * Returns an immutable {@link Point} with the components of the vector.
+     *
+     * @return a new {@link Point}.
+     */
+    public Point toPoint() {
+        return new Point(this.x, this.y);
+    }
+}
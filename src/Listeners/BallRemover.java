@@ -1,10 +1,10 @@
 // Ori Kenigsbuch
 package Listeners;
 
-import GameElement.Ball;
 import GameElement.Block;
 import GameElement.Counter;
 import GameElement.Game;
+import GameObjects.Hitter;
 /**
  * The BallRemover class is responsible for removing a Ball from the game
  * when a Block is hit by a Ball.
@@ -31,7 +31,7 @@ public class BallRemover implements HitListener {
      * @param beingHit The Block that was hit.
      * @param hitter   The Ball that hit the Block.
      */
-    public void hitEvent(Block beingHit, Ball hitter) {
+    public void hitEvent(Block beingHit, Hitter hitter) {
         hitter.removeFromGame(this.game);
         remainingBalls.decrease(1);
     }
@@ -1,10 +1,10 @@
 // Ori Kenigsbuch
 package Listeners;
 
-import GameElement.Ball;
 import GameElement.Block;
 import GameElement.Counter;
 import GameElement.Game;
+import GameObjects.Hitter;
 /**
  * The BlockRemover class is responsible for removing a Block from the game
  * when it is hit by a Ball.
@@ -31,7 +31,7 @@ public class BlockRemover implements HitListener {
      * @param beingHit The Block that was hit.
      * @param hitter   The Ball that hit the Block.
      */
-    public void hitEvent(Block beingHit, Ball hitter) {
+    public void hitEvent(Block beingHit, Hitter hitter) {
         beingHit.removeHitListener(this);
         beingHit.removeFromGame(this.game);
         remainingBlocks.decrease(1);
@@ -0,0 +1,31 @@
+// Ori Kenigsbuch
+package Listeners;
+
+import GameObjects.Collidable;
+
+/**
+ * The EnvironmentListener interface represents an object that listens for changes to the collidables
+ * of a {@link GameElement.GameEnvironment}.
+ */
+public interface EnvironmentListener {
+    /**
+     * This method is called after a collidable was added to the environment.
+     *
+     * @param c the collidable that was added.
+     */
+    void collidableAdded(Collidable c);
+
+    /**
+     * This method is called after a collidable was removed from the environment.
+     *
+     * @param c the collidable that was removed.
+     */
+    void collidableRemoved(Collidable c);
+
+    /**
+     * This method is called after the collision rectangle of a collidable has moved.
+     *
+     * @param c the collidable that moved.
+     */
+    void collidableMoved(Collidable c);
+}
@@ -1,8 +1,8 @@
 // Ori Kenigsbuch
 package Listeners;
 
-import GameElement.Ball;
 import GameElement.Block;
+import GameObjects.Hitter;
 /**
  * The HitListener interface represents an object that listens for hit events in a game.
  */
@@ -14,6 +14,6 @@ public interface HitListener {
      * @param beingHit The Block that was hit.
      * @param hitter   The Ball that hit the Block.
      */
-    void hitEvent(Block hit, Ball hitter);
+    void hitEvent(Block hit, Hitter hitter);
 }
 
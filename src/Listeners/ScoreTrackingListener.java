@@ -1,9 +1,9 @@
 // Ori Kenigsbuch
 package Listeners;
 
-import GameElement.Ball;
 import GameElement.Block;
 import GameElement.Counter;
+import GameObjects.Hitter;
 
 /**
  * The ScoreTrackingListener class is responsible for tracking and updating the player's score
@@ -22,13 +22,14 @@ public class ScoreTrackingListener implements HitListener {
     }
 
     /**
-     * Handles the hit event by increasing the player's score when a Block is hit by a Ball.
+     * Handles the hit event by increasing the player's score by the score value of the Block's archetype
+     * when a Block is hit by a Ball.
      *
      * @param beingHit The Block that was hit.
      * @param hitter   The Ball that hit the Block.
      */
-    public void hitEvent(Block beingHit, Ball hitter) {
-        currentScore.increase(5);
+    public void hitEvent(Block beingHit, Hitter hitter) {
+        currentScore.increase(beingHit.getScoreValue());
     }
 }
 
@@ -0,0 +1,71 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import GameObjects.Sprite;
+import biuoop.DrawSurface;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Headless checks of the strict mode of the {@link AllocationMonitor}: a game run with
+ * {@link Game#simulate} stays within its allocation budget, and a run that allocates every tick fails.
+ */
+public class AllocationMonitorTest {
+    // the frames the percentiles are computed from
+    private static final int WINDOW = 64;
+    // the frames left unchecked while classes load and the JIT compiles
+    private static final int WARM_UP = 500;
+    // the median bytes a steady-state tick of the default level may allocate
+    private static final long BUDGET = 256;
+
+    /**
+     * The default level, headless, allocates less than the budget per tick once it is warm.
+     */
+    @Test
+    public void steadyStateStaysWithinBudget() {
+        Game game = headlessGame();
+        AllocationMonitor monitor = new AllocationMonitor(WINDOW);
+        monitor.setBudget(BUDGET, WARM_UP);
+        game.setAllocationMonitor(monitor);
+        long ticks = game.simulate(WARM_UP + 20 * WINDOW);
+        assertEquals(ticks, monitor.getFrames(), "every simulated tick is a frame of the monitor");
+    }
+
+    /**
+     * A sprite that allocates on every tick makes a strict headless run fail.
+     */
+    @Test
+    public void allocatingTickFailsTheRun() {
+        Game game = headlessGame();
+        game.addSprite(new Sprite() {
+            private long[] garbage;
+
+            @Override
+            public void drawOn(DrawSurface d) {
+            }
+
+            @Override
+            public void timePassed() {
+                this.garbage = new long[128];
+            }
+        });
+        AllocationMonitor monitor = new AllocationMonitor(WINDOW);
+        monitor.setBudget(BUDGET, 0);
+        game.setAllocationMonitor(monitor);
+        assertThrows(IllegalStateException.class, () -> game.simulate(WARM_UP + 20 * WINDOW));
+    }
+
+    /**
+     * Creates the default level with no GUI and a paddle that stands still.
+     *
+     * @return the initialized game.
+     */
+    private static Game headlessGame() {
+        Game game = new Game();
+        game.setHeadless(new ScriptedInput());
+        game.initialize();
+        return game;
+    }
+}
@@ -0,0 +1,170 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import Geometry.Point;
+import Geometry.Rectangle;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The Arena class is a closed level the stepping tests run balls in: walls on every side, rows of blocks
+ * that leave the environment when they are hit, and a block sliding back and forth like a paddle. Two
+ * arenas built with the same number of balls start from the same state, so the tests can step them in
+ * different ways and compare the exact bits of every ball after every tick.
+ */
+final class Arena {
+    private static final long SEED = 7;
+    private static final int ROWS = 6;
+    private static final int COLUMNS = 14;
+
+    private final GameEnvironment environment;
+    private final List<Ball> balls;
+    private final Block slider;
+    private final ParallelBallStepper stepper;
+    private int blocksLeft;
+
+    /**
+     * Builds an arena in the given environment.
+     *
+     * @param environment the {@link GameEnvironment}, already set to the collision settings under test.
+     * @param count       the number of balls.
+     * @param stepped     whether the balls are stepped by a {@link ParallelBallStepper}.
+     * @param pool        the pool of the stepper, or {@code null} for one batched query per tick.
+     */
+    private Arena(GameEnvironment environment, int count, boolean stepped, ForkJoinPool pool) {
+        this.environment = environment;
+        environment.addCollidable(new Block(new Rectangle(new Point(0, 0), 20, 600), Color.gray, null));
+        environment.addCollidable(new Block(new Rectangle(new Point(780, 0), 20, 600), Color.gray, null));
+        environment.addCollidable(new Block(new Rectangle(new Point(0, 0), 800, 20), Color.gray, null));
+        environment.addCollidable(new Block(new Rectangle(new Point(0, 580), 800, 20), Color.gray, null));
+        for (int row = 0; row < ROWS; row++) {
+            for (int col = 0; col < COLUMNS; col++) {
+                Block block = new Block(new Rectangle(new Point(50 + col * 50, 60 + row * 20), 50, 20), Color.red,
+                        null);
+                block.addHitListener((hit, hitter) -> {
+                    this.environment.removeCollidable(hit);
+                    this.blocksLeft--;
+                });
+                environment.addCollidable(block);
+                this.blocksLeft++;
+            }
+        }
+        this.slider = new Block(new Rectangle(new Point(340, 540), 120, 20), Color.blue, null);
+        environment.addCollidable(this.slider);
+
+        this.balls = new ArrayList<>();
+        this.stepper = stepped ? new ParallelBallStepper(environment, pool) : null;
+        if (this.stepper != null) {
+            environment.addEnvironmentListener(this.stepper);
+        }
+        Random random = new Random(SEED);
+        for (int i = 0; i < count; i++) {
+            Ball ball = new Ball(new Point(40 + random.nextDouble() * 720, 250 + random.nextDouble() * 250), 3,
+                    Color.white, Velocity.fromAngleAndSpeed(random.nextDouble() * 360, 2 + random.nextDouble() * 3),
+                    environment);
+            this.balls.add(ball);
+            if (this.stepper != null) {
+                this.stepper.add(ball);
+            }
+        }
+    }
+
+    /**
+     * Builds an arena whose balls are stepped one by one, in the order they were added.
+     *
+     * @param environment the {@link GameEnvironment}.
+     * @param count       the number of balls.
+     * @return the arena.
+     */
+    static Arena serial(GameEnvironment environment, int count) {
+        return new Arena(environment, count, false, null);
+    }
+
+    /**
+     * Builds an arena whose balls are stepped by a {@link ParallelBallStepper}.
+     *
+     * @param environment the {@link GameEnvironment}.
+     * @param count       the number of balls.
+     * @param pool        the pool the balls are planned on, or {@code null} for one batched query per tick.
+     * @return the arena.
+     */
+    static Arena stepped(GameEnvironment environment, int count, ForkJoinPool pool) {
+        return new Arena(environment, count, true, pool);
+    }
+
+    /**
+     * Steps two arenas side by side and compares them after every tick.
+     *
+     * @param a     the first arena.
+     * @param b     the second arena.
+     * @param ticks the number of ticks.
+     * @return the first tick after which the arenas differ, or -1 if they stay identical.
+     */
+    static long firstDifference(Arena a, Arena b, long ticks) {
+        for (long tick = 1; tick <= ticks; tick++) {
+            a.step(tick);
+            b.step(tick);
+            if (a.digest() != b.digest()) {
+                return tick;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of blocks the arena starts with.
+     *
+     * @return the number of blocks.
+     */
+    static int blocks() {
+        return ROWS * COLUMNS;
+    }
+
+    /**
+     * Moves the slider, then steps the balls one tick.
+     *
+     * @param tick the number of the tick.
+     */
+    void step(long tick) {
+        double x = 340 + 300 * Math.sin(tick / 50.0);
+        this.slider.getCollisionRectangle().setUpperLeft(x, 540);
+        this.environment.updateCollidable(this.slider);
+        if (this.stepper != null) {
+            this.stepper.timePassed();
+            return;
+        }
+        for (int i = 0; i < this.balls.size(); i++) {
+            this.balls.get(i).timePassed();
+        }
+    }
+
+    /**
+     * Hashes the exact state of the balls and the number of blocks left.
+     *
+     * @return the hash.
+     */
+    long digest() {
+        long hash = this.blocksLeft;
+        for (int i = 0; i < this.balls.size(); i++) {
+            Ball ball = this.balls.get(i);
+            hash = hash * 31 + Double.doubleToLongBits(ball.exactX());
+            hash = hash * 31 + Double.doubleToLongBits(ball.exactY());
+            Velocity v = ball.getVelocity();
+            hash = hash * 31 + Double.doubleToLongBits(v.getDx());
+            hash = hash * 31 + Double.doubleToLongBits(v.getDy());
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the number of blocks that have not been hit yet.
+     *
+     * @return the number of blocks left.
+     */
+    int blocksLeft() {
+        return this.blocksLeft;
+    }
+}
@@ -0,0 +1,49 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that {@link CollisionMode#GRID} finds exactly the collisions {@link CollisionMode#LINEAR} finds, by
+ * running the same balls in both modes and comparing the exact bits of every ball after every tick.
+ */
+public class CollisionModeTest {
+    private static final int BALLS = 200;
+    private static final long TICKS = 2000;
+
+    /**
+     * The grid matches the linear search with point collision.
+     */
+    @Test
+    public void gridMatchesLinear() {
+        assertGridMatchesLinear(false);
+    }
+
+    /**
+     * The grid matches the linear search with continuous collision.
+     */
+    @Test
+    public void gridMatchesLinearWithContinuousCollision() {
+        assertGridMatchesLinear(true);
+    }
+
+    /**
+     * Runs the arena in both modes side by side and checks that they never differ.
+     *
+     * @param continuous whether the environments use continuous collision.
+     */
+    private static void assertGridMatchesLinear(boolean continuous) {
+        GameEnvironment linearEnvironment = new GameEnvironment();
+        linearEnvironment.setContinuousCollision(continuous);
+        GameEnvironment gridEnvironment = new GameEnvironment();
+        gridEnvironment.setContinuousCollision(continuous);
+        gridEnvironment.setCollisionMode(CollisionMode.GRID);
+        Arena linear = Arena.serial(linearEnvironment, BALLS);
+        Arena grid = Arena.serial(gridEnvironment, BALLS);
+        assertEquals(-1, Arena.firstDifference(linear, grid, TICKS), "first tick that differs");
+        assertTrue(linear.blocksLeft() < Arena.blocks(), "the balls hit blocks");
+    }
+}
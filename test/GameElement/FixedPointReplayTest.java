@@ -0,0 +1,79 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a simulation in fixed point (see {@link GameEnvironment#setFixedPoint}) replays bit for bit:
+ * a second run gives the same state after every tick, whichever collision mode looks up the collisions and
+ * whether the balls are stepped by a {@link ParallelBallStepper}.
+ */
+public class FixedPointReplayTest {
+    private static final int BALLS = 200;
+    private static final int TICKS = 2000;
+
+    /**
+     * A recorded run is replayed exactly.
+     */
+    @Test
+    public void replayGivesTheSameTicks() {
+        Arena first = Arena.serial(fixedPointEnvironment(CollisionMode.LINEAR), BALLS);
+        long[] recorded = record(first);
+        long[] replayed = record(Arena.serial(fixedPointEnvironment(CollisionMode.LINEAR), BALLS));
+        assertArrayEquals(recorded, replayed, "the digests of every tick");
+        assertTrue(first.blocksLeft() < Arena.blocks(), "the balls hit blocks");
+    }
+
+    /**
+     * The grid gives the same fixed-point run as the linear search.
+     */
+    @Test
+    public void gridReplaysLinear() {
+        Arena linear = Arena.serial(fixedPointEnvironment(CollisionMode.LINEAR), BALLS);
+        Arena grid = Arena.serial(fixedPointEnvironment(CollisionMode.GRID), BALLS);
+        assertEquals(-1, Arena.firstDifference(linear, grid, TICKS), "first tick that differs");
+    }
+
+    /**
+     * Stepping on a pool gives the same fixed-point run as stepping serially.
+     */
+    @Test
+    public void parallelReplaysSerial() {
+        Arena serial = Arena.serial(fixedPointEnvironment(CollisionMode.LINEAR), BALLS);
+        Arena stepped = Arena.stepped(fixedPointEnvironment(CollisionMode.LINEAR), BALLS, ForkJoinPool.commonPool());
+        assertEquals(-1, Arena.firstDifference(serial, stepped, TICKS), "first tick that differs");
+    }
+
+    /**
+     * Creates an environment in fixed point.
+     *
+     * @param mode the {@link CollisionMode} of the environment.
+     * @return the environment.
+     */
+    private static GameEnvironment fixedPointEnvironment(CollisionMode mode) {
+        GameEnvironment environment = new GameEnvironment();
+        environment.setCollisionMode(mode);
+        environment.setFixedPoint(true);
+        return environment;
+    }
+
+    /**
+     * Runs an arena and records the digest of every tick.
+     *
+     * @param arena the arena.
+     * @return the digests, one per tick.
+     */
+    private static long[] record(Arena arena) {
+        long[] digests = new long[TICKS];
+        for (int tick = 1; tick <= TICKS; tick++) {
+            arena.step(tick);
+            digests[tick - 1] = arena.digest();
+        }
+        return digests;
+    }
+}
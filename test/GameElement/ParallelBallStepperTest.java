@@ -0,0 +1,58 @@
+// Ori Kenigsbuch
+package GameElement;
+
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a {@link ParallelBallStepper} moves balls to exactly the same bits as stepping them one by one,
+ * in the order they were added, both when it plans on a pool and when it batches the queries.
+ */
+public class ParallelBallStepperTest {
+    private static final int BALLS = 300;
+    private static final long TICKS = 2000;
+
+    /**
+     * Planning on a pool matches serial stepping with point collision.
+     */
+    @Test
+    public void parallelMatchesSerial() {
+        assertMatchesSerial(false, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Planning on a pool matches serial stepping with continuous collision.
+     */
+    @Test
+    public void parallelMatchesSerialWithContinuousCollision() {
+        assertMatchesSerial(true, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * One batched query per tick matches serial stepping.
+     */
+    @Test
+    public void batchedMatchesSerial() {
+        assertMatchesSerial(false, null);
+    }
+
+    /**
+     * Runs a stepped arena next to a serial one and checks that they never differ.
+     *
+     * @param continuous whether the environments use continuous collision.
+     * @param pool       the pool of the stepper, or {@code null} to batch the queries.
+     */
+    private static void assertMatchesSerial(boolean continuous, ForkJoinPool pool) {
+        GameEnvironment serialEnvironment = new GameEnvironment();
+        serialEnvironment.setContinuousCollision(continuous);
+        GameEnvironment steppedEnvironment = new GameEnvironment();
+        steppedEnvironment.setContinuousCollision(continuous);
+        Arena serial = Arena.serial(serialEnvironment, BALLS);
+        Arena stepped = Arena.stepped(steppedEnvironment, BALLS, pool);
+        assertEquals(-1, Arena.firstDifference(serial, stepped, TICKS), "first tick that differs");
+        assertTrue(serial.blocksLeft() < Arena.blocks(), "the balls hit blocks");
+    }
+}